@@ -1,17 +1,24 @@
 package com.saikumar.orderservice.controller;
 
+import com.saikumar.orderservice.dto.CursorPage;
 import com.saikumar.orderservice.dto.OrderDto;
+import com.saikumar.orderservice.kafka.RetryTopics;
 import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.service.OrderExporter;
 import com.saikumar.orderservice.service.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -19,54 +26,82 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderExporter orderExporter;
+    private final RetryTopics paymentEventRetries;
 
-    // POST /api/orders
+    // POST /api/orders - accepted as PENDING; stock is reserved asynchronously, poll GET /{id} for the outcome
     @PostMapping
-    public ResponseEntity<Order> createOrder(@Valid @RequestBody OrderDto.CreateOrderRequest req) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(orderService.createOrder(req));
+    public ResponseEntity<OrderDto.OrderResponse> createOrder(@Valid @RequestBody OrderDto.CreateOrderRequest req) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(orderService.createOrder(req));
     }
 
     // GET /api/orders/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<Order> getOrder(@PathVariable Long id) {
+    public ResponseEntity<OrderDto.OrderResponse> getOrder(@PathVariable Long id) {
         return ResponseEntity.ok(orderService.getOrderById(id));
     }
 
     // GET /api/orders/user/{userId}
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Order>> getOrdersByUser(@PathVariable Long userId) {
+    public ResponseEntity<List<OrderDto.OrderResponse>> getOrdersByUser(@PathVariable Long userId) {
         return ResponseEntity.ok(orderService.getOrdersByUser(userId));
     }
 
     // GET /api/orders/user/{userId}/paged
     @GetMapping("/user/{userId}/paged")
-    public ResponseEntity<Page<Order>> getOrdersByUserPaged(
+    public ResponseEntity<Page<OrderDto.OrderResponse>> getOrdersByUserPaged(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         return ResponseEntity.ok(orderService.getOrdersByUserPaged(userId, PageRequest.of(page, size)));
     }
 
+    // GET /api/orders/user/{userId}/scroll?size=10, then ?cursor=<nextCursor>
+    @GetMapping("/user/{userId}/scroll")
+    public ResponseEntity<CursorPage<OrderDto.OrderResponse>> scrollOrdersByUser(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(orderService.scrollOrdersByUser(userId, cursor, Math.min(Math.max(size, 1), 100)));
+    }
+
     // GET /api/orders - admin only
     @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
+    public ResponseEntity<List<OrderDto.OrderResponse>> getAllOrders() {
         return ResponseEntity.ok(orderService.getAllOrders());
     }
 
+    // GET /api/orders/export?format=ndjson|csv - admin only, streams every order with constant memory
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(defaultValue = "ndjson") String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders." + (csv ? "csv" : "ndjson"))
+                .body(out -> orderExporter.export(csv, out));
+    }
+
     // PUT /api/orders/{id}/cancel
     @PutMapping("/{id}/cancel")
-    public ResponseEntity<Order> cancelOrder(@PathVariable Long id) {
+    public ResponseEntity<OrderDto.OrderResponse> cancelOrder(@PathVariable Long id) {
         return ResponseEntity.ok(orderService.cancelOrder(id));
     }
 
     // PUT /api/orders/{id}/status - admin
     @PutMapping("/{id}/status")
-    public ResponseEntity<Order> updateStatus(
+    public ResponseEntity<OrderDto.OrderResponse> updateStatus(
             @PathVariable Long id,
             @RequestParam Order.OrderStatus status) {
         return ResponseEntity.ok(orderService.updateStatus(id, status));
     }
 
+    // POST /api/orders/admin/dlt/replay?limit=100 - admin, republishes dead-lettered payment results
+    @PostMapping("/admin/dlt/replay")
+    public ResponseEntity<Map<String, Object>> replayDeadLetters(@RequestParam(defaultValue = "100") int limit) {
+        int replayed = paymentEventRetries.replayDeadLetters(Math.min(Math.max(limit, 1), 10000));
+        return ResponseEntity.ok(Map.of("topic", paymentEventRetries.deadLetterTopic(), "replayed", replayed));
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("order-service ok");
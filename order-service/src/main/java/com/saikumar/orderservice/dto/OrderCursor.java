@@ -0,0 +1,30 @@
+package com.saikumar.orderservice.dto;
+
+import com.saikumar.orderservice.exception.InvalidCursorException;
+import com.saikumar.orderservice.model.Order;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// Continuation token for order history: created_at and id of the last order returned, newest first.
+public record OrderCursor(LocalDateTime createdAt, long id) {
+
+    public static OrderCursor after(Order last) {
+        return new OrderCursor(last.getCreatedAt(), last.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 2);
+            return new OrderCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -3,8 +3,12 @@ package com.saikumar.orderservice.dto;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderItem;
 import lombok.Data;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public class OrderDto {
@@ -30,4 +34,26 @@ public class OrderDto {
         @Min(value = 1, message = "Quantity must be at least 1")
         private Integer quantity;
     }
+
+    // what the API returns; built inside the service transaction, so serialization never touches lazy proxies
+    public record OrderResponse(Long id, Long userId, Order.OrderStatus status, BigDecimal totalAmount,
+                                String shippingAddress, String notes, List<OrderItemResponse> items,
+                                LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+        public static OrderResponse from(Order order) {
+            return new OrderResponse(order.getId(), order.getUserId(), order.getStatus(), order.getTotalAmount(),
+                    order.getShippingAddress(), order.getNotes(),
+                    order.getItems().stream().map(OrderItemResponse::from).toList(),
+                    order.getCreatedAt(), order.getUpdatedAt());
+        }
+    }
+
+    public record OrderItemResponse(Long id, Long productId, String productName, Integer quantity,
+                                    BigDecimal unitPrice, BigDecimal subtotal) {
+
+        public static OrderItemResponse from(OrderItem item) {
+            return new OrderItemResponse(item.getId(), item.getProductId(), item.getProductName(), item.getQuantity(),
+                    item.getUnitPrice(), item.getSubtotal());
+        }
+    }
 }
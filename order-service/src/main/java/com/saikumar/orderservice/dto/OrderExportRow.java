@@ -0,0 +1,13 @@
+package com.saikumar.orderservice.dto;
+
+import com.saikumar.orderservice.model.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One order line as read by the export query; an order without items comes back once with null item fields.
+public record OrderExportRow(Long orderId, Long userId, Order.OrderStatus status, BigDecimal totalAmount,
+                             String shippingAddress, String notes, LocalDateTime createdAt, LocalDateTime updatedAt,
+                             Long itemId, Long productId, String productName, Integer quantity,
+                             BigDecimal unitPrice, BigDecimal subtotal) {
+}
@@ -0,0 +1,123 @@
+package com.saikumar.orderservice.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format for order and payment events. Binary events are a 4-byte header (magic byte,
+ * schema id, schema version) followed by the fields at fixed offsets, so encoding is one exact
+ * allocation and decoding reads straight out of the record's bytes. The same layout is
+ * implemented by payment-service; schema ids and versions must stay in step.
+ *
+ * Legacy JSON events (anything starting with '{') are still decoded, and events.format=json
+ * keeps producing them while consumers that only read JSON are still deployed.
+ */
+@Component
+public class EventCodec {
+
+    public static final byte MAGIC = (byte) 0xCE;
+    public static final short ORDER_CREATED = 1;
+    public static final short ORDER_CANCELLED = 2;
+    public static final short PAYMENT_RESULT = 3;
+    public static final byte V1 = 1;
+
+    private static final int HEADER = 4;
+
+    private final ObjectMapper objectMapper;
+    private final boolean binary;
+
+    public EventCodec(ObjectMapper objectMapper, @Value("${events.format:binary}") String format) {
+        this.objectMapper = objectMapper;
+        this.binary = !"json".equalsIgnoreCase(format);
+    }
+
+    public byte[] encode(OrderCreatedEvent event) {
+        if (!binary) {
+            return json(legacy("ORDER_CREATED", event.orderId())
+                    .put("userId", event.userId())
+                    .put("amount", event.amount().doubleValue()));
+        }
+        return header(ORDER_CREATED, 8 + 8 + 1 + 8)
+                .putLong(event.orderId())
+                .putLong(event.userId())
+                .put((byte) event.amount().scale())
+                .putLong(event.amount().unscaledValue().longValueExact())
+                .array();
+    }
+
+    public byte[] encode(OrderCancelledEvent event) {
+        if (!binary) {
+            return json(legacy("ORDER_CANCELLED", event.orderId()));
+        }
+        return header(ORDER_CANCELLED, 8).putLong(event.orderId()).array();
+    }
+
+    // OrderCreatedEvent, OrderCancelledEvent or PaymentResultEvent; null for event types this service ignores
+    public Object decode(byte[] data) {
+        if (data.length > 0 && data[0] == '{') {
+            return decodeJson(data);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (data.length < HEADER || buf.get() != MAGIC) {
+            throw new IllegalArgumentException("Not an event: unknown format");
+        }
+        short schema = buf.getShort();
+        byte version = buf.get();
+        if (version != V1) {
+            throw new IllegalArgumentException("Unsupported version " + version + " of schema " + schema);
+        }
+        return switch (schema) {
+            case ORDER_CREATED -> new OrderCreatedEvent(buf.getLong(), buf.getLong(), amount(buf.get(), buf.getLong()));
+            case ORDER_CANCELLED -> new OrderCancelledEvent(buf.getLong());
+            case PAYMENT_RESULT -> new PaymentResultEvent(buf.getLong(), buf.get() != 0);
+            default -> null;
+        };
+    }
+
+    private Object decodeJson(byte[] data) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed JSON event", e);
+        }
+        long orderId = node.path("orderId").asLong();
+        return switch (node.path("eventType").asText()) {
+            case "ORDER_CREATED" -> new OrderCreatedEvent(orderId, node.path("userId").asLong(),
+                    new BigDecimal(node.path("amount").asText()));
+            case "ORDER_CANCELLED" -> new OrderCancelledEvent(orderId);
+            case "PAYMENT_SUCCESS" -> new PaymentResultEvent(orderId, true);
+            case "PAYMENT_FAILED" -> new PaymentResultEvent(orderId, false);
+            default -> null;
+        };
+    }
+
+    private static ByteBuffer header(short schema, int bodySize) {
+        return ByteBuffer.allocate(HEADER + bodySize).put(MAGIC).putShort(schema).put(V1);
+    }
+
+    private static BigDecimal amount(byte scale, long unscaled) {
+        return new BigDecimal(BigInteger.valueOf(unscaled), scale);
+    }
+
+    private ObjectNode legacy(String eventType, long orderId) {
+        return objectMapper.createObjectNode().put("eventType", eventType).put("orderId", orderId);
+    }
+
+    private byte[] json(ObjectNode node) {
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.saikumar.orderservice.event;
+
+public record OrderCancelledEvent(long orderId) {
+}
@@ -0,0 +1,6 @@
+package com.saikumar.orderservice.event;
+
+import java.math.BigDecimal;
+
+public record OrderCreatedEvent(long orderId, long userId, BigDecimal amount) {
+}
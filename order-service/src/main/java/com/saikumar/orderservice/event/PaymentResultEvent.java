@@ -0,0 +1,4 @@
+package com.saikumar.orderservice.event;
+
+public record PaymentResultEvent(long orderId, boolean success) {
+}
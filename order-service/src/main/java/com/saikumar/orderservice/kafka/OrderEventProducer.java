@@ -1,49 +1,44 @@
 package com.saikumar.orderservice.kafka;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.orderservice.event.EventCodec;
+import com.saikumar.orderservice.event.OrderCancelledEvent;
+import com.saikumar.orderservice.event.OrderCreatedEvent;
+import com.saikumar.orderservice.model.OutboxEvent;
+import com.saikumar.orderservice.repository.OutboxEventRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.math.BigDecimal;
 
+/**
+ * Records order events in the outbox table as part of the caller's transaction, so an event
+ * exists exactly when the order change it describes commits. {@link OutboxRelay} publishes them.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class OrderEventProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventCodec eventCodec;
 
     public static final String TOPIC = "order-events";
 
-    public void sendOrderCreated(Long orderId, Long userId, Double totalAmount) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("eventType", "ORDER_CREATED");
-        event.put("orderId", orderId);
-        event.put("userId", userId);
-        event.put("amount", totalAmount);
-
-        publish(orderId.toString(), event);
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void sendOrderCreated(Long orderId, Long userId, BigDecimal totalAmount) {
+        enqueue(orderId, "ORDER_CREATED", eventCodec.encode(new OrderCreatedEvent(orderId, userId, totalAmount)));
     }
 
+    @Transactional(propagation = Propagation.MANDATORY)
     public void sendOrderCancelled(Long orderId) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("eventType", "ORDER_CANCELLED");
-        event.put("orderId", orderId);
-
-        publish(orderId.toString(), event);
+        enqueue(orderId, "ORDER_CANCELLED", eventCodec.encode(new OrderCancelledEvent(orderId)));
     }
 
-    private void publish(String key, Map<String, Object> event) {
-        try {
-            String json = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(TOPIC, key, json);
-            log.info("Event sent to {}: {}", TOPIC, json);
-        } catch (Exception e) {
-            log.error("Failed to send Kafka event for key {}", key, e);
-        }
+    private void enqueue(Long orderId, String eventType, byte[] payload) {
+        outboxEventRepository.save(new OutboxEvent(TOPIC, orderId.toString(), eventType, payload));
+        log.debug("{} queued for order {} ({} bytes)", eventType, orderId, payload.length);
     }
 }
@@ -0,0 +1,167 @@
+package com.saikumar.orderservice.kafka;
+
+import com.saikumar.orderservice.model.OutboxEvent;
+import com.saikumar.orderservice.repository.OutboxEventRepository;
+import com.saikumar.orderservice.service.SchedulerLeases;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the outbox to Kafka. Each round reads a batch of unpublished rows and sends it in
+ * waves: a wave holds the next row of every key (order), so different orders are pipelined into
+ * a few broker requests while one order's rows go out one after another, each only once the one
+ * before it was acked. A key stops at its first failed send and the rest of its rows wait for the
+ * next round, so a retry can never deliver an order's events out of order. Delivered rows are
+ * then marked with one UPDATE in a short transaction of their own; no transaction or row lock is
+ * held while waiting for the broker, so a slow broker never holds up the request and consumer
+ * transactions that insert outbox rows. A lease keeps the relay on one replica at a time, because
+ * two relays draining the same order would race its events; the sends of a batch are therefore
+ * bounded to half the lease so it cannot run out mid-batch. Delivery is at-least-once: a crash
+ * between the send and the mark republishes the batch, so consumers must tolerate duplicates.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final int DELETE_CHUNK = 5000;
+
+    private static final String LEASE = "order-outbox-relay";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PublishMetrics publishMetrics;
+    private final SchedulerLeases leases;
+
+    @Value("${order.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${order.outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${order.outbox.lease:30s}")
+    private Duration leaseDuration;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, KafkaTemplate<String, byte[]> kafkaTemplate,
+                       TransactionTemplate transactionTemplate, PublishMetrics publishMetrics,
+                       SchedulerLeases leases) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.publishMetrics = publishMetrics;
+        this.leases = leases;
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:200}")
+    public void relay() {
+        // the lease is kept between ticks so the relay stays put, and renewed before every batch
+        Integer sent;
+        do {
+            if (!leases.tryAcquire(LEASE, leaseDuration)) {
+                return;
+            }
+            sent = relayBatch();
+        } while (sent == batchSize);
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        leases.release(LEASE);
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.cleanup-interval-ms:3600000}")
+    public void purgePublished() {
+        LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+        int deleted = 0;
+        Integer chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(before, DELETE_CHUNK));
+            deleted += chunk != null ? chunk : 0;
+        } while (chunk != null && chunk == DELETE_CHUNK);
+        if (deleted > 0) {
+            log.info("Purged {} published outbox events", deleted);
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.findUnpublished(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Deque<OutboxEvent>> byKey = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            byKey.computeIfAbsent(event.getMessageKey(), key -> new ArrayDeque<>()).add(event);
+        }
+
+        List<Long> delivered = new ArrayList<>(batch.size());
+        long timeoutMs = Math.min(sendTimeoutMs, leaseDuration.toMillis() / 2);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!byKey.isEmpty()) {
+            List<OutboxEvent> wave = byKey.values().stream().map(Deque::peek).toList();
+            List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(wave.size());
+            for (OutboxEvent event : wave) {
+                sends.add(publishMetrics.track(event.getTopic(),
+                        kafkaTemplate.send(event.getTopic(), event.getMessageKey(), event.getPayload())));
+            }
+            for (int i = 0; i < wave.size(); i++) {
+                OutboxEvent event = wave.get(i);
+                Deque<OutboxEvent> rest = byKey.get(event.getMessageKey());
+                if (await(sends.get(i), deadline, event)) {
+                    delivered.add(event.getId());
+                    rest.poll();
+                }
+                // a key is done once its rows are sent, or at its first failure
+                if (rest.isEmpty() || rest.peek() == event) {
+                    byKey.remove(event.getMessageKey());
+                }
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            transactionTemplate.execute(status -> outboxEventRepository.markPublished(delivered, LocalDateTime.now()));
+        }
+        if (delivered.size() < batch.size()) {
+            log.warn("Outbox relay delivered {} of {} events, the rest will be retried", delivered.size(), batch.size());
+            // a partial batch ends this round so failures back off until the next tick
+            return 0;
+        }
+        log.debug("Outbox relay published {} events", delivered.size());
+        return batch.size();
+    }
+
+    private boolean await(CompletableFuture<SendResult<String, byte[]>> send, long deadline, OutboxEvent event) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to publish outbox event {} ({}) to {}", event.getId(), event.getEventType(), event.getTopic(), e);
+            return false;
+        }
+    }
+}
@@ -1,43 +1,136 @@
 package com.saikumar.orderservice.kafka;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.orderservice.event.EventCodec;
+import com.saikumar.orderservice.event.PaymentResultEvent;
 import com.saikumar.orderservice.model.Order;
 import com.saikumar.orderservice.repository.OrderRepository;
-import lombok.RequiredArgsConstructor;
+import com.saikumar.orderservice.service.OrderSagaOrchestrator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Applies payment results in batches. A poll is collapsed to the last result per order (results
+ * for one order share a partition, so the last one seen is the latest), then each resulting
+ * status is applied with a single UPDATE, and the order sagas move on with it: a failed payment
+ * starts compensation, which releases the order's stock. If the update fails, the batch's results move to the
+ * retry topics instead of holding up the partition; undecodable records go straight to the DLT.
+ * Replaying a result is safe because transitions only apply to orders still awaiting payment, so
+ * a late result can never overwrite a newer one.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class PaymentResultConsumer {
 
+    private static final Set<Order.OrderStatus> AWAITING_PAYMENT =
+            EnumSet.of(Order.OrderStatus.PENDING, Order.OrderStatus.PAYMENT_PROCESSING);
+
     private final OrderRepository orderRepository;
-    private final ObjectMapper objectMapper;
+    private final OrderSagaOrchestrator sagaOrchestrator;
+    private final EventCodec eventCodec;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryTopics retryTopics;
+    private final Counter recordsCounter;
+    private final Counter appliedCounter;
+    private final Counter malformedCounter;
+    private final DistributionSummary batchSize;
+    private final Timer eventAge;
+
+    public PaymentResultConsumer(OrderRepository orderRepository, OrderSagaOrchestrator sagaOrchestrator, EventCodec eventCodec,
+                                 TransactionTemplate transactionTemplate, RetryTopics paymentEventRetries,
+                                 MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.sagaOrchestrator = sagaOrchestrator;
+        this.eventCodec = eventCodec;
+        this.transactionTemplate = transactionTemplate;
+        this.retryTopics = paymentEventRetries;
+        this.recordsCounter = meterRegistry.counter("order.payment.results.records");
+        this.appliedCounter = meterRegistry.counter("order.payment.results.applied");
+        this.malformedCounter = meterRegistry.counter("order.payment.results.malformed");
+        this.batchSize = meterRegistry.summary("order.payment.results.batch.size");
+        // time from the payment result being produced to it being applied; grows with consumer lag
+        this.eventAge = meterRegistry.timer("order.payment.results.age");
+        paymentEventRetries.onRetry(this::applyOne);
+    }
 
     @KafkaListener(topics = "payment-events", groupId = "order-service-group")
-    public void handlePaymentResult(String message) {
-        try {
-            Map<String, Object> event = objectMapper.readValue(message, Map.class);
-            String eventType = (String) event.get("eventType");
-            Long orderId = Long.valueOf(event.get("orderId").toString());
-
-            orderRepository.findById(orderId).ifPresent(order -> {
-                if ("PAYMENT_SUCCESS".equals(eventType)) {
-                    order.setStatus(Order.OrderStatus.CONFIRMED);
-                    log.info("Order {} confirmed after successful payment", orderId);
-                } else if ("PAYMENT_FAILED".equals(eventType)) {
-                    order.setStatus(Order.OrderStatus.PAYMENT_FAILED);
-                    log.warn("Order {} payment failed", orderId);
+    public void handlePaymentResults(List<ConsumerRecord<String, byte[]>> records) {
+        batchSize.record(records.size());
+        recordsCounter.increment(records.size());
+
+        List<CompletableFuture<Void>> rerouted = new ArrayList<>();
+        Map<Long, ConsumerRecord<String, byte[]>> latest = new LinkedHashMap<>();
+        Map<Long, Order.OrderStatus> statuses = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                if (eventCodec.decode(record.value()) instanceof PaymentResultEvent result) {
+                    latest.put(result.orderId(), record);
+                    statuses.put(result.orderId(), statusOf(result));
                 }
-                orderRepository.save(order);
-            });
+            } catch (Exception e) {
+                malformedCounter.increment();
+                rerouted.add(retryTopics.deadLetter(record, e));
+            }
+        }
 
+        Map<Order.OrderStatus, List<Long>> byStatus = new EnumMap<>(Order.OrderStatus.class);
+        statuses.forEach((orderId, status) -> byStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(orderId));
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(tx -> {
+                // sagas before orders, the lock order cancelOrder uses
+                sagaOrchestrator.onPaymentResults(byStatus.getOrDefault(Order.OrderStatus.CONFIRMED, List.of()),
+                        byStatus.getOrDefault(Order.OrderStatus.PAYMENT_FAILED, List.of()));
+                byStatus.forEach((status, orderIds) -> {
+                    int updated = orderRepository.transitionStatus(orderIds, AWAITING_PAYMENT, status, now);
+                    appliedCounter.increment(updated);
+                    log.info("{} of {} orders moved to {}", updated, orderIds.size(), status);
+                });
+            });
         } catch (Exception e) {
-            log.error("Error processing payment event: {}", message, e);
+            log.error("Failed to apply {} payment results, moving them to the retry topic", latest.size(), e);
+            latest.values().forEach(record -> rerouted.add(retryTopics.retry(record, e)));
+        }
+        // offsets are committed only once every failed record is safely on a retry topic or the DLT
+        CompletableFuture.allOf(rerouted.toArray(new CompletableFuture[0])).join();
+
+        if (!records.isEmpty()) {
+            long producedAt = records.get(records.size() - 1).timestamp();
+            eventAge.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - producedAt)));
         }
     }
+
+    // retry tiers apply results one at a time; an exception moves the record on to the next tier
+    private void applyOne(ConsumerRecord<String, byte[]> record) {
+        if (eventCodec.decode(record.value()) instanceof PaymentResultEvent result) {
+            List<Long> orderId = List.of(result.orderId());
+            Integer updated = transactionTemplate.execute(tx -> {
+                sagaOrchestrator.onPaymentResults(result.success() ? orderId : List.of(), result.success() ? List.of() : orderId);
+                return orderRepository.transitionStatus(orderId, AWAITING_PAYMENT, statusOf(result), LocalDateTime.now());
+            });
+            appliedCounter.increment(updated != null ? updated : 0);
+        }
+    }
+
+    private static Order.OrderStatus statusOf(PaymentResultEvent result) {
+        return result.success() ? Order.OrderStatus.CONFIRMED : Order.OrderStatus.PAYMENT_FAILED;
+    }
 }
@@ -0,0 +1,245 @@
+package com.saikumar.orderservice.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking retries for one topic. A record the main listener cannot handle is moved to
+ * {@code <topic>-retry-1}, and from there through further tiers, each waiting longer than the last
+ * (initial delay x multiplier^n), before landing in {@code <topic>-dlt}. The main partition keeps
+ * moving while a record waits. Every tier has its own consumer: a record carries the time it is
+ * due, and since a tier's delay is fixed the records in it are due in offset order, so the consumer
+ * pauses at the first record not yet due and resumes there. Records that can never succeed
+ * (undecodable) go straight to the DLT; an admin endpoint replays the DLT back onto the topic once
+ * the cause is fixed.
+ *
+ * payment-service keeps a copy of this class (see README); change both together.
+ */
+@Slf4j
+public class RetryTopics implements SmartLifecycle {
+
+    public static final String ATTEMPT_HEADER = "retry-attempt";
+    public static final String DUE_HEADER = "retry-due";
+    public static final String ERROR_HEADER = "retry-error";
+
+    private static final int MAX_ERROR_LENGTH = 512;
+    private static final Duration REPLAY_WAIT = Duration.ofSeconds(10);
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(ConsumerRecord<String, byte[]> record) throws Exception;
+    }
+
+    private final String topic;
+    private final String groupId;
+    private final List<Duration> delays;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> routed = new HashMap<>();
+    private final Map<String, Counter> recovered = new HashMap<>();
+    private final Counter replayed;
+
+    private final List<KafkaMessageListenerContainer<String, byte[]>> containers = new ArrayList<>();
+    private volatile RecordHandler handler;
+    private volatile boolean running;
+
+    public RetryTopics(String topic, String groupId, int tiers, Duration initialDelay, double multiplier,
+                       KafkaTemplate<String, byte[]> kafkaTemplate, ConsumerFactory<String, byte[]> consumerFactory,
+                       MeterRegistry meterRegistry) {
+        this.topic = topic;
+        this.groupId = groupId;
+        this.kafkaTemplate = kafkaTemplate;
+        this.consumerFactory = consumerFactory;
+        this.meterRegistry = meterRegistry;
+
+        List<Duration> tierDelays = new ArrayList<>(tiers);
+        double delayMs = initialDelay.toMillis();
+        for (int tier = 1; tier <= tiers; tier++) {
+            tierDelays.add(Duration.ofMillis((long) delayMs));
+            delayMs *= multiplier;
+            counters(tierName(tier));
+        }
+        this.delays = List.copyOf(tierDelays);
+        counters("dlt");
+        this.replayed = meterRegistry.counter("kafka.dlt.replayed", "topic", topic);
+    }
+
+    // how records are processed again in the retry tiers; set before the context starts
+    public void onRetry(RecordHandler handler) {
+        this.handler = handler;
+    }
+
+    public String deadLetterTopic() {
+        return topic + "-dlt";
+    }
+
+    // send a failed record to its next tier, or to the DLT once the tiers are used up
+    public CompletableFuture<Void> retry(ConsumerRecord<String, byte[]> record, Throwable error) {
+        int attempt = attemptOf(record) + 1;
+        if (attempt > delays.size()) {
+            return deadLetter(record, error);
+        }
+        long due = System.currentTimeMillis() + delays.get(attempt - 1).toMillis();
+        return route(record, tierName(attempt), attempt, due, error);
+    }
+
+    // for records that would fail the same way however often they are retried
+    public CompletableFuture<Void> deadLetter(ConsumerRecord<String, byte[]> record, Throwable error) {
+        return route(record, "dlt", attemptOf(record), 0, error);
+    }
+
+    // moves up to limit records from the DLT back onto the topic, as if newly published
+    public synchronized int replayDeadLetters(int limit) {
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        long deadline = System.nanoTime() + REPLAY_WAIT.toNanos();
+
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(groupId + "-dlt-replay", null)) {
+            consumer.subscribe(List.of(deadLetterTopic()));
+            while (sends.size() < limit && System.nanoTime() < deadline) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofSeconds(1));
+                if (records.isEmpty() && !consumer.assignment().isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (sends.size() == limit) {
+                        break;
+                    }
+                    sends.add(kafkaTemplate.send(topic, record.key(), record.value()));
+                    offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+                }
+            }
+            // only commit once everything is back on the topic, so a failed replay can be repeated
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).join();
+            if (!offsets.isEmpty()) {
+                consumer.commitSync(offsets);
+            }
+        }
+        replayed.increment(sends.size());
+        log.info("Replayed {} records from {} to {}", sends.size(), deadLetterTopic(), topic);
+        return sends.size();
+    }
+
+    @Override
+    public void start() {
+        for (int tier = 1; tier <= delays.size(); tier++) {
+            String tierTopic = topic + "-" + tierName(tier);
+            ContainerProperties properties = new ContainerProperties(tierTopic);
+            properties.setGroupId(groupId + "-" + tierName(tier));
+            properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+            String tierName = tierName(tier);
+            properties.setMessageListener((BatchAcknowledgingMessageListener<String, byte[]>) (records, ack) ->
+                    onTierBatch(tierName, records, ack));
+
+            KafkaMessageListenerContainer<String, byte[]> container = new KafkaMessageListenerContainer<>(consumerFactory, properties);
+            container.setBeanName(tierTopic + "-consumer");
+            container.start();
+            containers.add(container);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        containers.forEach(KafkaMessageListenerContainer::stop);
+        containers.clear();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // one tier consumer's poll; package-private so the tier logic can be tested without a broker
+    void onTierBatch(String tier, List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        List<CompletableFuture<Void>> rerouted = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            long wait = dueOf(record) - System.currentTimeMillis();
+            if (wait > 0) {
+                // commits what came before and pauses the tier until this record is due
+                CompletableFuture.allOf(rerouted.toArray(new CompletableFuture[0])).join();
+                ack.nack(i, Duration.ofMillis(wait));
+                return;
+            }
+            try {
+                handler.handle(record);
+                recovered.get(tier).increment();
+            } catch (Exception e) {
+                rerouted.add(retry(record, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+            }
+        }
+        CompletableFuture.allOf(rerouted.toArray(new CompletableFuture[0])).join();
+        ack.acknowledge();
+    }
+
+    private CompletableFuture<Void> route(ConsumerRecord<String, byte[]> record, String tier, int attempt, long due, Throwable error) {
+        String target = topic + "-" + tier;
+        ProducerRecord<String, byte[]> out = new ProducerRecord<>(target, record.key(), record.value());
+        Headers headers = out.headers();
+        headers.add(ATTEMPT_HEADER, Integer.toString(attempt).getBytes(StandardCharsets.UTF_8));
+        headers.add(DUE_HEADER, Long.toString(due).getBytes(StandardCharsets.UTF_8));
+        headers.add(ERROR_HEADER, describe(error).getBytes(StandardCharsets.UTF_8));
+
+        routed.get(tier).increment();
+        log.warn("Moving {}-{}@{} (key {}) to {} after attempt {}: {}", record.topic(), record.partition(),
+                record.offset(), record.key(), target, attempt, describe(error));
+        return kafkaTemplate.send(out).thenApply(result -> null);
+    }
+
+    private void counters(String tier) {
+        routed.put(tier, meterRegistry.counter("kafka.retry.routed", "topic", topic, "tier", tier));
+        recovered.put(tier, meterRegistry.counter("kafka.retry.recovered", "topic", topic, "tier", tier));
+    }
+
+    private static String tierName(int tier) {
+        return "retry-" + tier;
+    }
+
+    private static int attemptOf(ConsumerRecord<String, byte[]> record) {
+        String value = header(record, ATTEMPT_HEADER);
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+
+    private static long dueOf(ConsumerRecord<String, byte[]> record) {
+        String value = header(record, DUE_HEADER);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static String header(ConsumerRecord<String, byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private static String describe(Throwable error) {
+        String text = error.getClass().getName() + ": " + error.getMessage();
+        return text.length() > MAX_ERROR_LENGTH ? text.substring(0, MAX_ERROR_LENGTH) : text;
+    }
+}
@@ -2,6 +2,7 @@ package com.saikumar.orderservice.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
@@ -10,7 +11,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// order history seeks on (user_id, created_at, id) newest first; the expiry sweeper on (status, updated_at, id)
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_orders_status_updated", columnList = "status, updated_at, id")
+})
 @Data
 @NoArgsConstructor
 public class Order {
@@ -19,7 +24,7 @@ public class Order {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false)
+    @Column(name = "user_id", nullable = false)
     private Long userId;
 
     @Enumerated(EnumType.STRING)
@@ -31,7 +36,9 @@ public class Order {
 
     private String notes;
 
+    // listings that don't fetch-join load items for up to 100 orders per query instead of one per order
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     private List<OrderItem> items = new ArrayList<>();
 
     @Column(name = "created_at", updatable = false)
@@ -53,6 +60,10 @@ public class Order {
         SHIPPED,
         DELIVERED,
         CANCELLED,
-        PAYMENT_FAILED
+        PAYMENT_FAILED,
+        // a product was unavailable or out of stock when the order was reserved
+        REJECTED,
+        // no payment result arrived in time; stock released by the expiry sweeper
+        EXPIRED
     }
 }
@@ -28,8 +28,18 @@ public class OrderItem {
 
     public OrderItem(Long productId, String productName, Integer quantity, BigDecimal unitPrice) {
         this.productId = productId;
-        this.productName = productName;
         this.quantity = quantity;
+        price(productName, unitPrice);
+    }
+
+    // a line as ordered; name and price are filled in when the order saga reserves stock
+    public OrderItem(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public void price(String productName, BigDecimal unitPrice) {
+        this.productName = productName;
         this.unitPrice = unitPrice;
         this.subtotal = unitPrice.multiply(BigDecimal.valueOf(quantity));
     }
@@ -0,0 +1,99 @@
+package com.saikumar.orderservice.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where an order is in its lifecycle: stock reserved, payment awaited, and either confirmed or
+ * compensated. Pending compensations are flags, so a cancel that arrives while a payment
+ * failure is still being compensated just adds the refund to the same run.
+ */
+@Entity
+// the orchestrator polls (state, next_attempt_at) for due work
+@Table(name = "order_sagas", indexes = @Index(name = "idx_sagas_due", columnList = "state, next_attempt_at"))
+@Data
+@NoArgsConstructor
+public class OrderSaga {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SagaState state;
+
+    private boolean stockReserved;
+
+    // reserved before reservations were keyed by order id, so the release has to say what to hand back
+    private boolean legacyReservation;
+
+    // compensations still to run
+    private boolean releaseStock;
+    private boolean refundPayment;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // set while an orchestrator round works on the saga; any other change clears it
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(length = 512)
+    private String lastError;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public OrderSaga(Long orderId) {
+        this.orderId = orderId;
+        this.state = SagaState.RESERVING;
+        this.nextAttemptAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    public void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // the claim keeps other rounds away until it runs out, which is when a crashed round is repeated
+    public void claim(String token, LocalDateTime until) {
+        this.claimToken = token;
+        this.nextAttemptAt = until;
+    }
+
+    public void compensate(boolean release, boolean refund) {
+        this.state = SagaState.COMPENSATING;
+        this.releaseStock |= release;
+        this.refundPayment |= refund;
+        this.attempts = 0;
+        this.nextAttemptAt = LocalDateTime.now();
+        this.claimToken = null;
+    }
+
+    // clears any pending retry; the orchestrator only picks up RESERVING and COMPENSATING sagas
+    public void moveTo(SagaState state) {
+        this.state = state;
+        this.attempts = 0;
+        this.nextAttemptAt = null;
+        this.claimToken = null;
+    }
+
+    public enum SagaState {
+        RESERVING,
+        AWAITING_PAYMENT,
+        COMPLETED,
+        COMPENSATING,
+        COMPENSATED,
+        // retries exhausted, needs a look
+        FAILED
+    }
+}
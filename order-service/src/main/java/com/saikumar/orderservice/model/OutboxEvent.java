@@ -0,0 +1,45 @@
+package com.saikumar.orderservice.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// An event waiting to be published, written in the same transaction as the order change it describes.
+@Entity
+@Table(name = "order_outbox", indexes = @Index(name = "idx_outbox_unpublished", columnList = "published_at, id"))
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(name = "message_key", nullable = false)
+    private String messageKey;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    // encoded by EventCodec, binary or legacy JSON
+    @Column(nullable = false, columnDefinition = "BLOB")
+    private byte[] payload;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    public OutboxEvent(String topic, String messageKey, String eventType, byte[] payload) {
+        this.topic = topic;
+        this.messageKey = messageKey;
+        this.eventType = eventType;
+        this.payload = payload;
+    }
+}
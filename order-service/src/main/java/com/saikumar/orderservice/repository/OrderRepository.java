@@ -1,14 +1,76 @@
 package com.saikumar.orderservice.repository;
 
+import com.saikumar.orderservice.dto.OrderExportRow;
 import com.saikumar.orderservice.model.Order;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
+
+    @EntityGraph(attributePaths = "items")
     List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
+
     Page<Order> findByUserId(Long userId, Pageable pageable);
+
+    // keyset order history: the pageable only carries the limit, a List return skips the count query
+    List<Order> findByUserIdOrderByCreatedAtDescIdDesc(Long userId, Pageable limit);
+
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId AND " +
+           "(o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findByUserIdBefore(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") Long id, Pageable limit);
+
     List<Order> findByStatus(Order.OrderStatus status);
+
+    // keyset over idx_orders_status_updated: (id, updatedAt) of orders in a status since before the cutoff
+    @Query("SELECT o.id, o.updatedAt FROM Order o WHERE o.status = :status AND o.updatedAt < :cutoff AND " +
+           "(o.updatedAt > :afterUpdatedAt OR (o.updatedAt = :afterUpdatedAt AND o.id > :afterId)) " +
+           "ORDER BY o.updatedAt, o.id")
+    List<Object[]> findStaleAfter(@Param("status") Order.OrderStatus status, @Param("cutoff") LocalDateTime cutoff,
+                                  @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt, @Param("afterId") Long afterId,
+                                  Pageable limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids")
+    List<Order> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // fetch size Integer.MIN_VALUE puts MySQL Connector/J in streaming mode for this one query, so the
+    // driver hands over rows as they arrive instead of buffering the table; other queries are unaffected
+    String STREAM_ROWS = "" + Integer.MIN_VALUE;
+
+    // forward-only read for exports: flat order/item rows in order id order, as DTOs so nothing is
+    // kept in the persistence context; streamed row by row (see STREAM_ROWS)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_ROWS))
+    @Query("SELECT new com.saikumar.orderservice.dto.OrderExportRow(o.id, o.userId, o.status, o.totalAmount, " +
+           "o.shippingAddress, o.notes, o.createdAt, o.updatedAt, i.id, i.productId, i.productName, i.quantity, " +
+           "i.unitPrice, i.subtotal) FROM Order o LEFT JOIN o.items i ORDER BY o.id, i.id")
+    Stream<OrderExportRow> streamExportRows();
+
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.id IN :ids")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // only moves orders still in one of the expected states, so late or replayed events can't undo a cancel
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :status, o.updatedAt = :now WHERE o.id IN :ids AND o.status IN :from")
+    int transitionStatus(@Param("ids") Collection<Long> ids, @Param("from") Collection<Order.OrderStatus> from,
+                         @Param("status") Order.OrderStatus status, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,52 @@
+package com.saikumar.orderservice.repository;
+
+import com.saikumar.orderservice.model.OrderSaga;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrderSagaRepository extends JpaRepository<OrderSaga, Long> {
+
+    // SKIP LOCKED lets several orchestrator instances claim disjoint batches; claimed sagas are not due
+    // again until their claim runs out
+    @Query(value = "SELECT * FROM order_sagas WHERE state = :state AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OrderSaga> lockDue(@Param("state") String state, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // orchestrator rounds only hold saga locks while claiming and recording, never across remote calls
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM OrderSaga s WHERE s.orderId = :orderId")
+    Optional<OrderSaga> findForUpdate(@Param("orderId") Long orderId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM OrderSaga s WHERE s.orderId IN :orderIds")
+    List<OrderSaga> lockByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query("UPDATE OrderSaga s SET s.state = :to, s.nextAttemptAt = NULL, s.claimToken = NULL, s.updatedAt = :now " +
+           "WHERE s.orderId IN :ids AND s.state = :from")
+    int transition(@Param("ids") Collection<Long> ids, @Param("from") OrderSaga.SagaState from,
+                   @Param("to") OrderSaga.SagaState to, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE OrderSaga s SET s.state = :to, s.releaseStock = s.stockReserved, s.attempts = 0, " +
+           "s.nextAttemptAt = :now, s.claimToken = NULL, s.updatedAt = :now WHERE s.orderId IN :ids AND s.state = :from")
+    int startCompensation(@Param("ids") Collection<Long> ids, @Param("from") OrderSaga.SagaState from,
+                          @Param("to") OrderSaga.SagaState to, @Param("now") LocalDateTime now);
+
+    // a payment that succeeded after its order was cancelled or expired still has to be refunded
+    @Modifying
+    @Query("UPDATE OrderSaga s SET s.state = :to, s.refundPayment = true, s.attempts = 0, " +
+           "s.nextAttemptAt = :now, s.claimToken = NULL, s.updatedAt = :now WHERE s.orderId IN :ids AND s.state IN :from")
+    int requestRefund(@Param("ids") Collection<Long> ids, @Param("from") Collection<OrderSaga.SagaState> from,
+                      @Param("to") OrderSaga.SagaState to, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,152 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderSaga;
+import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Expires orders stuck in PAYMENT_PROCESSING, e.g. because their payment event was lost, and
+ * gives their stock back. Stale orders are found by walking idx_orders_status_updated in keyset
+ * batches; each batch is locked (saga, then order, as everywhere else), re-checked, marked
+ * EXPIRED with one UPDATE and handed to the saga for compensation, which releases the stock of
+ * many orders in one call and refunds any payment that did go through. A lease makes sure only
+ * one replica sweeps at a time.
+ */
+@Component
+@Slf4j
+public class OrderExpirySweeper {
+
+    private static final String LEASE = "order-expiry-sweeper";
+
+    private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final OrderRepository orderRepository;
+    private final OrderSagaRepository sagaRepository;
+    private final SchedulerLeases leases;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter scannedCounter;
+    private final Counter expiredCounter;
+    private final DistributionSummary expiredPerSweep;
+    private final Timer sweepTimer;
+
+    @Value("${order.expiry.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${order.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order.expiry.lease:5m}")
+    private Duration leaseDuration;
+
+    public OrderExpirySweeper(OrderRepository orderRepository, OrderSagaRepository sagaRepository,
+                              SchedulerLeases leases, TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.sagaRepository = sagaRepository;
+        this.leases = leases;
+        this.transactionTemplate = transactionTemplate;
+        this.scannedCounter = meterRegistry.counter("order.expiry.scanned");
+        this.expiredCounter = meterRegistry.counter("order.expiry.expired");
+        this.expiredPerSweep = meterRegistry.summary("order.expiry.expired.per.sweep");
+        this.sweepTimer = meterRegistry.timer("order.expiry.sweep.duration");
+    }
+
+    @Scheduled(fixedDelayString = "${order.expiry.sweep-interval-ms:60000}", initialDelayString = "${order.expiry.sweep-interval-ms:60000}")
+    public void sweep() {
+        if (!leases.tryAcquire(LEASE, leaseDuration)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(timeout);
+        LocalDateTime afterUpdatedAt = START;
+        long afterId = 0;
+        int scanned = 0;
+        int expired = 0;
+        int batches = 0;
+        try {
+            List<Object[]> stale;
+            do {
+                stale = orderRepository.findStaleAfter(Order.OrderStatus.PAYMENT_PROCESSING, cutoff,
+                        afterUpdatedAt, afterId, PageRequest.of(0, batchSize));
+                if (stale.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = stale.stream().map(row -> (Long) row[0]).toList();
+                Integer count = transactionTemplate.execute(tx -> expire(ids, cutoff));
+                expired += count != null ? count : 0;
+                scanned += stale.size();
+                batches++;
+
+                Object[] last = stale.get(stale.size() - 1);
+                afterId = (Long) last[0];
+                afterUpdatedAt = (LocalDateTime) last[1];
+                // a long sweep renews its lease between batches, and stops if another replica took over
+            } while (stale.size() == batchSize && leases.tryAcquire(LEASE, leaseDuration));
+        } finally {
+            leases.release(LEASE);
+            long elapsed = System.nanoTime() - start;
+            sweepTimer.record(Duration.ofNanos(elapsed));
+            scannedCounter.increment(scanned);
+            expiredCounter.increment(expired);
+            expiredPerSweep.record(expired);
+            if (scanned > 0) {
+                log.info("Expiry sweep: scanned {} stale orders in {} batches, expired {} in {} ms",
+                        scanned, batches, expired, Duration.ofNanos(elapsed).toMillis());
+            }
+        }
+    }
+
+    private int expire(List<Long> ids, LocalDateTime cutoff) {
+        Map<Long, OrderSaga> sagas = new HashMap<>();
+        sagaRepository.lockByOrderIdIn(ids).forEach(saga -> sagas.put(saga.getOrderId(), saga));
+
+        // re-checked under lock: a payment result may have landed since the scan
+        List<Long> toExpire = new ArrayList<>();
+        for (Order order : orderRepository.lockByIdIn(ids)) {
+            if (order.getStatus() != Order.OrderStatus.PAYMENT_PROCESSING || !order.getUpdatedAt().isBefore(cutoff)) {
+                continue;
+            }
+            OrderSaga saga = sagas.get(order.getId());
+            if (saga == null) {
+                // orders placed before sagas existed reserved their stock up front
+                saga = new OrderSaga(order.getId());
+                saga.setStockReserved(true);
+                saga.setLegacyReservation(true);
+                saga.compensate(true, true);
+                sagaRepository.save(saga);
+            } else if (saga.getState() == OrderSaga.SagaState.AWAITING_PAYMENT) {
+                // the refund step learns from payment-service whether anything was charged
+                saga.compensate(saga.isStockReserved(), true);
+            } else {
+                continue;
+            }
+            toExpire.add(order.getId());
+        }
+
+        if (toExpire.isEmpty()) {
+            return 0;
+        }
+        return orderRepository.transitionStatus(toExpire, Set.of(Order.OrderStatus.PAYMENT_PROCESSING),
+                Order.OrderStatus.EXPIRED, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,109 @@
+package com.saikumar.orderservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.saikumar.orderservice.dto.OrderDto;
+import com.saikumar.orderservice.dto.OrderExportRow;
+import com.saikumar.orderservice.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes every order to a response while reading one forward-only cursor over orders joined to
+ * their items, so memory stays flat however large the table is. NDJSON emits one order per line
+ * (consecutive rows of the same order are folded together); CSV emits one line per order item.
+ */
+@Component
+@Slf4j
+public class OrderExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "order_id,user_id,status,total_amount,shipping_address,notes,created_at,"
+            + "updated_at,item_id,product_id,product_name,quantity,unit_price,subtotal\n";
+
+    private final OrderRepository orderRepository;
+    private final ObjectWriter orderWriter;
+
+    public OrderExporter(OrderRepository orderRepository, ObjectMapper objectMapper) {
+        this.orderRepository = orderRepository;
+        this.orderWriter = objectMapper.writerFor(OrderDto.OrderResponse.class);
+    }
+
+    @Transactional(readOnly = true)
+    public long export(boolean csv, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (csv) {
+            writer.write(CSV_HEADER);
+        }
+
+        long orders = 0;
+        OrderExportRow current = null;
+        List<OrderDto.OrderItemResponse> items = new ArrayList<>();
+        try (Stream<OrderExportRow> rows = orderRepository.streamExportRows()) {
+            for (OrderExportRow row : (Iterable<OrderExportRow>) rows::iterator) {
+                if (csv) {
+                    writeCsv(writer, row);
+                    if (current == null || !current.orderId().equals(row.orderId())) {
+                        orders++;
+                    }
+                    current = row;
+                    continue;
+                }
+                if (current != null && !current.orderId().equals(row.orderId())) {
+                    writeJson(writer, current, items);
+                    items.clear();
+                    orders++;
+                }
+                current = row;
+                if (row.itemId() != null) {
+                    items.add(new OrderDto.OrderItemResponse(row.itemId(), row.productId(), row.productName(),
+                            row.quantity(), row.unitPrice(), row.subtotal()));
+                }
+            }
+        }
+        if (!csv && current != null) {
+            writeJson(writer, current, items);
+            orders++;
+        }
+        writer.flush();
+        log.info("Exported {} orders as {}", orders, csv ? "CSV" : "NDJSON");
+        return orders;
+    }
+
+    private void writeJson(Writer writer, OrderExportRow order, List<OrderDto.OrderItemResponse> items) throws IOException {
+        writer.write(orderWriter.writeValueAsString(new OrderDto.OrderResponse(order.orderId(), order.userId(),
+                order.status(), order.totalAmount(), order.shippingAddress(), order.notes(), List.copyOf(items),
+                order.createdAt(), order.updatedAt())));
+        writer.write('\n');
+    }
+
+    private static void writeCsv(Writer writer, OrderExportRow row) throws IOException {
+        writer.write(csv(row.orderId()) + ',' + csv(row.userId()) + ',' + csv(row.status()) + ','
+                + csv(row.totalAmount()) + ',' + csv(row.shippingAddress()) + ',' + csv(row.notes()) + ','
+                + csv(row.createdAt()) + ',' + csv(row.updatedAt()) + ',' + csv(row.itemId()) + ','
+                + csv(row.productId()) + ',' + csv(row.productName()) + ',' + csv(row.quantity()) + ','
+                + csv(row.unitPrice()) + ',' + csv(row.subtotal()) + '\n');
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,435 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.kafka.OrderEventProducer;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderItem;
+import com.saikumar.orderservice.model.OrderSaga;
+import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs the order saga (reserve stock, await payment, then confirm or compensate) from the
+ * order_sagas table, so request handlers only write rows and return. Each round claims a batch of
+ * due sagas and commits, makes its remote calls with no transaction open, then records the
+ * outcomes in a second short transaction; cancels and payment results never wait on
+ * product-service or payment-service. New orders are priced with one product lookup and reserved
+ * concurrently; orders to compensate have their stock handed back in one release call and their
+ * payments refunded in one refund call. Failed calls are retried with exponential backoff; a saga
+ * that runs out of attempts is marked FAILED, except a reservation, which is released instead.
+ * Like the outbox relay the calls are at-least-once: a crash, or a saga changing under a running
+ * round, repeats them. Reserve and release carry the order id, which product-service uses to
+ * make repeats no-ops.
+ */
+@Component
+@Slf4j
+public class OrderSagaOrchestrator {
+
+    private static final int MAX_ERROR_LENGTH = 512;
+    private static final Set<OrderSaga.SagaState> COMPENSATED_OR_COMPENSATING =
+            EnumSet.of(OrderSaga.SagaState.COMPENSATING, OrderSaga.SagaState.COMPENSATED);
+
+    private final OrderRepository orderRepository;
+    private final OrderSagaRepository sagaRepository;
+    private final OrderEventProducer eventProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final WebClient.Builder webClientBuilder;
+
+    @Value("${order.saga.batch-size:100}")
+    private int batchSize;
+
+    @Value("${order.saga.reserve-concurrency:16}")
+    private int reserveConcurrency;
+
+    @Value("${order.saga.call-timeout-ms:10000}")
+    private long callTimeoutMs;
+
+    @Value("${order.saga.claim-timeout-ms:120000}")
+    private long claimTimeoutMs;
+
+    @Value("${order.saga.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${order.saga.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${order.saga.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    public OrderSagaOrchestrator(OrderRepository orderRepository, OrderSagaRepository sagaRepository,
+                                 OrderEventProducer eventProducer, TransactionTemplate transactionTemplate,
+                                 WebClient.Builder webClientBuilder) {
+        this.orderRepository = orderRepository;
+        this.sagaRepository = sagaRepository;
+        this.eventProducer = eventProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.webClientBuilder = webClientBuilder;
+    }
+
+    @Scheduled(fixedDelayString = "${order.saga.poll-interval-ms:500}")
+    public void run() {
+        drain(OrderSaga.SagaState.RESERVING, this::reserve);
+        drain(OrderSaga.SagaState.COMPENSATING, this::compensate);
+    }
+
+    // payment results are applied in the consumer's transaction, alongside the order status change
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onPaymentResults(Collection<Long> succeeded, Collection<Long> failed) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!succeeded.isEmpty()) {
+            sagaRepository.transition(succeeded, OrderSaga.SagaState.AWAITING_PAYMENT, OrderSaga.SagaState.COMPLETED, now);
+            int late = sagaRepository.requestRefund(succeeded, COMPENSATED_OR_COMPENSATING, OrderSaga.SagaState.COMPENSATING, now);
+            if (late > 0) {
+                log.info("Refunding {} payments that succeeded after their order was cancelled or expired", late);
+            }
+        }
+        if (!failed.isEmpty()) {
+            int compensating = sagaRepository.startCompensation(failed, OrderSaga.SagaState.AWAITING_PAYMENT,
+                    OrderSaga.SagaState.COMPENSATING, now);
+            log.info("Releasing stock for {} orders with failed payments", compensating);
+        }
+    }
+
+    private void drain(OrderSaga.SagaState state, Consumer<Claim> step) {
+        try {
+            // keep going while batches come back full, then wait for the next tick
+            Claim claim;
+            do {
+                claim = claim(state);
+                if (!claim.sagas().isEmpty()) {
+                    step.accept(claim);
+                }
+            } while (claim.sagas().size() == batchSize);
+        } catch (Exception e) {
+            log.error("Order saga round for {} failed, will retry", state, e);
+        }
+    }
+
+    /**
+     * Takes a batch of due sagas in a short transaction: each gets this round's token and is
+     * pushed out of the due window for claim-timeout, so no other round picks it up while the
+     * remote calls run, and no lock is held during them. Should this instance die mid-round the
+     * claim simply runs out and another round repeats the (idempotent) calls.
+     */
+    private Claim claim(OrderSaga.SagaState state) {
+        return transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OrderSaga> due = sagaRepository.lockDue(state.name(), now, batchSize);
+            if (due.isEmpty()) {
+                return new Claim(null, List.of(), Map.of());
+            }
+            String token = UUID.randomUUID().toString();
+            LocalDateTime until = now.plusNanos(claimTimeoutMs * 1_000_000);
+            due.forEach(saga -> saga.claim(token, until));
+            return new Claim(token, due, byId(orderRepository.findWithItemsByIdIn(orderIds(due))));
+        });
+    }
+
+    /**
+     * Applies a round's outcomes in a second short transaction. Each saga is locked again, before
+     * its order as everywhere else, and only updated if it still carries this round's token:
+     * a cancel, a payment result or an expired claim clears or replaces it, and whatever changed
+     * the saga also decided what runs next, so this round's outcome is dropped.
+     */
+    private void record(Claim claim, BiConsumer<OrderSaga, Order> outcome) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            List<Long> ids = orderIds(claim.sagas());
+            List<OrderSaga> sagas = sagaRepository.lockByOrderIdIn(ids);
+            Map<Long, Order> orders = byId(orderRepository.findWithItemsByIdIn(ids));
+            for (OrderSaga saga : sagas) {
+                if (!claim.token().equals(saga.getClaimToken())) {
+                    log.info("Order saga {} changed while its {} step ran, dropping the outcome", saga.getOrderId(), saga.getState());
+                    continue;
+                }
+                saga.setClaimToken(null);
+                outcome.accept(saga, orders.get(saga.getOrderId()));
+            }
+        });
+    }
+
+    private void reserve(Claim claim) {
+        List<Long> productIds = claim.orders().values().stream()
+                .flatMap(order -> order.getItems().stream())
+                .map(OrderItem::getProductId)
+                .distinct()
+                .toList();
+
+        Map<Long, Map<String, Object>> products;
+        try {
+            products = fetchProducts(productIds);
+        } catch (Exception e) {
+            record(claim, (saga, order) -> retryLater(saga, order, e));
+            return;
+        }
+
+        // orders still PENDING with every product available; the rest are settled when recording
+        List<Order> toReserve = claim.orders().values().stream()
+                .filter(order -> order.getStatus() == Order.OrderStatus.PENDING && unavailable(order, products) == null)
+                .toList();
+
+        // a reservation is all-or-nothing per order, so each order is its own call; they run concurrently
+        Map<Long, Optional<Throwable>> outcomes = Flux.fromIterable(toReserve)
+                .flatMap(order -> reserveStock(order)
+                        .thenReturn(Optional.<Throwable>empty())
+                        .onErrorResume(e -> Mono.just(Optional.of(e)))
+                        .map(outcome -> Map.entry(order.getId(), outcome)), reserveConcurrency)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .block();
+
+        record(claim, (saga, order) -> {
+            if (order == null || order.getStatus() != Order.OrderStatus.PENDING) {
+                // deleted or moved on outside the saga; hand back anything reserved under its id
+                saga.compensate(true, false);
+                return;
+            }
+            Long unavailable = unavailable(order, products);
+            if (unavailable != null) {
+                reject(saga, order, "Product not found: " + unavailable);
+                return;
+            }
+            Optional<Throwable> failure = outcomes != null
+                    ? outcomes.getOrDefault(order.getId(), Optional.empty())
+                    : Optional.empty();
+            if (failure.isEmpty()) {
+                price(order, products);
+                order.setStatus(Order.OrderStatus.PAYMENT_PROCESSING);
+                saga.setStockReserved(true);
+                saga.moveTo(OrderSaga.SagaState.AWAITING_PAYMENT);
+                // queued in the outbox with the saga step; the relay publishes it to payment service after commit
+                eventProducer.sendOrderCreated(order.getId(), order.getUserId(), order.getTotalAmount());
+                log.info("Order {} reserved for user {}, total: {}", order.getId(), order.getUserId(), order.getTotalAmount());
+            } else if (isRejection(failure.get())) {
+                reject(saga, order, ((WebClientResponseException) failure.get()).getResponseBodyAsString());
+            } else {
+                retryLater(saga, order, failure.get());
+            }
+        });
+    }
+
+    private void compensate(Claim claim) {
+        Map<Long, Throwable> errors = new HashMap<>();
+        Set<Long> released = new HashSet<>();
+        Set<Long> refunded = new HashSet<>();
+
+        List<OrderSaga> releasing = claim.sagas().stream().filter(OrderSaga::isReleaseStock).toList();
+        if (!releasing.isEmpty()) {
+            List<Map<String, Object>> releases = new ArrayList<>();
+            for (OrderSaga saga : releasing) {
+                Order order = claim.orders().get(saga.getOrderId());
+                if (order != null && !order.getItems().isEmpty()) {
+                    releases.add(Map.of("orderId", saga.getOrderId(), "untracked", saga.isLegacyReservation(),
+                            "items", items(order)));
+                }
+            }
+            try {
+                releaseStock(releases);
+                released.addAll(orderIds(releasing));
+            } catch (Exception e) {
+                releasing.forEach(saga -> errors.put(saga.getOrderId(), e));
+            }
+        }
+
+        List<OrderSaga> refunding = claim.sagas().stream().filter(OrderSaga::isRefundPayment).toList();
+        if (!refunding.isEmpty()) {
+            try {
+                Map<String, String> outcomes = refundPayments(orderIds(refunding));
+                for (OrderSaga saga : refunding) {
+                    String outcome = outcomes.get(saga.getOrderId().toString());
+                    // NOT_FOUND: nothing charged yet; should the payment still succeed, onPaymentResults asks again
+                    if ("REFUNDED".equals(outcome) || "NOT_CHARGED".equals(outcome) || "NOT_FOUND".equals(outcome)) {
+                        refunded.add(saga.getOrderId());
+                    } else {
+                        errors.putIfAbsent(saga.getOrderId(), new IllegalStateException("Payment not settled yet"));
+                    }
+                }
+            } catch (Exception e) {
+                refunding.forEach(saga -> errors.putIfAbsent(saga.getOrderId(), e));
+            }
+        }
+
+        record(claim, (saga, order) -> {
+            if (released.contains(saga.getOrderId())) {
+                saga.setReleaseStock(false);
+            }
+            if (refunded.contains(saga.getOrderId())) {
+                saga.setRefundPayment(false);
+            }
+            if (!saga.isReleaseStock() && !saga.isRefundPayment()) {
+                saga.moveTo(OrderSaga.SagaState.COMPENSATED);
+                log.info("Order {} compensated", saga.getOrderId());
+            } else {
+                retryLater(saga, null, errors.get(saga.getOrderId()));
+            }
+        });
+    }
+
+    // the first product that is missing or inactive, if any
+    private static Long unavailable(Order order, Map<Long, Map<String, Object>> products) {
+        for (OrderItem item : order.getItems()) {
+            Map<String, Object> product = products.get(item.getProductId());
+            if (product == null || !Boolean.TRUE.equals(product.get("active"))) {
+                return item.getProductId();
+            }
+        }
+        return null;
+    }
+
+    // fills in names and prices; only called once every product is known to be available
+    private void price(Order order, Map<Long, Map<String, Object>> products) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItem item : order.getItems()) {
+            Map<String, Object> product = products.get(item.getProductId());
+            item.price((String) product.get("name"), new BigDecimal(product.get("price").toString()));
+            total = total.add(item.getSubtotal());
+        }
+        order.setTotalAmount(total);
+    }
+
+    private void reject(OrderSaga saga, Order order, String reason) {
+        order.setStatus(Order.OrderStatus.REJECTED);
+        saga.setLastError(truncate(reason));
+        saga.moveTo(OrderSaga.SagaState.COMPENSATED);
+        log.info("Order {} rejected: {}", order.getId(), reason);
+    }
+
+    private void retryLater(OrderSaga saga, Order order, Throwable error) {
+        saga.setAttempts(saga.getAttempts() + 1);
+        saga.setLastError(truncate(String.valueOf(error)));
+        if (saga.getAttempts() >= maxAttempts) {
+            log.error("Order saga {} failed in {} after {} attempts", saga.getOrderId(), saga.getState(), saga.getAttempts(), error);
+            if (saga.getState() == OrderSaga.SagaState.RESERVING) {
+                // a reservation that timed out may still have gone through; releasing by order id
+                // hands it back if so, and otherwise keeps it from landing later
+                if (order != null) {
+                    order.setStatus(Order.OrderStatus.REJECTED);
+                }
+                saga.compensate(true, false);
+                return;
+            }
+            saga.moveTo(OrderSaga.SagaState.FAILED);
+            return;
+        }
+        long backoff = Math.min(retryBackoffMs << Math.min(saga.getAttempts() - 1, 20), maxBackoffMs);
+        saga.setNextAttemptAt(LocalDateTime.now().plusNanos(backoff * 1_000_000));
+        log.warn("Order saga {} step {} failed (attempt {}), retrying in {} ms: {}",
+                saga.getOrderId(), saga.getState(), saga.getAttempts(), backoff, error);
+    }
+
+    private Map<Long, Map<String, Object>> fetchProducts(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Map<String, Object>> found = webClientBuilder.build()
+                .post()
+                .uri("http://product-service/api/products/batch")
+                .bodyValue(productIds)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .block(Duration.ofMillis(callTimeoutMs));
+
+        Map<Long, Map<String, Object>> byId = new HashMap<>();
+        if (found != null) {
+            for (Map<String, Object> product : found) {
+                byId.put(Long.valueOf(product.get("id").toString()), product);
+            }
+        }
+        return byId;
+    }
+
+    // one all-or-nothing reservation for the whole order; product-service rolls back if any item is
+    // short, and treats a repeat for the same order id as already done
+    private Mono<Void> reserveStock(Order order) {
+        return webClientBuilder.build()
+                .put()
+                .uri("http://product-service/api/products/stock/reserve")
+                .bodyValue(Map.of("orderId", order.getId(), "items", items(order)))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(Duration.ofMillis(callTimeoutMs))
+                .then();
+    }
+
+    // releases are keyed by order id too, so repeating one (say, after our commit failed) hands nothing back twice
+    private void releaseStock(List<Map<String, Object>> releases) {
+        if (releases.isEmpty()) {
+            return;
+        }
+        webClientBuilder.build()
+                .put()
+                .uri("http://product-service/api/products/stock/release")
+                .bodyValue(Map.of("orders", releases))
+                .retrieve()
+                .toBodilessEntity()
+                .block(Duration.ofMillis(callTimeoutMs));
+    }
+
+    // order id -> REFUNDED, NOT_CHARGED, NOT_FOUND or PENDING
+    private Map<String, String> refundPayments(List<Long> orderIds) {
+        Map<String, String> outcomes = webClientBuilder.build()
+                .put()
+                .uri("http://payment-service/api/payments/refunds")
+                .bodyValue(orderIds)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, String>>() {})
+                .block(Duration.ofMillis(callTimeoutMs));
+        return outcomes != null ? outcomes : Map.of();
+    }
+
+    private static List<Map<String, Object>> items(Order order) {
+        return order.getItems().stream()
+                .map(item -> Map.<String, Object>of("productId", item.getProductId(), "quantity", item.getQuantity()))
+                .toList();
+    }
+
+    // 4xx means the order itself can't be reserved; conflicts and throttling are worth another try
+    private static boolean isRejection(Throwable error) {
+        return error instanceof WebClientResponseException response
+                && response.getStatusCode().is4xxClientError()
+                && response.getStatusCode().value() != 409
+                && response.getStatusCode().value() != 429;
+    }
+
+    private static List<Long> orderIds(List<OrderSaga> sagas) {
+        return sagas.stream().map(OrderSaga::getOrderId).toList();
+    }
+
+    private static Map<Long, Order> byId(List<Order> orders) {
+        Map<Long, Order> byId = new HashMap<>();
+        orders.forEach(order -> byId.put(order.getId(), order));
+        return byId;
+    }
+
+    // a round's claimed sagas as of the claim, with their orders and items; read-only snapshots
+    private record Claim(String token, List<OrderSaga> sagas, Map<Long, Order> orders) {}
+
+    private static String truncate(String text) {
+        return text != null && text.length() > MAX_ERROR_LENGTH ? text.substring(0, MAX_ERROR_LENGTH) : text;
+    }
+}
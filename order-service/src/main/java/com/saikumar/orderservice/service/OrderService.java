@@ -1,22 +1,24 @@
 package com.saikumar.orderservice.service;
 
+import com.saikumar.orderservice.dto.CursorPage;
+import com.saikumar.orderservice.dto.OrderCursor;
 import com.saikumar.orderservice.dto.OrderDto;
 import com.saikumar.orderservice.exception.OrderNotFoundException;
 import com.saikumar.orderservice.kafka.OrderEventProducer;
 import com.saikumar.orderservice.model.Order;
 import com.saikumar.orderservice.model.OrderItem;
+import com.saikumar.orderservice.model.OrderSaga;
 import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import java.math.BigDecimal;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -24,114 +26,128 @@ import java.util.Map;
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderSagaRepository sagaRepository;
     private final OrderEventProducer eventProducer;
-    private final WebClient.Builder webClientBuilder;
 
+    /**
+     * Records the order and starts its saga; nothing downstream is called here. The order comes
+     * back PENDING, and {@link OrderSagaOrchestrator} prices it, reserves its stock and hands it
+     * to payment, or marks it REJECTED if a product is unavailable.
+     */
     @Transactional
-    public Order createOrder(OrderDto.CreateOrderRequest req) {
+    public OrderDto.OrderResponse createOrder(OrderDto.CreateOrderRequest req) {
         Order order = new Order();
         order.setUserId(req.getUserId());
         order.setShippingAddress(req.getShippingAddress());
         order.setNotes(req.getNotes());
         order.setStatus(Order.OrderStatus.PENDING);
 
-        BigDecimal total = BigDecimal.ZERO;
-
         for (OrderDto.OrderItemRequest itemReq : req.getItems()) {
-            // fetch product info from product-service
-            Map productData = webClientBuilder.build()
-                    .get()
-                    .uri("http://product-service/api/products/" + itemReq.getProductId())
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-
-            if (productData == null) {
-                throw new RuntimeException("Product not found: " + itemReq.getProductId());
-            }
-
-            // reduce stock - product service handles the check
-            webClientBuilder.build()
-                    .put()
-                    .uri("http://product-service/api/products/" + itemReq.getProductId()
-                            + "/stock/reduce?quantity=" + itemReq.getQuantity())
-                    .retrieve()
-                    .toBodilessEntity()
-                    .block();
-
-            String productName = (String) productData.get("name");
-            BigDecimal price = new BigDecimal(productData.get("price").toString());
-
-            OrderItem item = new OrderItem(
-                    itemReq.getProductId(),
-                    productName,
-                    itemReq.getQuantity(),
-                    price
-            );
+            OrderItem item = new OrderItem(itemReq.getProductId(), itemReq.getQuantity());
             item.setOrder(order);
             order.getItems().add(item);
-            total = total.add(item.getSubtotal());
         }
 
-        order.setTotalAmount(total);
-        order.setStatus(Order.OrderStatus.PAYMENT_PROCESSING);
         Order saved = orderRepository.save(order);
-
-        // fire and forget to payment service via Kafka
-        eventProducer.sendOrderCreated(saved.getId(), saved.getUserId(), saved.getTotalAmount().doubleValue());
-        log.info("Order {} created for user {}, total: {}", saved.getId(), saved.getUserId(), saved.getTotalAmount());
-
-        return saved;
+        sagaRepository.save(new OrderSaga(saved.getId()));
+        log.info("Order {} accepted for user {} with {} items", saved.getId(), saved.getUserId(), saved.getItems().size());
+        return OrderDto.OrderResponse.from(saved);
     }
 
-    public Order getOrderById(Long id) {
-        return orderRepository.findById(id)
+    // reads map to DTOs inside a read-only transaction: one query with items for single orders and
+    // unpaged lists, batch-fetched items (see Order.items) for paged ones
+    @Transactional(readOnly = true)
+    public OrderDto.OrderResponse getOrderById(Long id) {
+        return orderRepository.findWithItemsById(id)
+                .map(OrderDto.OrderResponse::from)
                 .orElseThrow(() -> new OrderNotFoundException("Order not found: " + id));
     }
 
-    public List<Order> getOrdersByUser(Long userId) {
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
+    @Transactional(readOnly = true)
+    public List<OrderDto.OrderResponse> getOrdersByUser(Long userId) {
+        return toResponses(orderRepository.findByUserIdOrderByCreatedAtDesc(userId));
     }
 
-    public Page<Order> getOrdersByUserPaged(Long userId, Pageable pageable) {
-        return orderRepository.findByUserId(userId, pageable);
+    @Transactional(readOnly = true)
+    public Page<OrderDto.OrderResponse> getOrdersByUserPaged(Long userId, Pageable pageable) {
+        return orderRepository.findByUserId(userId, pageable).map(OrderDto.OrderResponse::from);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<OrderDto.OrderResponse> scrollOrdersByUser(Long userId, String cursor, int size) {
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Order> rows;
+        if (cursor == null) {
+            rows = orderRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, limit);
+        } else {
+            OrderCursor after = OrderCursor.decode(cursor);
+            rows = orderRepository.findByUserIdBefore(userId, after.createdAt(), after.id(), limit);
+        }
+
+        boolean hasNext = rows.size() > size;
+        List<Order> content = hasNext ? rows.subList(0, size) : rows;
+        String next = hasNext ? OrderCursor.after(content.get(size - 1)).encode() : null;
+        return new CursorPage<>(toResponses(content), content.size(), hasNext, next);
     }
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<OrderDto.OrderResponse> getAllOrders() {
+        return toResponses(orderRepository.findAll());
     }
 
+    // stock release and refund run later in the saga; the cancel itself only touches this database
     @Transactional
-    public Order cancelOrder(Long id) {
-        Order order = getOrderById(id);
+    public OrderDto.OrderResponse cancelOrder(Long id) {
+        // saga first, then order: the same lock order as the orchestrator and the payment consumer
+        OrderSaga saga = sagaRepository.findForUpdate(id).orElse(null);
+        Order order = findOrder(id);
 
         if (order.getStatus() == Order.OrderStatus.SHIPPED ||
                 order.getStatus() == Order.OrderStatus.DELIVERED) {
             throw new RuntimeException("Cannot cancel an order that has already been shipped or delivered");
         }
+        if (order.getStatus() == Order.OrderStatus.CANCELLED) {
+            return OrderDto.OrderResponse.from(order);
+        }
 
-        // restore stock for each item
-        for (OrderItem item : order.getItems()) {
-            webClientBuilder.build()
-                    .put()
-                    .uri("http://product-service/api/products/" + item.getProductId()
-                            + "/stock/restore?quantity=" + item.getQuantity())
-                    .retrieve()
-                    .toBodilessEntity()
-                    .block();
+        if (saga == null) {
+            // orders placed before sagas existed reserved their stock up front
+            saga = new OrderSaga(id);
+            saga.setStockReserved(true);
+            saga.setLegacyReservation(true);
+            saga.compensate(true, order.getStatus() != Order.OrderStatus.PAYMENT_FAILED);
+            sagaRepository.save(saga);
+        } else {
+            switch (saga.getState()) {
+                // an earlier attempt may have reserved before timing out; releasing by order id
+                // hands that back, or makes sure a late reservation is refused
+                case RESERVING -> saga.compensate(true, false);
+                case AWAITING_PAYMENT, COMPLETED -> saga.compensate(saga.isStockReserved(), true);
+                default -> { }
+            }
         }
 
         order.setStatus(Order.OrderStatus.CANCELLED);
         orderRepository.save(order);
         eventProducer.sendOrderCancelled(id);
 
-        log.info("Order {} cancelled", id);
-        return order;
+        log.info("Order {} cancelled, saga {}", id, saga.getState());
+        return OrderDto.OrderResponse.from(order);
     }
 
-    public Order updateStatus(Long id, Order.OrderStatus status) {
-        Order order = getOrderById(id);
+    @Transactional
+    public OrderDto.OrderResponse updateStatus(Long id, Order.OrderStatus status) {
+        Order order = findOrder(id);
         order.setStatus(status);
-        return orderRepository.save(order);
+        return OrderDto.OrderResponse.from(orderRepository.save(order));
+    }
+
+    private Order findOrder(Long id) {
+        return orderRepository.findWithItemsById(id)
+                .orElseThrow(() -> new OrderNotFoundException("Order not found: " + id));
+    }
+
+    private static List<OrderDto.OrderResponse> toResponses(List<Order> orders) {
+        return orders.stream().map(OrderDto.OrderResponse::from).toList();
     }
 }
@@ -0,0 +1,39 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.repository.SchedulerLeaseRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time-bounded leases that let one replica at a time run a scheduled job. A lease held by a
+ * replica that dies simply runs out, so no job stays stuck; a holder that runs long must renew
+ * (tryAcquire again) before the lease ends.
+ */
+@Component
+public class SchedulerLeases {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final String owner = UUID.randomUUID().toString();
+    private final Set<String> created = ConcurrentHashMap.newKeySet();
+
+    public SchedulerLeases(SchedulerLeaseRepository leaseRepository) {
+        this.leaseRepository = leaseRepository;
+    }
+
+    public boolean tryAcquire(String name, Duration duration) {
+        if (created.add(name)) {
+            leaseRepository.createIfAbsent(name);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return leaseRepository.acquire(name, owner, now, now.plus(duration)) == 1;
+    }
+
+    public void release(String name) {
+        leaseRepository.release(name, owner, LocalDateTime.now());
+    }
+}
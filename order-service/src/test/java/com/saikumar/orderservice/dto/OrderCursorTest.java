@@ -0,0 +1,47 @@
+package com.saikumar.orderservice.dto;
+
+import com.saikumar.orderservice.exception.InvalidCursorException;
+import com.saikumar.orderservice.model.Order;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderCursorTest {
+
+    @Test
+    void cursorAfterAnOrderRoundTrips() {
+        Order order = new Order();
+        order.setId(981L);
+        order.setCreatedAt(LocalDateTime.of(2024, 11, 29, 23, 59, 59, 999_999_000));
+
+        OrderCursor cursor = OrderCursor.after(order);
+        String token = cursor.encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(OrderCursor.decode(token)).isEqualTo(new OrderCursor(order.getCreatedAt(), 981L));
+    }
+
+    @Test
+    void wholeMinuteTimestampsRoundTrip() {
+        // LocalDateTime.toString leaves out zero seconds
+        OrderCursor cursor = new OrderCursor(LocalDateTime.of(2024, 1, 1, 0, 0), 1L);
+
+        assertThat(OrderCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertThatThrownBy(() -> OrderCursor.decode("%%%")).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> OrderCursor.decode(token("yesterday|5"))).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> OrderCursor.decode(token("2024-01-01T00:00"))).isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,73 @@
+package com.saikumar.orderservice.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pins the binary layout byte for byte. payment-service's EventCodecTest holds the same fixtures,
+ * so a change to either copy of the codec fails a test instead of a consumer in production.
+ */
+class EventCodecTest {
+
+    // magic, schema, version | orderId | userId | scale | unscaled amount
+    static final String ORDER_CREATED_42 = "ce000101" + "000000000000002a" + "0000000000000007" + "02" + "00000000000007cf";
+    static final String ORDER_CANCELLED_42 = "ce000201" + "000000000000002a";
+    static final String PAYMENT_SUCCESS_42 = "ce000301" + "000000000000002a" + "01";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventCodec binary = new EventCodec(objectMapper, "binary");
+    private final EventCodec json = new EventCodec(objectMapper, "json");
+
+    @Test
+    void encodesTheFixedLayout() {
+        assertThat(hex(binary.encode(new OrderCreatedEvent(42, 7, new BigDecimal("19.99"))))).isEqualTo(ORDER_CREATED_42);
+        assertThat(hex(binary.encode(new OrderCancelledEvent(42)))).isEqualTo(ORDER_CANCELLED_42);
+    }
+
+    @Test
+    void decodesWhatPaymentServiceSends() {
+        assertThat(binary.decode(bytes(PAYMENT_SUCCESS_42))).isEqualTo(new PaymentResultEvent(42, true));
+        assertThat(binary.decode(bytes("ce000301" + "000000000000002a" + "00"))).isEqualTo(new PaymentResultEvent(42, false));
+    }
+
+    @Test
+    void ownEventsRoundTripInBothFormats() {
+        OrderCreatedEvent created = new OrderCreatedEvent(Long.MAX_VALUE, 1, new BigDecimal("123456.7"));
+        for (EventCodec codec : new EventCodec[] {binary, json}) {
+            assertThat(codec.decode(codec.encode(created))).isEqualTo(created);
+            assertThat(codec.decode(codec.encode(new OrderCancelledEvent(9)))).isEqualTo(new OrderCancelledEvent(9));
+        }
+    }
+
+    @Test
+    void legacyJsonIsStillRead() {
+        byte[] legacy = "{\"eventType\":\"PAYMENT_FAILED\",\"orderId\":42}".getBytes(StandardCharsets.UTF_8);
+        byte[] ignored = "{\"eventType\":\"PAYMENT_PENDING\",\"orderId\":42}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(binary.decode(legacy)).isEqualTo(new PaymentResultEvent(42, false));
+        assertThat(binary.decode(ignored)).isNull();
+    }
+
+    @Test
+    void unknownSchemasAreSkippedAndUnknownVersionsRejected() {
+        assertThat(binary.decode(bytes("ce006301" + "000000000000002a"))).isNull();
+        assertThatThrownBy(() -> binary.decode(bytes("ce000302" + "000000000000002a" + "01")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> binary.decode(bytes("00000301"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String hex(byte[] data) {
+        return HexFormat.of().formatHex(data);
+    }
+
+    private static byte[] bytes(String hex) {
+        return HexFormat.of().parseHex(hex);
+    }
+}
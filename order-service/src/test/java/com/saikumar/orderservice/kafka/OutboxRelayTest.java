@@ -0,0 +1,123 @@
+package com.saikumar.orderservice.kafka;
+
+import com.saikumar.orderservice.model.OutboxEvent;
+import com.saikumar.orderservice.repository.OutboxEventRepository;
+import com.saikumar.orderservice.service.SchedulerLeases;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SchedulerLeases leases = mock(SchedulerLeases.class);
+    private final List<String> sent = new ArrayList<>();
+    private final AtomicBoolean inTransaction = new AtomicBoolean();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(call -> {
+            inTransaction.set(true);
+            try {
+                return ((TransactionCallback<Integer>) call.getArgument(0)).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        });
+        when(leases.tryAcquire(anyString(), any())).thenReturn(true);
+        relay = new OutboxRelay(repository, kafkaTemplate, transactionTemplate, new PublishMetrics(new SimpleMeterRegistry()), leases);
+        ReflectionTestUtils.setField(relay, "batchSize", 500);
+        ReflectionTestUtils.setField(relay, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(relay, "leaseDuration", Duration.ofSeconds(30));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aKeyStopsAtItsFirstFailedSendWhileOtherKeysCarryOn() {
+        when(repository.findUnpublished(anyInt())).thenReturn(List.of(
+                event(1, "7", "created"), event(2, "8", "created"), event(3, "7", "cancelled"), event(4, "8", "cancelled")));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(call -> {
+            byte[] payload = call.getArgument(2);
+            String name = call.getArgument(1) + ":" + new String(payload);
+            sent.add(name);
+            return name.equals("7:created")
+                    ? CompletableFuture.failedFuture(new IllegalStateException("broker unavailable"))
+                    : CompletableFuture.completedFuture(mock(SendResult.class));
+        });
+
+        relay.relay();
+
+        // order 7's cancel is never sent ahead of its failed create; order 8 goes through in order
+        assertThat(sent).containsExactly("7:created", "8:created", "8:cancelled");
+        ArgumentCaptor<List<Long>> delivered = ArgumentCaptor.forClass(List.class);
+        verify(repository).markPublished(delivered.capture(), any());
+        assertThat(delivered.getValue()).containsExactly(2L, 4L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendsWithNoTransactionOpenAndMarksInOneOfItsOwn() {
+        when(repository.findUnpublished(anyInt())).thenReturn(List.of(event(1, "7", "created"), event(2, "8", "created")));
+        List<Boolean> openDuringSend = new ArrayList<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(call -> {
+            openDuringSend.add(inTransaction.get());
+            return CompletableFuture.completedFuture(mock(SendResult.class));
+        });
+        when(repository.markPublished(anyList(), any())).thenAnswer(call -> {
+            assertThat(inTransaction).isTrue();
+            return 2;
+        });
+
+        relay.relay();
+
+        assertThat(openDuringSend).containsExactly(false, false);
+        verify(repository).markPublished(eq(List.of(1L, 2L)), any());
+        verify(transactionTemplate).execute(any());
+    }
+
+    @Test
+    void doesNothingWithoutTheLease() {
+        when(leases.tryAcquire(anyString(), any())).thenReturn(false);
+
+        relay.relay();
+
+        verify(repository, never()).findUnpublished(anyInt());
+        verify(repository, never()).markPublished(anyList(), any());
+        verify(leases).tryAcquire(eq("order-outbox-relay"), any());
+    }
+
+    private static OutboxEvent event(long id, String key, String payload) {
+        OutboxEvent event = new OutboxEvent("order-events", key, payload, payload.getBytes());
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,177 @@
+package com.saikumar.orderservice.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.orderservice.event.EventCodec;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderSaga;
+import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
+import com.saikumar.orderservice.service.OrderSagaOrchestrator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A poll of payment results against real order and saga tables: the last result per order wins,
+ * a result for a cancelled order doesn't revive it but asks for a refund, and the whole poll is
+ * applied with a fixed number of UPDATEs however many orders it carries.
+ */
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentResultConsumerTest {
+
+    private static final int ORDERS = 300;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderSagaRepository sagaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final RetryTopics retryTopics = mock(RetryTopics.class);
+    private long offset;
+
+    @AfterEach
+    void cleanUp() {
+        sagaRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void pollIsCollapsedPerOrderAndAppliedInBulk() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            ids.add(awaitingPayment());
+        }
+        Long cancelled = cancelled();
+
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            if (i < 50) {
+                // failed, then succeeded on a retry: the later result wins
+                records.add(result(ids.get(i), false));
+            }
+            records.add(result(ids.get(i), i < 50 || i >= 100));
+        }
+        records.add(result(cancelled, true));
+        ConsumerRecord<String, byte[]> garbage = new ConsumerRecord<>("payment-events", 0, offset++, "1",
+                "not an event".getBytes(StandardCharsets.UTF_8));
+        records.add(garbage);
+
+        when(retryTopics.deadLetter(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        PaymentResultConsumer consumer = consumer();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        long begin = System.nanoTime();
+        consumer.handlePaymentResults(records);
+        double millis = (System.nanoTime() - begin) / 1e6;
+        System.out.printf("payment results: %d records applied with %d statements in %.0f ms%n",
+                records.size(), statistics.getPrepareStatementCount(), millis);
+
+        // saga transition, refund request, compensation start, then one UPDATE per target status
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+        for (int i = 0; i < ORDERS; i++) {
+            boolean paid = i < 50 || i >= 100;
+            assertThat(orderRepository.findById(ids.get(i)).orElseThrow().getStatus())
+                    .isEqualTo(paid ? Order.OrderStatus.CONFIRMED : Order.OrderStatus.PAYMENT_FAILED);
+            OrderSaga saga = sagaRepository.findById(ids.get(i)).orElseThrow();
+            assertThat(saga.getState()).isEqualTo(paid ? OrderSaga.SagaState.COMPLETED : OrderSaga.SagaState.COMPENSATING);
+            assertThat(saga.isReleaseStock()).isEqualTo(!paid);
+        }
+        assertThat(orderRepository.findById(cancelled).orElseThrow().getStatus()).isEqualTo(Order.OrderStatus.CANCELLED);
+        OrderSaga refund = sagaRepository.findById(cancelled).orElseThrow();
+        assertThat(refund.getState()).isEqualTo(OrderSaga.SagaState.COMPENSATING);
+        assertThat(refund.isRefundPayment()).isTrue();
+
+        verify(retryTopics, times(1)).deadLetter(any(), any());
+        verify(retryTopics, never()).retry(any(), any());
+    }
+
+    @Test
+    void lateResultCannotOverwriteASettledOrder() {
+        Long id = awaitingPayment();
+        PaymentResultConsumer consumer = consumer();
+
+        consumer.handlePaymentResults(List.of(result(id, true)));
+        // a stale failure replayed from a retry tier after the success was applied
+        consumer.handlePaymentResults(List.of(result(id, false)));
+
+        assertThat(orderRepository.findById(id).orElseThrow().getStatus()).isEqualTo(Order.OrderStatus.CONFIRMED);
+        assertThat(sagaRepository.findById(id).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.COMPLETED);
+    }
+
+    private PaymentResultConsumer consumer() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        OrderSagaOrchestrator orchestrator = new OrderSagaOrchestrator(orderRepository, sagaRepository,
+                mock(OrderEventProducer.class), transactionTemplate, WebClient.builder());
+        return new PaymentResultConsumer(orderRepository, orchestrator, new EventCodec(new ObjectMapper(), "binary"),
+                transactionTemplate, retryTopics, new SimpleMeterRegistry());
+    }
+
+    private Long awaitingPayment() {
+        Order order = new Order();
+        order.setUserId(7L);
+        order.setStatus(Order.OrderStatus.PAYMENT_PROCESSING);
+        Long id = orderRepository.save(order).getId();
+        OrderSaga saga = new OrderSaga(id);
+        saga.setStockReserved(true);
+        saga.moveTo(OrderSaga.SagaState.AWAITING_PAYMENT);
+        sagaRepository.save(saga);
+        return id;
+    }
+
+    private Long cancelled() {
+        Order order = new Order();
+        order.setUserId(7L);
+        order.setStatus(Order.OrderStatus.CANCELLED);
+        Long id = orderRepository.save(order).getId();
+        OrderSaga saga = new OrderSaga(id);
+        saga.moveTo(OrderSaga.SagaState.COMPENSATED);
+        sagaRepository.save(saga);
+        return id;
+    }
+
+    private ConsumerRecord<String, byte[]> result(Long orderId, boolean success) {
+        byte[] value = ByteBuffer.allocate(13)
+                .put(EventCodec.MAGIC).putShort(EventCodec.PAYMENT_RESULT).put(EventCodec.V1)
+                .putLong(orderId).put((byte) (success ? 1 : 0))
+                .array();
+        return new ConsumerRecord<>("payment-events", 0, offset++, orderId.toString(), value);
+    }
+}
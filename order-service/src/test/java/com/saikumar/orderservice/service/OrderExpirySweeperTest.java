@@ -0,0 +1,281 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.kafka.OrderEventProducer;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderItem;
+import com.saikumar.orderservice.model.OrderSaga;
+import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
+import com.saikumar.orderservice.repository.SchedulerLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The expiry sweep against real tables: stale PAYMENT_PROCESSING orders are expired and handed to
+ * the saga, fresh ones and ones a payment result reached between the scan and the lock are left
+ * alone, the keyset walk visits every stale order even when many share an updated_at, only the
+ * replica holding the lease sweeps, and the next compensation round gives the stock back.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderExpirySweeperTest {
+
+    private static final String LEASE = "order-expiry-sweeper";
+    private static final Duration TIMEOUT = Duration.ofMinutes(30);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderSagaRepository sagaRepository;
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger scans = new AtomicInteger();
+    private final AtomicInteger releaseCalls = new AtomicInteger();
+    private final AtomicInteger refundCalls = new AtomicInteger();
+    private final List<Long> placed = new ArrayList<>();
+    // runs once, right after the next scan, as a write from another transaction would land
+    private Runnable afterScan;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SchedulerLeases leases;
+    private OrderExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        leases = new SchedulerLeases(leaseRepository);
+        sweeper = sweeper(leases, meterRegistry, 100);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        sagaRepository.deleteAll();
+        orderRepository.deleteAll();
+        leaseRepository.deleteAll();
+    }
+
+    @Test
+    void expiresStaleOrdersOnlyAndReleasesTheirStock() {
+        LocalDateTime stale = LocalDateTime.now().minusHours(2);
+        Long awaiting = placeOrder(stale, OrderSaga.SagaState.AWAITING_PAYMENT);
+        Long legacy = placeOrder(stale, null);
+        Long fresh = placeOrder(LocalDateTime.now().minusMinutes(5), OrderSaga.SagaState.AWAITING_PAYMENT);
+        Long compensating = placeOrder(stale, OrderSaga.SagaState.COMPENSATING);
+        Long paidMeanwhile = placeOrder(stale, OrderSaga.SagaState.AWAITING_PAYMENT);
+        Long touchedMeanwhile = placeOrder(stale, OrderSaga.SagaState.AWAITING_PAYMENT);
+        afterScan = () -> {
+            jdbcTemplate.update("UPDATE orders SET status = 'CONFIRMED' WHERE id = ?", paidMeanwhile);
+            jdbcTemplate.update("UPDATE orders SET updated_at = ? WHERE id = ?", Timestamp.valueOf(LocalDateTime.now()), touchedMeanwhile);
+        };
+
+        sweeper.sweep();
+
+        assertThat(status(awaiting)).isEqualTo(Order.OrderStatus.EXPIRED);
+        assertThat(status(legacy)).isEqualTo(Order.OrderStatus.EXPIRED);
+        assertThat(status(fresh)).isEqualTo(Order.OrderStatus.PAYMENT_PROCESSING);
+        assertThat(status(compensating)).isEqualTo(Order.OrderStatus.PAYMENT_PROCESSING);
+        assertThat(status(paidMeanwhile)).isEqualTo(Order.OrderStatus.CONFIRMED);
+        assertThat(status(touchedMeanwhile)).isEqualTo(Order.OrderStatus.PAYMENT_PROCESSING);
+
+        OrderSaga expiredSaga = sagaRepository.findById(awaiting).orElseThrow();
+        assertThat(expiredSaga.getState()).isEqualTo(OrderSaga.SagaState.COMPENSATING);
+        assertThat(expiredSaga.isReleaseStock()).isTrue();
+        assertThat(expiredSaga.isRefundPayment()).isTrue();
+        // an order from before sagas gets one, releasing what it reserved up front
+        OrderSaga legacySaga = sagaRepository.findById(legacy).orElseThrow();
+        assertThat(legacySaga.getState()).isEqualTo(OrderSaga.SagaState.COMPENSATING);
+        assertThat(legacySaga.isLegacyReservation()).isTrue();
+        assertThat(legacySaga.isReleaseStock()).isTrue();
+        assertThat(sagaRepository.findById(paidMeanwhile).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.AWAITING_PAYMENT);
+        assertThat(sagaRepository.findById(touchedMeanwhile).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.AWAITING_PAYMENT);
+
+        assertThat(meterRegistry.counter("order.expiry.scanned").count()).isEqualTo(5);
+        assertThat(meterRegistry.counter("order.expiry.expired").count()).isEqualTo(2);
+        assertThat(meterRegistry.summary("order.expiry.expired.per.sweep").totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.timer("order.expiry.sweep.duration").count()).isEqualTo(1);
+
+        // the next compensation round hands both orders' stock back in one call and asks for one refund
+        orchestrator(List.of(awaiting, legacy)).run();
+
+        assertThat(releaseCalls.get()).isEqualTo(1);
+        assertThat(refundCalls.get()).isEqualTo(1);
+        assertThat(sagaRepository.findById(awaiting).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.COMPENSATED);
+        assertThat(sagaRepository.findById(legacy).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.COMPENSATED);
+    }
+
+    @Test
+    void keysetWalkVisitsEveryStaleOrderAcrossBatches() {
+        sweeper = sweeper(leases, meterRegistry, 3);
+        LocalDateTime shared = LocalDateTime.now().minusHours(3).withNano(0);
+        // five orders on the same updated_at straddle two batch boundaries
+        for (int i = 0; i < 5; i++) {
+            placeOrder(shared, OrderSaga.SagaState.AWAITING_PAYMENT);
+        }
+        placeOrder(shared.plusMinutes(1), OrderSaga.SagaState.AWAITING_PAYMENT);
+        placeOrder(shared.minusMinutes(1), OrderSaga.SagaState.AWAITING_PAYMENT);
+        placeOrder(shared.plusMinutes(2), null);
+
+        sweeper.sweep();
+
+        assertThat(placed).allSatisfy(id -> assertThat(status(id)).isEqualTo(Order.OrderStatus.EXPIRED));
+        assertThat(scans.get()).isEqualTo(3);
+        assertThat(meterRegistry.counter("order.expiry.scanned").count()).isEqualTo(8);
+        assertThat(meterRegistry.counter("order.expiry.expired").count()).isEqualTo(8);
+
+        // a sweep with nothing to do still reports itself
+        sweeper.sweep();
+        assertThat(meterRegistry.counter("order.expiry.expired").count()).isEqualTo(8);
+        assertThat(meterRegistry.summary("order.expiry.expired.per.sweep").count()).isEqualTo(2);
+        assertThat(meterRegistry.summary("order.expiry.expired.per.sweep").max()).isEqualTo(8);
+        assertThat(meterRegistry.timer("order.expiry.sweep.duration").count()).isEqualTo(2);
+    }
+
+    @Test
+    void onlyTheLeaseHolderSweepsAndATakeoverStopsTheSweep() {
+        sweeper = sweeper(leases, meterRegistry, 3);
+        for (int i = 0; i < 8; i++) {
+            placeOrder(LocalDateTime.now().minusHours(2).plusSeconds(i), OrderSaga.SagaState.AWAITING_PAYMENT);
+        }
+        SchedulerLeases otherReplica = new SchedulerLeases(leaseRepository);
+        assertThat(otherReplica.tryAcquire(LEASE, Duration.ofMinutes(5))).isTrue();
+
+        sweeper.sweep();
+
+        assertThat(scans.get()).isZero();
+        assertThat(placed).allSatisfy(id -> assertThat(status(id)).isEqualTo(Order.OrderStatus.PAYMENT_PROCESSING));
+
+        // once the other replica lets go we sweep, until its lease runs out under us and it takes over
+        otherReplica.release(LEASE);
+        afterScan = () -> afterScan = () -> {
+            jdbcTemplate.update("UPDATE scheduler_leases SET lease_until = ? WHERE name = ?",
+                    Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)), LEASE);
+            assertThat(otherReplica.tryAcquire(LEASE, Duration.ofMinutes(5))).isTrue();
+        };
+
+        sweeper.sweep();
+
+        assertThat(scans.get()).isEqualTo(2);
+        assertThat(meterRegistry.counter("order.expiry.expired").count()).isEqualTo(6);
+        // our release on the way out leaves the new holder's lease alone
+        assertThat(leases.tryAcquire(LEASE, Duration.ofMinutes(5))).isFalse();
+
+        OrderExpirySweeper otherSweeper = sweeper(otherReplica, new SimpleMeterRegistry(), 3);
+        otherSweeper.sweep();
+        assertThat(placed).allSatisfy(id -> assertThat(status(id)).isEqualTo(Order.OrderStatus.EXPIRED));
+    }
+
+    private OrderExpirySweeper sweeper(SchedulerLeases leases, SimpleMeterRegistry meterRegistry, int batchSize) {
+        OrderRepository scanning = mock(OrderRepository.class, AdditionalAnswers.delegatesTo(orderRepository));
+        doAnswer(call -> {
+            List<Object[]> stale = orderRepository.findStaleAfter(call.getArgument(0), call.getArgument(1),
+                    call.getArgument(2), call.getArgument(3), call.getArgument(4));
+            scans.incrementAndGet();
+            Runnable hook = afterScan;
+            afterScan = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return stale;
+        }).when(scanning).findStaleAfter(any(), any(), any(), any(), any(Pageable.class));
+
+        OrderExpirySweeper sweeper = new OrderExpirySweeper(scanning, sagaRepository, leases,
+                new TransactionTemplate(transactionManager), meterRegistry);
+        ReflectionTestUtils.setField(sweeper, "timeout", TIMEOUT);
+        ReflectionTestUtils.setField(sweeper, "batchSize", batchSize);
+        ReflectionTestUtils.setField(sweeper, "leaseDuration", Duration.ofMinutes(5));
+        return sweeper;
+    }
+
+    // an order awaiting payment since updatedAt, with a saga in the given state (none for a legacy order)
+    private Long placeOrder(LocalDateTime updatedAt, OrderSaga.SagaState sagaState) {
+        Order order = new Order();
+        order.setUserId(7L);
+        order.setStatus(Order.OrderStatus.PAYMENT_PROCESSING);
+        OrderItem item = new OrderItem(1L + placed.size() % 3, 2);
+        item.setOrder(order);
+        order.getItems().add(item);
+        Long id = orderRepository.save(order).getId();
+        if (sagaState != null) {
+            OrderSaga saga = new OrderSaga(id);
+            saga.setStockReserved(true);
+            saga.moveTo(sagaState);
+            sagaRepository.save(saga);
+        }
+        jdbcTemplate.update("UPDATE orders SET updated_at = ? WHERE id = ?", Timestamp.valueOf(updatedAt), id);
+        placed.add(id);
+        return id;
+    }
+
+    private Order.OrderStatus status(Long id) {
+        return orderRepository.findById(id).orElseThrow().getStatus();
+    }
+
+    private OrderSagaOrchestrator orchestrator(List<Long> refundable) {
+        String outcomes = refundable.stream().map(id -> "\"" + id + "\":\"NOT_CHARGED\"").collect(Collectors.joining(",", "{", "}"));
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+            if (request.url().getPath().endsWith("/stock/release")) {
+                releaseCalls.incrementAndGet();
+                return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+            }
+            refundCalls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(outcomes)
+                    .build());
+        });
+        OrderSagaOrchestrator orchestrator = new OrderSagaOrchestrator(orderRepository, sagaRepository,
+                mock(OrderEventProducer.class), new TransactionTemplate(transactionManager), webClient);
+        ReflectionTestUtils.setField(orchestrator, "batchSize", 100);
+        ReflectionTestUtils.setField(orchestrator, "reserveConcurrency", 8);
+        ReflectionTestUtils.setField(orchestrator, "callTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(orchestrator, "claimTimeoutMs", 120_000L);
+        ReflectionTestUtils.setField(orchestrator, "maxAttempts", 10);
+        ReflectionTestUtils.setField(orchestrator, "retryBackoffMs", 1000L);
+        ReflectionTestUtils.setField(orchestrator, "maxBackoffMs", 60_000L);
+        return orchestrator;
+    }
+}
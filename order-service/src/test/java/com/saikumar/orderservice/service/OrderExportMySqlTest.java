@@ -0,0 +1,154 @@
+package com.saikumar.orderservice.service;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.saikumar.orderservice.repository.OrderRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The order export against a real MySQL holding millions of rows (a million orders with two items
+ * each by default, -Dbenchmark.exportOrders to change it), so the streaming fetch size is what
+ * the driver actually sees. Heap is sampled after a full GC every 100k lines written: were
+ * Connector/J buffering the result set, the first sample would already hold all of it. Needs
+ * Docker; tagged so the default build skips it, run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderExportMySqlTest {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.exportOrders", 1_000_000);
+    private static final int SAMPLE_EVERY = 100_000;
+    // far below the ~3M joined rows the driver would otherwise buffer
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void mysql(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+        registry.add("spring.datasource.driver-class-name", MYSQL::getDriverClassName);
+    }
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeAll
+    void loadOrders() {
+        long begin = System.nanoTime();
+        jdbcTemplate.execute("CREATE TABLE digits (d INT PRIMARY KEY)");
+        jdbcTemplate.execute("INSERT INTO digits VALUES (0), (1), (2), (3), (4), (5), (6), (7), (8), (9)");
+        String numbers = "SELECT a.d + 10 * b.d + 100 * c.d + 1000 * e.d + 10000 * f.d + 100000 * g.d + 1000000 * h.d AS n " +
+                "FROM digits a, digits b, digits c, digits e, digits f, digits g, digits h";
+        jdbcTemplate.update("INSERT INTO orders (id, user_id, status, total_amount, shipping_address, created_at, updated_at) " +
+                "SELECT n + 1, n % 10000, 'CONFIRMED', 39.96, '1 Main St', NOW(), NOW() FROM (" + numbers + ") t WHERE n < ?", ORDERS);
+        jdbcTemplate.update("INSERT INTO order_items (id, order_id, product_id, product_name, quantity, unit_price, subtotal) " +
+                "SELECT n * 2 + k + 1, n + 1, 100 + k, CONCAT('Product ', k), 2, 9.99, 19.98 FROM (" + numbers + ") t, " +
+                "(SELECT 0 AS k UNION ALL SELECT 1) ks WHERE n < ?", ORDERS);
+        System.out.printf("loaded %d orders and %d items into MySQL in %d s%n",
+                ORDERS, 2L * ORDERS, (System.nanoTime() - begin) / 1_000_000_000);
+    }
+
+    @AfterAll
+    void dropDigits() {
+        jdbcTemplate.execute("DROP TABLE digits");
+    }
+
+    @Test
+    void exportStreamsMillionsOfRowsInBoundedHeap() {
+        OrderExporter exporter = new OrderExporter(orderRepository, new Jackson2ObjectMapperBuilder()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream(memory);
+
+        long begin = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Long exported = readOnly.execute(tx -> {
+            try {
+                return exporter.export(false, out);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        long growth = out.peak - baseline;
+        System.out.printf("MySQL order export: %d orders (%d rows), %.0f MB NDJSON in %.1f s, heap growth peak %.1f MB over %d samples%n",
+                exported, 2L * ORDERS, out.bytes / 1e6, seconds, growth / 1e6, out.samples);
+
+        assertThat(exported).isEqualTo(ORDERS);
+        assertThat(out.lines).isEqualTo(ORDERS);
+        assertThat(out.samples).isEqualTo(ORDERS / SAMPLE_EVERY);
+        assertThat(growth).isLessThan(MAX_HEAP_GROWTH);
+    }
+
+    // counts what is written and records heap in use, after a full GC, every SAMPLE_EVERY lines
+    private static class HeapSamplingOutputStream extends OutputStream {
+        private final MemoryMXBean memory;
+        long bytes;
+        long lines;
+        long peak;
+        int samples;
+
+        HeapSamplingOutputStream(MemoryMXBean memory) {
+            this.memory = memory;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n' && ++lines % SAMPLE_EVERY == 0) {
+                    System.gc();
+                    peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+                    samples++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.saikumar.orderservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.saikumar.orderservice.dto.OrderExportRow;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The export folds the flat order/item rows of the streaming query into one NDJSON line per order,
+ * or writes them out as CSV lines, without holding more than the current order. The streaming
+ * query itself needs MySQL (H2 rejects the driver's streaming fetch size), so rows come from a
+ * lazily generated stream here; OrderExportMySqlTest runs it against MySQL.
+ */
+class OrderExporterTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 5, 1, 9, 30);
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    // configured like Spring Boot's: ISO dates rather than timestamp arrays
+    private final ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final OrderExporter exporter = new OrderExporter(orderRepository, objectMapper);
+
+    @Test
+    void ndjsonFoldsItemRowsIntoOneLinePerOrder() throws Exception {
+        when(orderRepository.streamExportRows()).thenReturn(Stream.of(
+                row(1, 11L, "Keyboard", null), row(1, 12L, "Mouse", null), row(2, null, null, null), row(3, 31L, "Cable", null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(exporter.export(false, out)).isEqualTo(3);
+
+        List<JsonNode> lines = out.toString(StandardCharsets.UTF_8).lines().map(this::parse).toList();
+        assertThat(lines).extracting(line -> line.get("id").asLong()).containsExactly(1L, 2L, 3L);
+        assertThat(lines.get(0).get("items")).extracting(item -> item.get("productName").asText()).containsExactly("Keyboard", "Mouse");
+        assertThat(lines.get(1).get("items")).isEmpty();
+        assertThat(lines.get(2).get("createdAt").asText()).isEqualTo("2024-05-01T09:30:00");
+    }
+
+    @Test
+    void csvWritesOneLinePerItemAndQuotesWhereNeeded() throws Exception {
+        when(orderRepository.streamExportRows()).thenReturn(Stream.of(
+                row(1, 11L, "Keyboard", "Leave at the door, \"back\""), row(1, 12L, "Mouse", null), row(2, null, null, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(exporter.export(true, out)).isEqualTo(2);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(0)).startsWith("order_id,user_id,status,");
+        assertThat(lines.get(1)).contains(",\"Leave at the door, \"\"back\"\"\",").contains(",11,101,Keyboard,2,9.99,19.98");
+        assertThat(lines.get(3)).endsWith(",,,,,,");
+    }
+
+    @Test
+    void largeExportIsWrittenAsTheRowsArrive() throws Exception {
+        int orders = Integer.getInteger("benchmark.exportOrders", 300_000);
+        AtomicBoolean closed = new AtomicBoolean();
+        // two item rows per order, produced one at a time; nothing holds the whole result
+        when(orderRepository.streamExportRows()).thenReturn(LongStream.range(0, orders * 2L)
+                .mapToObj(i -> row(i / 2 + 1, i + 1, "Product " + i, null))
+                .onClose(() -> closed.set(true)));
+        CountingOutputStream out = new CountingOutputStream();
+
+        long begin = System.nanoTime();
+        long exported = exporter.export(false, out);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("order export: %d orders, %.1f MB NDJSON in %.0f ms = %.0f orders/s%n",
+                exported, out.bytes / 1e6, seconds * 1000, exported / seconds);
+
+        assertThat(exported).isEqualTo(orders);
+        assertThat(out.lines).isEqualTo(orders);
+        assertThat(closed).isTrue();
+    }
+
+    private static OrderExportRow row(long orderId, Long itemId, String productName, String notes) {
+        return new OrderExportRow(orderId, 7L, Order.OrderStatus.CONFIRMED, new BigDecimal("19.98"), "1 Main St", notes,
+                CREATED, CREATED, itemId, itemId != null ? 101L : null, productName, itemId != null ? 2 : null,
+                itemId != null ? new BigDecimal("9.99") : null, itemId != null ? new BigDecimal("19.98") : null);
+    }
+
+    private JsonNode parse(String line) {
+        try {
+            return objectMapper.readTree(line);
+        } catch (Exception e) {
+            throw new AssertionError("Not JSON: " + line, e);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long bytes;
+        long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+}
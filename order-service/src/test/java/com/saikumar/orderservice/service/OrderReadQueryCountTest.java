@@ -0,0 +1,138 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.dto.CursorPage;
+import com.saikumar.orderservice.dto.OrderDto;
+import com.saikumar.orderservice.kafka.OrderEventProducer;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderItem;
+import com.saikumar.orderservice.repository.OrderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the statements Hibernate prepares for each order read, items included. The count must
+ * not grow with the number of orders: single orders and unpaged lists fetch-join their items,
+ * paged and keyset listings load the items of up to 100 orders per batch query.
+ */
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(OrderService.class)
+class OrderReadQueryCountTest {
+
+    private static final long USER_ID = 7L;
+    private static final int ORDERS = 120;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private OrderEventProducer eventProducer;
+
+    private Statistics statistics;
+    private Long someOrderId;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setUserId(USER_ID);
+            order.setCreatedAt(now.minusMinutes(i));
+            for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                OrderItem item = new OrderItem(100L + j, "Product " + j, 1 + j, BigDecimal.TEN);
+                item.setOrder(order);
+                order.getItems().add(item);
+            }
+            orders.add(order);
+        }
+        someOrderId = orderRepository.saveAll(orders).get(0).getId();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void singleOrderIsOneQuery() {
+        OrderDto.OrderResponse order = orderService.getOrderById(someOrderId);
+
+        assertThat(order.items()).hasSize(ITEMS_PER_ORDER);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unpagedHistoryIsOneQueryForAnyNumberOfOrders() {
+        List<OrderDto.OrderResponse> orders = orderService.getOrdersByUser(USER_ID);
+
+        assertThat(orders).hasSize(ORDERS).allSatisfy(o -> assertThat(o.items()).hasSize(ITEMS_PER_ORDER));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void keysetPageLoadsItemsInOneBatch() {
+        CursorPage<OrderDto.OrderResponse> first = orderService.scrollOrdersByUser(USER_ID, null, 50);
+
+        assertThat(first.getContent()).hasSize(50).allSatisfy(o -> assertThat(o.items()).hasSize(ITEMS_PER_ORDER));
+        // the orders, then one IN-batch for their items
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        statistics.clear();
+        CursorPage<OrderDto.OrderResponse> second = orderService.scrollOrdersByUser(USER_ID, first.getNextCursor(), 50);
+        assertThat(second.getContent()).hasSize(50);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void offsetPageAddsOnlyTheCount() {
+        Page<OrderDto.OrderResponse> page = orderService.getOrdersByUserPaged(USER_ID, PageRequest.of(0, 50));
+
+        assertThat(page.getTotalElements()).isEqualTo(ORDERS);
+        assertThat(page.getContent()).allSatisfy(o -> assertThat(o.items()).hasSize(ITEMS_PER_ORDER));
+        // the orders, the count, one IN-batch for their items
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void fullListingLoadsItemsPerHundredOrders() {
+        List<OrderDto.OrderResponse> orders = orderService.getAllOrders();
+
+        assertThat(orders).hasSize(ORDERS);
+        // the orders, then ceil(120 / 100) item batches rather than 120 item queries
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,342 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.kafka.OrderEventProducer;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderItem;
+import com.saikumar.orderservice.model.OrderSaga;
+import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The saga past its reserve round, against real tables and a stubbed product-service and
+ * payment-service: a compensation round hands back every order's stock in one release call and
+ * settles every refund in one refund call, a cancel asks for what the saga's state still owes
+ * (including orders from before sagas existed), a cancel that lands while a reserve round is out
+ * wins and the round's outcome is dropped, and a step that keeps failing ends FAILED.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderSagaCompensationTest {
+
+    private static final int ORDERS = 30;
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderSagaRepository sagaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final OrderEventProducer eventProducer = mock(OrderEventProducer.class);
+    private final AtomicInteger reserveCalls = new AtomicInteger();
+    private final AtomicInteger releaseCalls = new AtomicInteger();
+    private final AtomicInteger refundCalls = new AtomicInteger();
+    // what payment-service answers per order; REFUNDED unless a test says otherwise
+    private final Map<Long, String> refundOutcomes = new ConcurrentHashMap<>();
+    private HttpStatus releaseStatus = HttpStatus.OK;
+    // runs while the reserve call is out, as a request on another thread would
+    private Runnable duringReserve = () -> { };
+
+    @AfterEach
+    void cleanUp() {
+        sagaRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void compensationRoundReleasesAndRefundsInOneCallEach() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            // payment failures release only, expired or cancelled orders also refund, late payments refund only
+            boolean release = i % 3 != 2;
+            boolean refund = i % 3 != 0;
+            ids.add(compensating(Order.OrderStatus.CANCELLED, release, refund, i == 0));
+        }
+        Long stillPending = ids.get(ORDERS - 1);
+        refundOutcomes.put(stillPending, "PENDING");
+
+        orchestrator().run();
+
+        assertThat(releaseCalls.get()).isEqualTo(1);
+        assertThat(refundCalls.get()).isEqualTo(1);
+        for (Long id : ids) {
+            OrderSaga saga = sagaRepository.findById(id).orElseThrow();
+            assertThat(saga.isReleaseStock()).isFalse();
+            if (id.equals(stillPending)) {
+                // a payment that hasn't settled keeps its refund pending and is retried with backoff
+                assertThat(saga.getState()).isEqualTo(OrderSaga.SagaState.COMPENSATING);
+                assertThat(saga.isRefundPayment()).isTrue();
+                assertThat(saga.getAttempts()).isEqualTo(1);
+                assertThat(saga.getClaimToken()).isNull();
+            } else {
+                assertThat(saga.getState()).isEqualTo(OrderSaga.SagaState.COMPENSATED);
+                assertThat(saga.isRefundPayment()).isFalse();
+            }
+        }
+
+        refundOutcomes.put(stillPending, "REFUNDED");
+        sagaRepository.findById(stillPending).ifPresent(saga -> {
+            saga.setNextAttemptAt(saga.getNextAttemptAt().minusMinutes(1));
+            sagaRepository.save(saga);
+        });
+        orchestrator().run();
+
+        assertThat(releaseCalls.get()).isEqualTo(1);
+        assertThat(refundCalls.get()).isEqualTo(2);
+        assertThat(sagaRepository.findById(stillPending).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.COMPENSATED);
+    }
+
+    @Test
+    void cancelAsksForWhatTheSagaStateStillOwes() {
+        Long reserving = withSaga(Order.OrderStatus.PENDING, OrderSaga.SagaState.RESERVING, false);
+        Long awaiting = withSaga(Order.OrderStatus.PAYMENT_PROCESSING, OrderSaga.SagaState.AWAITING_PAYMENT, true);
+        Long completed = withSaga(Order.OrderStatus.CONFIRMED, OrderSaga.SagaState.COMPLETED, true);
+        Long paymentFailed = compensating(Order.OrderStatus.PAYMENT_FAILED, true, false, false);
+        Long rejected = withSaga(Order.OrderStatus.REJECTED, OrderSaga.SagaState.COMPENSATED, false);
+        Long failed = withSaga(Order.OrderStatus.PAYMENT_PROCESSING, OrderSaga.SagaState.FAILED, true);
+        Long shipped = withSaga(Order.OrderStatus.SHIPPED, OrderSaga.SagaState.COMPLETED, true);
+        OrderService orderService = new OrderService(orderRepository, sagaRepository, eventProducer);
+
+        for (Long id : List.of(reserving, awaiting, completed, paymentFailed, rejected, failed)) {
+            cancel(orderService, id);
+            assertThat(orderRepository.findById(id).orElseThrow().getStatus()).isEqualTo(Order.OrderStatus.CANCELLED);
+        }
+
+        // an earlier attempt may have reserved before timing out, so a reservation in flight is released
+        assertSaga(reserving, OrderSaga.SagaState.COMPENSATING, true, false);
+        assertSaga(awaiting, OrderSaga.SagaState.COMPENSATING, true, true);
+        assertSaga(completed, OrderSaga.SagaState.COMPENSATING, true, true);
+        // already compensating a failed payment: nothing was charged, so nothing is added
+        assertSaga(paymentFailed, OrderSaga.SagaState.COMPENSATING, true, false);
+        assertSaga(rejected, OrderSaga.SagaState.COMPENSATED, false, false);
+        assertSaga(failed, OrderSaga.SagaState.FAILED, false, false);
+
+        // a second cancel is a no-op, and a shipped order can't be cancelled
+        cancel(orderService, awaiting);
+        verify(eventProducer, times(6)).sendOrderCancelled(anyLong());
+        assertThatThrownBy(() -> cancel(orderService, shipped)).hasMessageContaining("already been shipped");
+        assertSaga(shipped, OrderSaga.SagaState.COMPLETED, false, false);
+    }
+
+    @Test
+    void cancellingALegacyOrderRefundsUnlessThePaymentFailed() {
+        Long processing = legacy(Order.OrderStatus.PAYMENT_PROCESSING);
+        Long confirmed = legacy(Order.OrderStatus.CONFIRMED);
+        Long paymentFailed = legacy(Order.OrderStatus.PAYMENT_FAILED);
+        OrderService orderService = new OrderService(orderRepository, sagaRepository, eventProducer);
+
+        cancel(orderService, processing);
+        cancel(orderService, confirmed);
+        cancel(orderService, paymentFailed);
+
+        assertSaga(processing, OrderSaga.SagaState.COMPENSATING, true, true);
+        assertSaga(confirmed, OrderSaga.SagaState.COMPENSATING, true, true);
+        assertSaga(paymentFailed, OrderSaga.SagaState.COMPENSATING, true, false);
+        for (Long id : List.of(processing, confirmed, paymentFailed)) {
+            OrderSaga saga = sagaRepository.findById(id).orElseThrow();
+            assertThat(saga.isLegacyReservation()).isTrue();
+            assertThat(saga.isStockReserved()).isTrue();
+        }
+
+        orchestrator().run();
+
+        assertThat(releaseCalls.get()).isEqualTo(1);
+        assertThat(refundCalls.get()).isEqualTo(1);
+        for (Long id : List.of(processing, confirmed, paymentFailed)) {
+            assertThat(sagaRepository.findById(id).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.COMPENSATED);
+        }
+    }
+
+    @Test
+    void cancelDuringTheReserveRoundWinsAndTheRoundsOutcomeIsDropped() {
+        Long id = withSaga(Order.OrderStatus.PENDING, OrderSaga.SagaState.RESERVING, false);
+        OrderService orderService = new OrderService(orderRepository, sagaRepository, eventProducer);
+        duringReserve = () -> cancel(orderService, id);
+
+        orchestrator().run();
+
+        assertThat(reserveCalls.get()).isEqualTo(1);
+        assertThat(orderRepository.findById(id).orElseThrow().getStatus()).isEqualTo(Order.OrderStatus.CANCELLED);
+        // the reservation went through, but the saga moved on under the round: the cancel decides
+        OrderSaga saga = sagaRepository.findById(id).orElseThrow();
+        assertThat(saga.isStockReserved()).isFalse();
+        verify(eventProducer, never()).sendOrderCreated(anyLong(), anyLong(), any());
+        // and the same run's compensation round hands back what the late reservation took
+        assertThat(releaseCalls.get()).isEqualTo(1);
+        assertSaga(id, OrderSaga.SagaState.COMPENSATED, false, false);
+    }
+
+    @Test
+    void stepThatKeepsFailingEndsFailed() throws InterruptedException {
+        Long id = compensating(Order.OrderStatus.CANCELLED, true, false, false);
+        releaseStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+        for (int round = 1; round <= MAX_ATTEMPTS; round++) {
+            orchestrator().run();
+            OrderSaga saga = sagaRepository.findById(id).orElseThrow();
+            assertThat(saga.getAttempts()).isEqualTo(round == MAX_ATTEMPTS ? 0 : round);
+            // backoff is a millisecond here, so the saga is due again by the next round
+            Thread.sleep(20);
+        }
+
+        assertThat(releaseCalls.get()).isEqualTo(MAX_ATTEMPTS);
+        OrderSaga saga = sagaRepository.findById(id).orElseThrow();
+        assertThat(saga.getState()).isEqualTo(OrderSaga.SagaState.FAILED);
+        assertThat(saga.isReleaseStock()).isTrue();
+        assertThat(saga.getNextAttemptAt()).isNull();
+        assertThat(saga.getLastError()).contains("503");
+
+        // FAILED is left for someone to look at: later rounds don't pick it up
+        orchestrator().run();
+        assertThat(releaseCalls.get()).isEqualTo(MAX_ATTEMPTS);
+    }
+
+    @Test
+    void reservationThatKeepsFailingIsRejectedAndReleased() throws InterruptedException {
+        Long id = withSaga(Order.OrderStatus.PENDING, OrderSaga.SagaState.RESERVING, false);
+        duringReserve = () -> {
+            throw new IllegalStateException("product-service timeout");
+        };
+
+        for (int round = 1; round <= MAX_ATTEMPTS; round++) {
+            orchestrator().run();
+            Thread.sleep(20);
+        }
+
+        assertThat(reserveCalls.get()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(orderRepository.findById(id).orElseThrow().getStatus()).isEqualTo(Order.OrderStatus.REJECTED);
+        // the last round moved it to compensating, and its release ran in the same run
+        assertThat(releaseCalls.get()).isEqualTo(1);
+        assertSaga(id, OrderSaga.SagaState.COMPENSATED, false, false);
+    }
+
+    private void cancel(OrderService orderService, Long id) {
+        // as the @Transactional proxy would run it
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> orderService.cancelOrder(id));
+    }
+
+    private void assertSaga(Long id, OrderSaga.SagaState state, boolean release, boolean refund) {
+        OrderSaga saga = sagaRepository.findById(id).orElseThrow();
+        assertThat(saga.getState()).isEqualTo(state);
+        assertThat(saga.isReleaseStock()).isEqualTo(release);
+        assertThat(saga.isRefundPayment()).isEqualTo(refund);
+    }
+
+    private Long compensating(Order.OrderStatus status, boolean release, boolean refund, boolean legacy) {
+        Long id = placeOrder(status);
+        OrderSaga saga = new OrderSaga(id);
+        saga.setStockReserved(true);
+        saga.setLegacyReservation(legacy);
+        saga.compensate(release, refund);
+        sagaRepository.save(saga);
+        return id;
+    }
+
+    private Long withSaga(Order.OrderStatus status, OrderSaga.SagaState state, boolean stockReserved) {
+        Long id = placeOrder(status);
+        OrderSaga saga = new OrderSaga(id);
+        saga.setStockReserved(stockReserved);
+        if (state != OrderSaga.SagaState.RESERVING) {
+            saga.moveTo(state);
+        }
+        sagaRepository.save(saga);
+        return id;
+    }
+
+    // an order from before sagas existed: no saga row
+    private Long legacy(Order.OrderStatus status) {
+        return placeOrder(status);
+    }
+
+    private Long placeOrder(Order.OrderStatus status) {
+        Order order = new Order();
+        order.setUserId(7L);
+        order.setStatus(status);
+        OrderItem item = new OrderItem(1L, 2);
+        item.setOrder(order);
+        order.getItems().add(item);
+        Long id = orderRepository.save(order).getId();
+        refundOutcomes.put(id, "REFUNDED");
+        return id;
+    }
+
+    private OrderSagaOrchestrator orchestrator() {
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+            String path = request.url().getPath();
+            if (path.endsWith("/batch")) {
+                return Mono.just(json("[{\"id\":1,\"name\":\"Keyboard\",\"price\":49.90,\"active\":true}]"));
+            }
+            if (path.endsWith("/stock/reserve")) {
+                return Mono.fromCallable(() -> {
+                    reserveCalls.incrementAndGet();
+                    duringReserve.run();
+                    return ClientResponse.create(HttpStatus.OK).build();
+                }).subscribeOn(Schedulers.boundedElastic());
+            }
+            if (path.endsWith("/stock/release")) {
+                releaseCalls.incrementAndGet();
+                return Mono.just(ClientResponse.create(releaseStatus).build());
+            }
+            refundCalls.incrementAndGet();
+            return Mono.just(json(refundOutcomes.entrySet().stream()
+                    .map(e -> "\"" + e.getKey() + "\":\"" + e.getValue() + "\"")
+                    .collect(Collectors.joining(",", "{", "}"))));
+        });
+        OrderSagaOrchestrator orchestrator = new OrderSagaOrchestrator(orderRepository, sagaRepository, eventProducer,
+                new TransactionTemplate(transactionManager), webClient);
+        ReflectionTestUtils.setField(orchestrator, "batchSize", 100);
+        ReflectionTestUtils.setField(orchestrator, "reserveConcurrency", 8);
+        ReflectionTestUtils.setField(orchestrator, "callTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(orchestrator, "claimTimeoutMs", 120_000L);
+        ReflectionTestUtils.setField(orchestrator, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(orchestrator, "retryBackoffMs", 1L);
+        ReflectionTestUtils.setField(orchestrator, "maxBackoffMs", 1L);
+        return orchestrator;
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+}
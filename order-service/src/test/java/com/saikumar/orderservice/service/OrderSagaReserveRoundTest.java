@@ -0,0 +1,156 @@
+package com.saikumar.orderservice.service;
+
+import com.saikumar.orderservice.kafka.OrderEventProducer;
+import com.saikumar.orderservice.model.Order;
+import com.saikumar.orderservice.model.OrderItem;
+import com.saikumar.orderservice.model.OrderSaga;
+import com.saikumar.orderservice.repository.OrderRepository;
+import com.saikumar.orderservice.repository.OrderSagaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * One reserve round over a batch of new orders against a stubbed product-service: every product
+ * is looked up in a single batch call, and the per-order reservations overlap instead of running
+ * one after another. Prints the round time against what the calls would take back to back.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderSagaReserveRoundTest {
+
+    private static final int ORDERS = 40;
+    private static final int CONCURRENCY = 8;
+    private static final Duration RESERVE_LATENCY = Duration.ofMillis(50);
+    private static final long INACTIVE_PRODUCT = 99L;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderSagaRepository sagaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final OrderEventProducer eventProducer = mock(OrderEventProducer.class);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger reservations = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    @AfterEach
+    void cleanUp() {
+        sagaRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void roundLooksUpProductsOnceAndReservesOrdersConcurrently() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            ids.add(placeOrder(1L + i % 5, 2L + i % 3));
+        }
+        Long rejected = placeOrder(1L, INACTIVE_PRODUCT);
+
+        long begin = System.nanoTime();
+        orchestrator().run();
+        double millis = (System.nanoTime() - begin) / 1e6;
+
+        System.out.printf("saga reserve round: %d orders, %d product lookup(s), %d reservations, peak %d in flight, %.0f ms (%d ms back to back)%n",
+                ORDERS + 1, lookups.get(), reservations.get(), peakInFlight.get(), millis, ORDERS * RESERVE_LATENCY.toMillis());
+
+        assertThat(lookups.get()).isEqualTo(1);
+        assertThat(reservations.get()).isEqualTo(ORDERS);
+        assertThat(peakInFlight.get()).isGreaterThan(1).isLessThanOrEqualTo(CONCURRENCY);
+
+        for (Long id : ids) {
+            Order order = orderRepository.findWithItemsById(id).orElseThrow();
+            assertThat(order.getStatus()).isEqualTo(Order.OrderStatus.PAYMENT_PROCESSING);
+            assertThat(order.getTotalAmount()).isEqualByComparingTo(order.getItems().stream()
+                    .map(OrderItem::getSubtotal).reduce(BigDecimal.ZERO, BigDecimal::add));
+            assertThat(sagaRepository.findById(id).orElseThrow().getState()).isEqualTo(OrderSaga.SagaState.AWAITING_PAYMENT);
+        }
+        assertThat(orderRepository.findById(rejected).orElseThrow().getStatus()).isEqualTo(Order.OrderStatus.REJECTED);
+        verify(eventProducer, times(ORDERS)).sendOrderCreated(anyLong(), anyLong(), any());
+    }
+
+    private Long placeOrder(Long... productIds) {
+        Order order = new Order();
+        order.setUserId(7L);
+        for (Long productId : productIds) {
+            OrderItem item = new OrderItem(productId, 2);
+            item.setOrder(order);
+            order.getItems().add(item);
+        }
+        Long id = orderRepository.save(order).getId();
+        sagaRepository.save(new OrderSaga(id));
+        return id;
+    }
+
+    private OrderSagaOrchestrator orchestrator() {
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+            if (request.url().getPath().endsWith("/batch")) {
+                lookups.incrementAndGet();
+                return Mono.just(json("[" +
+                        "{\"id\":1,\"name\":\"Keyboard\",\"price\":49.90,\"active\":true}," +
+                        "{\"id\":2,\"name\":\"Mouse\",\"price\":19.99,\"active\":true}," +
+                        "{\"id\":3,\"name\":\"Monitor\",\"price\":189.00,\"active\":true}," +
+                        "{\"id\":4,\"name\":\"Dock\",\"price\":99.00,\"active\":true}," +
+                        "{\"id\":5,\"name\":\"Cable\",\"price\":9.50,\"active\":true}," +
+                        "{\"id\":99,\"name\":\"Retired\",\"price\":1.00,\"active\":false}]"));
+            }
+            reservations.incrementAndGet();
+            return Mono.delay(RESERVE_LATENCY)
+                    .map(tick -> ClientResponse.create(HttpStatus.OK).build())
+                    .doOnSubscribe(s -> peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                    .doOnTerminate(inFlight::decrementAndGet);
+        });
+        OrderSagaOrchestrator orchestrator = new OrderSagaOrchestrator(orderRepository, sagaRepository, eventProducer,
+                new TransactionTemplate(transactionManager), webClient);
+        ReflectionTestUtils.setField(orchestrator, "batchSize", 100);
+        ReflectionTestUtils.setField(orchestrator, "reserveConcurrency", CONCURRENCY);
+        ReflectionTestUtils.setField(orchestrator, "callTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(orchestrator, "claimTimeoutMs", 120_000L);
+        ReflectionTestUtils.setField(orchestrator, "maxAttempts", 10);
+        ReflectionTestUtils.setField(orchestrator, "retryBackoffMs", 1000L);
+        ReflectionTestUtils.setField(orchestrator, "maxBackoffMs", 60_000L);
+        return orchestrator;
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.saikumar.paymentservice.config;
+
+import com.saikumar.paymentservice.kafka.RetryTopics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class KafkaRetryConfig {
+
+    // order-events-retry-1..n and order-events-dlt, for order events that could not be processed
+    @Bean
+    public RetryTopics orderEventRetries(KafkaTemplate<String, byte[]> kafkaTemplate,
+                                         ConsumerFactory<String, byte[]> consumerFactory,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${events.retry.tiers:3}") int tiers,
+                                         @Value("${events.retry.initial-delay:1s}") Duration initialDelay,
+                                         @Value("${events.retry.multiplier:10}") double multiplier) {
+        return new RetryTopics("order-events", "payment-service-group", tiers, initialDelay, multiplier,
+                kafkaTemplate, consumerFactory, meterRegistry);
+    }
+}
@@ -0,0 +1,47 @@
+package com.saikumar.paymentservice.config;
+
+import com.saikumar.paymentservice.gateway.HedgingPaymentGateway;
+import com.saikumar.paymentservice.gateway.PaymentGateway;
+import com.saikumar.paymentservice.gateway.SimulatedPaymentGateway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Configuration
+public class PaymentGatewayConfig {
+
+    // only fires timers and completes futures, so a couple of threads carry any number of in-flight charges
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService gatewayScheduler() {
+        return Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "payment-gateway-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public PaymentGateway paymentGateway(ScheduledExecutorService gatewayScheduler,
+                                         @Value("${payment.gateway.provider:simulator}") String provider,
+                                         @Value("${payment.gateway.attempt-timeout:2s}") Duration attemptTimeout,
+                                         @Value("${payment.gateway.hedge-delay:800ms}") Duration hedgeDelay,
+                                         @Value("${payment.gateway.max-attempts:3}") int maxAttempts,
+                                         @Value("${payment.gateway.retry-backoff:200ms}") Duration retryBackoff,
+                                         @Value("${payment.gateway.simulator.median-latency-ms:500}") long medianLatencyMs,
+                                         @Value("${payment.gateway.simulator.p99-latency-ms:1500}") long p99LatencyMs,
+                                         @Value("${payment.gateway.simulator.decline-rate:0.1}") double declineRate,
+                                         @Value("${payment.gateway.simulator.error-rate:0.0}") double errorRate,
+                                         @Value("${payment.gateway.simulator.seed:#{null}}") Long seed) {
+        // real providers plug in here, selected by payment.gateway.provider
+        if (!"simulator".equals(provider)) {
+            throw new IllegalStateException("Unknown payment.gateway.provider: " + provider);
+        }
+        PaymentGateway delegate = new SimulatedPaymentGateway(gatewayScheduler, medianLatencyMs, p99LatencyMs,
+                declineRate, errorRate, seed);
+        return new HedgingPaymentGateway(delegate, gatewayScheduler, attemptTimeout, hedgeDelay, maxAttempts, retryBackoff);
+    }
+}
@@ -1,5 +1,6 @@
 package com.saikumar.paymentservice.controller;
 
+import com.saikumar.paymentservice.kafka.RetryTopics;
 import com.saikumar.paymentservice.model.Payment;
 import com.saikumar.paymentservice.service.PaymentService;
 import lombok.RequiredArgsConstructor;
@@ -7,6 +8,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/payments")
@@ -14,6 +16,7 @@ import java.util.List;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final RetryTopics orderEventRetries;
 
     // GET /api/payments/order/{orderId}
     @GetMapping("/order/{orderId}")
@@ -33,6 +36,19 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.refundPayment(id));
     }
 
+    // PUT /api/payments/refunds - internal use by order service, refunds cancelled orders by order id
+    @PutMapping("/refunds")
+    public ResponseEntity<Map<Long, PaymentService.RefundOutcome>> refundOrders(@RequestBody List<Long> orderIds) {
+        return ResponseEntity.ok(paymentService.refundOrders(orderIds));
+    }
+
+    // POST /api/payments/admin/dlt/replay?limit=100 - admin, republishes dead-lettered order events
+    @PostMapping("/admin/dlt/replay")
+    public ResponseEntity<Map<String, Object>> replayDeadLetters(@RequestParam(defaultValue = "100") int limit) {
+        int replayed = orderEventRetries.replayDeadLetters(Math.min(Math.max(limit, 1), 10000));
+        return ResponseEntity.ok(Map.of("topic", orderEventRetries.deadLetterTopic(), "replayed", replayed));
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("payment-service ok");
@@ -0,0 +1,4 @@
+package com.saikumar.paymentservice.event;
+
+public record OrderCancelledEvent(long orderId) {
+}
@@ -0,0 +1,6 @@
+package com.saikumar.paymentservice.event;
+
+import java.math.BigDecimal;
+
+public record OrderCreatedEvent(long orderId, long userId, BigDecimal amount) {
+}
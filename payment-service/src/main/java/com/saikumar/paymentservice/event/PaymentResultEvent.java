@@ -0,0 +1,4 @@
+package com.saikumar.paymentservice.event;
+
+public record PaymentResultEvent(long orderId, boolean success) {
+}
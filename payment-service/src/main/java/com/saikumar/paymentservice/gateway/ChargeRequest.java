@@ -0,0 +1,11 @@
+package com.saikumar.paymentservice.gateway;
+
+import java.math.BigDecimal;
+
+// The idempotency key is the same for every attempt at one payment, so providers can drop duplicate hedges and retries.
+public record ChargeRequest(Long orderId, Long userId, BigDecimal amount, String idempotencyKey, int attempt) {
+
+    public ChargeRequest withAttempt(int attempt) {
+        return new ChargeRequest(orderId, userId, amount, idempotencyKey, attempt);
+    }
+}
@@ -0,0 +1,7 @@
+package com.saikumar.paymentservice.gateway;
+
+public class GatewayException extends RuntimeException {
+    public GatewayException(String message) {
+        super(message);
+    }
+}
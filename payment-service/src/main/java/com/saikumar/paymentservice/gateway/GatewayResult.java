@@ -0,0 +1,12 @@
+package com.saikumar.paymentservice.gateway;
+
+public record GatewayResult(boolean approved, String transactionId, String failureReason) {
+
+    public static GatewayResult approved(String transactionId) {
+        return new GatewayResult(true, transactionId, null);
+    }
+
+    public static GatewayResult declined(String reason) {
+        return new GatewayResult(false, null, reason);
+    }
+}
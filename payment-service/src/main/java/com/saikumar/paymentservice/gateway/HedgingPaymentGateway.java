@@ -0,0 +1,97 @@
+package com.saikumar.paymentservice.gateway;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps a provider with timeouts, hedging and retries, all without blocking a thread.
+ *
+ * Every attempt has its own timeout. If an attempt has not answered after the hedge delay, a
+ * second copy is sent under the same idempotency key and whichever answers first wins; this cuts
+ * the tail latency a single slow call would otherwise add. Attempts that fail (error or timeout,
+ * never a decline) are retried with exponential backoff until max-attempts is used up.
+ */
+@Slf4j
+public class HedgingPaymentGateway implements PaymentGateway {
+
+    private final PaymentGateway delegate;
+    private final ScheduledExecutorService scheduler;
+    private final Duration attemptTimeout;
+    private final Duration hedgeDelay;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    public HedgingPaymentGateway(PaymentGateway delegate, ScheduledExecutorService scheduler, Duration attemptTimeout,
+                                 Duration hedgeDelay, int maxAttempts, Duration retryBackoff) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.attemptTimeout = attemptTimeout;
+        this.hedgeDelay = hedgeDelay;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+    }
+
+    @Override
+    public CompletableFuture<GatewayResult> charge(ChargeRequest request) {
+        CompletableFuture<GatewayResult> result = new CompletableFuture<>();
+        attempt(request, 1, new AtomicInteger(), result);
+        return result;
+    }
+
+    private void attempt(ChargeRequest request, int round, AtomicInteger attempts, CompletableFuture<GatewayResult> result) {
+        hedged(request, attempts).whenComplete((answer, error) -> {
+            if (error == null) {
+                result.complete(answer);
+            } else if (round >= maxAttempts) {
+                result.completeExceptionally(error);
+            } else {
+                long backoffMs = retryBackoff.toMillis() << (round - 1);
+                log.warn("Charge for order {} failed on round {}, retrying in {} ms: {}",
+                        request.orderId(), round, backoffMs, error.getMessage());
+                scheduler.schedule(() -> attempt(request, round + 1, attempts, result), backoffMs, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    // first answer from the primary or its hedge; fails only if both fail
+    private CompletableFuture<GatewayResult> hedged(ChargeRequest request, AtomicInteger attempts) {
+        CompletableFuture<GatewayResult> winner = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<GatewayResult> primary = send(request.withAttempt(attempts.incrementAndGet()));
+        relay(primary, winner, outstanding);
+
+        if (!hedgeDelay.isZero() && hedgeDelay.compareTo(attemptTimeout) < 0) {
+            scheduler.schedule(() -> {
+                if (!winner.isDone() && outstanding.incrementAndGet() > 1) {
+                    log.debug("Hedging charge for order {}", request.orderId());
+                    relay(send(request.withAttempt(attempts.incrementAndGet())), winner, outstanding);
+                }
+            }, hedgeDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return winner;
+    }
+
+    private CompletableFuture<GatewayResult> send(ChargeRequest request) {
+        try {
+            return delegate.charge(request).orTimeout(attemptTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void relay(CompletableFuture<GatewayResult> attempt, CompletableFuture<GatewayResult> winner,
+                              AtomicInteger outstanding) {
+        attempt.whenComplete((answer, error) -> {
+            if (error == null) {
+                winner.complete(answer);
+            } else if (outstanding.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+        });
+    }
+}
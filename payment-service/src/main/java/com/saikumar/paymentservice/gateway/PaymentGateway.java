@@ -0,0 +1,14 @@
+package com.saikumar.paymentservice.gateway;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A payment provider. Implementations must not block the caller: the charge completes the
+ * returned future when the provider answers. A decline completes normally with an unapproved
+ * result; the future fails only when the outcome is unknown (timeout, network or provider
+ * error), which is what makes a retry safe under the request's idempotency key.
+ */
+public interface PaymentGateway {
+
+    CompletableFuture<GatewayResult> charge(ChargeRequest request);
+}
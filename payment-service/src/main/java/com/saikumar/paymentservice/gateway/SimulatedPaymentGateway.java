@@ -0,0 +1,107 @@
+package com.saikumar.paymentservice.gateway;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a real provider. Latency is log-normal, set by its median and p99, which
+ * is the long-tailed shape real gateways show; a share of charges are declined and a share fail
+ * with a provider error. Responses are scheduled rather than slept on, so thousands of charges
+ * can be in flight without a thread each.
+ *
+ * Like a real provider it honours the idempotency key: whether a charge is approved or declined,
+ * and its transaction id, follow from the key alone, and a key that has already been answered
+ * gets the stored result back, so a hedge or retry can never see a different outcome from the
+ * original. Provider errors are drawn per attempt and leave the key unanswered. With a fixed seed
+ * every attempt draws its latency from a generator derived from the seed, the key and the attempt
+ * number, so a load test produces the same latencies and outcomes whatever the interleaving.
+ */
+@Slf4j
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    // z-score of the 99th percentile of a standard normal
+    private static final double Z_99 = 2.326;
+
+    private static final int MAX_ANSWERED_KEYS = 1_000_000;
+
+    private final ScheduledExecutorService scheduler;
+    private final double mu;
+    private final double sigma;
+    private final double declineRate;
+    private final double errorRate;
+    private final Long seed;
+    private final long salt;
+    // answered keys, oldest dropped first; plenty for any local load test
+    private final Map<String, GatewayResult> answered = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GatewayResult> eldest) {
+            return size() > MAX_ANSWERED_KEYS;
+        }
+    });
+
+    public SimulatedPaymentGateway(ScheduledExecutorService scheduler, long medianLatencyMs, long p99LatencyMs,
+                                   double declineRate, double errorRate, Long seed) {
+        this.scheduler = scheduler;
+        this.mu = Math.log(Math.max(1, medianLatencyMs));
+        this.sigma = Math.max(0, Math.log((double) Math.max(p99LatencyMs, medianLatencyMs) / Math.max(1, medianLatencyMs)) / Z_99);
+        this.declineRate = declineRate;
+        this.errorRate = errorRate;
+        this.seed = seed;
+        this.salt = seed != null ? seed : new SplittableRandom().nextLong();
+    }
+
+    @Override
+    public CompletableFuture<GatewayResult> charge(ChargeRequest request) {
+        long keyHash = hash(request.idempotencyKey());
+        SplittableRandom random = seed != null
+                ? new SplittableRandom(keyHash * 1_000_003L + request.attempt())
+                : new SplittableRandom();
+        long latencyMs = Math.round(Math.exp(mu + sigma * gaussian(random)));
+        boolean providerError = random.nextDouble() < errorRate;
+
+        CompletableFuture<GatewayResult> result = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            GatewayResult previous = answered.get(request.idempotencyKey());
+            if (previous != null) {
+                result.complete(previous);
+            } else if (providerError) {
+                result.completeExceptionally(new GatewayException("Simulated provider error"));
+            } else {
+                result.complete(answered.computeIfAbsent(request.idempotencyKey(), key -> outcome(keyHash)));
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    // approve or decline, and the transaction id, from the key alone
+    private GatewayResult outcome(long keyHash) {
+        SplittableRandom random = new SplittableRandom(keyHash);
+        if (random.nextDouble() < declineRate) {
+            return GatewayResult.declined("Insufficient funds");
+        }
+        return GatewayResult.approved("TXN-" + new UUID(random.nextLong(), random.nextLong()).toString().substring(0, 8).toUpperCase());
+    }
+
+    private long hash(String idempotencyKey) {
+        long hash = salt;
+        for (int i = 0; i < idempotencyKey.length(); i++) {
+            hash = hash * 31 + idempotencyKey.charAt(i);
+        }
+        return hash;
+    }
+
+    // Box-Muller, so draws come only from the per-charge generator
+    private static double gaussian(SplittableRandom random) {
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+}
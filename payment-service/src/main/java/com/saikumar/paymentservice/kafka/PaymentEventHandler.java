@@ -1,58 +1,140 @@
 package com.saikumar.paymentservice.kafka;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.paymentservice.event.EventCodec;
+import com.saikumar.paymentservice.event.OrderCreatedEvent;
+import com.saikumar.paymentservice.event.PaymentResultEvent;
 import com.saikumar.paymentservice.service.PaymentService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Processes order events concurrently. Each poll is split by partition and then by key (order
+ * id): events for one order run one after another in offset order, while different orders run in
+ * parallel, at most max-in-flight-per-partition at a time for any one partition, and partitions
+ * run side by side. Database work runs on the payment executor; the gateway call in between holds
+ * no thread, and neither does waiting for a free slot. The listener returns only once the whole
+ * poll is done, so offsets are committed after completion and a crash re-delivers unfinished work
+ * instead of skipping it. An event that
+ * fails is moved to the retry topics, and one that cannot be decoded to the DLT, so neither holds
+ * up the partition; processing is idempotent per order, so a retried event is safe to replay.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class PaymentEventHandler {
 
     private final PaymentService paymentService;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final EventCodec eventCodec;
+    private final ExecutorService paymentExecutor;
+    private final PublishMetrics publishMetrics;
+    private final RetryTopics retryTopics;
+
+    @Value("${payment.processing.max-in-flight-per-partition:16}")
+    private int maxInFlightPerPartition;
 
     public static final String PAYMENT_TOPIC = "payment-events";
 
-    @KafkaListener(topics = "order-events", groupId = "payment-service-group")
-    public void handleOrderEvent(String message) {
-        try {
-            Map<String, Object> event = objectMapper.readValue(message, Map.class);
-            String type = (String) event.get("eventType");
+    public PaymentEventHandler(PaymentService paymentService, KafkaTemplate<String, byte[]> kafkaTemplate,
+                               EventCodec eventCodec, ExecutorService paymentExecutor,
+                               PublishMetrics publishMetrics, RetryTopics orderEventRetries) {
+        this.paymentService = paymentService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.eventCodec = eventCodec;
+        this.paymentExecutor = paymentExecutor;
+        this.publishMetrics = publishMetrics;
+        this.retryTopics = orderEventRetries;
+        orderEventRetries.onRetry(record -> process(eventCodec.decode(record.value())).join());
+    }
 
-            if ("ORDER_CREATED".equals(type)) {
-                Long orderId = Long.valueOf(event.get("orderId").toString());
-                Long userId = Long.valueOf(event.get("userId").toString());
-                Double amount = Double.valueOf(event.get("amount").toString());
+    @KafkaListener(topics = "order-events", groupId = "payment-service-group")
+    public void handleOrderEvents(List<ConsumerRecord<String, byte[]>> records) {
+        // partition -> key -> events in offset order
+        Map<Integer, Map<String, List<ConsumerRecord<String, byte[]>>>> lanes = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            lanes.computeIfAbsent(record.partition(), p -> new LinkedHashMap<>())
+                    .computeIfAbsent(record.key(), k -> new ArrayList<>())
+                    .add(record);
+        }
 
-                boolean success = paymentService.processPayment(orderId, userId, amount);
-                publishResult(orderId, success);
+        // a partition gets max-in-flight workers, each taking the next waiting order when its current one is done
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        lanes.values().forEach(byKey -> {
+            Queue<List<ConsumerRecord<String, byte[]>>> waiting = new ConcurrentLinkedQueue<>(byKey.values());
+            for (int i = 0; i < Math.min(maxInFlightPerPartition, byKey.size()); i++) {
+                pending.add(drain(waiting));
             }
+        });
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        log.debug("Processed {} order events across {} partitions", records.size(), lanes.size());
+    }
 
-        } catch (Exception e) {
-            log.error("Error handling order event: {}", message, e);
+    // a worker stops at a failure it could not park; the listener then fails and the poll is re-delivered
+    private CompletableFuture<Void> drain(Queue<List<ConsumerRecord<String, byte[]>>> waiting) {
+        List<ConsumerRecord<String, byte[]>> events = waiting.poll();
+        if (events == null) {
+            return CompletableFuture.completedFuture(null);
         }
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (ConsumerRecord<String, byte[]> event : events) {
+            chain = chain.thenComposeAsync(done -> handleOrderEvent(event), paymentExecutor);
+        }
+        return chain.thenCompose(done -> drain(waiting));
     }
 
-    private void publishResult(Long orderId, boolean success) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("eventType", success ? "PAYMENT_SUCCESS" : "PAYMENT_FAILED");
-        result.put("orderId", orderId);
+    // completes once the event is processed or parked on a retry topic; fails only if parking fails
+    private CompletableFuture<Void> handleOrderEvent(ConsumerRecord<String, byte[]> record) {
+        Object event;
+        try {
+            event = eventCodec.decode(record.value());
+        } catch (Exception e) {
+            return retryTopics.deadLetter(record, e);
+        }
+        return process(event)
+                .handle((done, error) -> error == null
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : retryTopics.retry(record, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error))
+                .thenCompose(next -> next);
+    }
 
+    private CompletableFuture<Void> process(Object event) {
+        if (!(event instanceof OrderCreatedEvent created)) {
+            return CompletableFuture.completedFuture(null);
+        }
         try {
-            String json = objectMapper.writeValueAsString(result);
-            kafkaTemplate.send(PAYMENT_TOPIC, orderId.toString(), json);
-            log.info("Payment result sent for order {}: {}", orderId, success ? "SUCCESS" : "FAILED");
+            return paymentService.processPayment(created.orderId(), created.userId(), created.amount())
+                    .thenCompose(success -> publishResult(created.orderId(), success));
         } catch (Exception e) {
-            log.error("Failed to publish payment result for order {}", orderId, e);
+            return CompletableFuture.failedFuture(e);
         }
     }
+
+    // completes when the broker acks, so the poll's offsets are only committed once its results are published
+    private CompletableFuture<Void> publishResult(Long orderId, boolean success) {
+        String outcome = success ? "SUCCESS" : "FAILED";
+        return publishMetrics.track(PAYMENT_TOPIC,
+                        kafkaTemplate.send(PAYMENT_TOPIC, orderId.toString(), eventCodec.encode(new PaymentResultEvent(orderId, success))))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Failed to publish payment result for order {}", orderId, error);
+                    } else {
+                        log.info("Payment result sent for order {}: {} (partition {}, offset {})", orderId, outcome,
+                                result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+                    }
+                })
+                .thenApply(result -> null);
+    }
 }
@@ -0,0 +1,50 @@
+package com.saikumar.paymentservice.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish outcome metrics fed from send callbacks: kafka.publish.sent / kafka.publish.failed
+ * counters and a kafka.publish.latency timer (send to broker ack, with p50/p99) per topic.
+ * order-service keeps a copy of this class; change both together.
+ */
+@Component
+public class PublishMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Meters> byTopic = new ConcurrentHashMap<>();
+
+    public PublishMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <K, V> CompletableFuture<SendResult<K, V>> track(String topic, CompletableFuture<SendResult<K, V>> send) {
+        long start = System.nanoTime();
+        Meters meters = byTopic.computeIfAbsent(topic, this::meters);
+        return send.whenComplete((result, error) -> {
+            meters.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            (error == null ? meters.sent : meters.failed).increment();
+        });
+    }
+
+    private Meters meters(String topic) {
+        return new Meters(
+                meterRegistry.counter("kafka.publish.sent", "topic", topic),
+                meterRegistry.counter("kafka.publish.failed", "topic", topic),
+                Timer.builder("kafka.publish.latency")
+                        .tag("topic", topic)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry));
+    }
+
+    private record Meters(Counter sent, Counter failed, Timer latency) {
+    }
+}
@@ -1,13 +1,33 @@
 package com.saikumar.paymentservice.repository;
 
 import com.saikumar.paymentservice.model.Payment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByOrderId(Long orderId);
+    List<Payment> findByOrderIdIn(List<Long> orderIds);
     List<Payment> findByUserId(Long userId);
     List<Payment> findByStatus(Payment.PaymentStatus status);
+
+    // keyset batches of (id, orderId) for warming the dedup index
+    @Query("SELECT p.id, p.orderId FROM Payment p WHERE p.id > :after ORDER BY p.id")
+    List<Object[]> findIdAndOrderIdAfter(@Param("after") Long after, Pageable limit);
+
+    // settles a payment only if it is still PROCESSING; 0 rows means another delivery settled it first
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :status, p.transactionId = :transactionId, p.failureReason = :failureReason, " +
+            "p.processedAt = :processedAt WHERE p.id = :id AND p.status = :from")
+    int settle(@Param("id") Long id, @Param("from") Payment.PaymentStatus from, @Param("status") Payment.PaymentStatus status,
+               @Param("transactionId") String transactionId, @Param("failureReason") String failureReason,
+               @Param("processedAt") LocalDateTime processedAt);
 }
@@ -0,0 +1,128 @@
+package com.saikumar.paymentservice.service;
+
+import com.saikumar.paymentservice.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers which orders already have a payment so redelivered events are recognised without a
+ * database read. A Bloom filter over every order id answers "definitely new" for the common
+ * case, letting a first-time payment go straight to the insert; an LRU of recently settled
+ * outcomes lets a redelivery storm replay results from memory. Anything in between falls back
+ * to the database, and the unique key on payments.order_id stays the final guard.
+ */
+@Component
+@Slf4j
+public class PaymentDedupIndex {
+
+    private static final int LOAD_BATCH = 10_000;
+
+    private final PaymentRepository paymentRepository;
+    private final BloomFilter seenOrders;
+    private final Map<Long, Boolean> settled;
+
+    public PaymentDedupIndex(PaymentRepository paymentRepository,
+                             @Value("${payment.dedup.expected-orders:10000000}") long expectedOrders,
+                             @Value("${payment.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+                             @Value("${payment.dedup.recent-results:100000}") int recentResults) {
+        this.paymentRepository = paymentRepository;
+        this.seenOrders = new BloomFilter(expectedOrders, falsePositiveRate);
+        this.settled = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > recentResults;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void init() {
+        long lastId = 0;
+        long loaded = 0;
+        List<Object[]> batch;
+        do {
+            batch = paymentRepository.findIdAndOrderIdAfter(lastId, PageRequest.of(0, LOAD_BATCH));
+            for (Object[] row : batch) {
+                lastId = (Long) row[0];
+                seenOrders.put((Long) row[1]);
+            }
+            loaded += batch.size();
+        } while (batch.size() == LOAD_BATCH);
+        log.info("Payment dedup index loaded {} orders", loaded);
+    }
+
+    public boolean mightHaveSeen(Long orderId) {
+        return seenOrders.mightContain(orderId);
+    }
+
+    public void recordAttempt(Long orderId) {
+        seenOrders.put(orderId);
+    }
+
+    // true/false for a settled payment, null when not known here
+    public synchronized Boolean settledResult(Long orderId) {
+        return settled.get(orderId);
+    }
+
+    public synchronized void recordResult(Long orderId, boolean success) {
+        settled.put(orderId, success);
+    }
+
+    // lock-free Bloom filter over longs using double hashing on a 64-bit mix of the key
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashes;
+
+        private BloomFilter(long expected, double fpp) {
+            long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.bitCount = Math.max(64, m);
+            this.bits = new AtomicLongArray(Math.toIntExact((bitCount + 63) / 64));
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+        }
+
+        void put(long key) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    // retry until set
+                }
+            }
+        }
+
+        boolean mightContain(long key) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // splitmix64 finalizer, so sequential order ids spread over the whole bit array
+        private static long mix(long key) {
+            long z = key + 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.saikumar.paymentservice.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Makes sure the unique key on payments.order_id exists before the service takes traffic. With
+ * ddl-auto: update Hibernate only logs a warning when it cannot add the key, which it cannot on a
+ * table that already holds more than one payment for an order, and the dedup index relies on
+ * that key as its final guard. A missing key is added when the table allows it; otherwise startup
+ * fails, unless payment.schema.dedup-on-startup is set for one run to archive the extra rows into
+ * payments_duplicates first.
+ */
+@Component
+@Slf4j
+public class PaymentOrderKeyGuard {
+
+    static final String ARCHIVE_TABLE = "payments_duplicates";
+
+    // per order, keep a payment that moved money, then a failed one, then the earliest attempt
+    private static final String EXTRA_ROWS = "SELECT id FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY order_id " +
+            "ORDER BY CASE status WHEN 'SUCCESS' THEN 0 WHEN 'REFUNDED' THEN 0 WHEN 'FAILED' THEN 1 ELSE 2 END, id) AS rn " +
+            "FROM payments) ranked WHERE rn > 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean dedupOnStartup;
+
+    public PaymentOrderKeyGuard(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                @Value("${payment.schema.dedup-on-startup:false}") boolean dedupOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dedupOnStartup = dedupOnStartup;
+    }
+
+    @PostConstruct
+    public void verify() {
+        if (hasUniqueOrderKey()) {
+            return;
+        }
+        long duplicated = count("SELECT COUNT(*) FROM (SELECT order_id FROM payments GROUP BY order_id HAVING COUNT(*) > 1) d");
+        if (duplicated > 0) {
+            if (!dedupOnStartup) {
+                throw new IllegalStateException("payments has " + duplicated + " order ids with more than one payment, " +
+                        "so the unique key on payments.order_id is missing; start once with " +
+                        "payment.schema.dedup-on-startup=true to archive the extra rows into " + ARCHIVE_TABLE);
+            }
+            archiveDuplicates(duplicated);
+        }
+        jdbcTemplate.execute("ALTER TABLE payments ADD CONSTRAINT uk_payments_order_id UNIQUE (order_id)");
+        log.info("Added the missing unique key uk_payments_order_id on payments.order_id");
+    }
+
+    private void archiveDuplicates(long duplicated) {
+        long charged = count("SELECT COUNT(*) FROM (SELECT order_id FROM payments WHERE status IN ('SUCCESS', 'REFUNDED') " +
+                "GROUP BY order_id HAVING COUNT(*) > 1) d");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ARCHIVE_TABLE + " AS SELECT * FROM payments WHERE 1 = 0");
+        int archived = transactionTemplate.execute(tx -> {
+            int copied = jdbcTemplate.update("INSERT INTO " + ARCHIVE_TABLE + " SELECT * FROM payments WHERE id IN (" + EXTRA_ROWS + ")");
+            jdbcTemplate.update("DELETE FROM payments WHERE id IN (SELECT id FROM " + ARCHIVE_TABLE + ")");
+            return copied;
+        });
+        log.warn("Archived {} duplicate payments for {} orders into {}", archived, duplicated, ARCHIVE_TABLE);
+        if (charged > 0) {
+            log.error("{} orders were charged more than once; their extra charges are in {} and need refunding",
+                    charged, ARCHIVE_TABLE);
+        }
+    }
+
+    private boolean hasUniqueOrderKey() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? "PAYMENTS" : "payments";
+            // columns of each unique index on the table
+            Map<String, Set<String>> indexes = new HashMap<>();
+            try (ResultSet rows = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table, true, false)) {
+                while (rows.next()) {
+                    String index = rows.getString("INDEX_NAME");
+                    String column = rows.getString("COLUMN_NAME");
+                    if (index != null && column != null) {
+                        indexes.computeIfAbsent(index, name -> new HashSet<>()).add(column.toLowerCase());
+                    }
+                }
+            }
+            return indexes.containsValue(Set.of("order_id"));
+        }));
+    }
+
+    private long count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count == null ? 0 : count;
+    }
+}
@@ -1,15 +1,24 @@
 package com.saikumar.paymentservice.service;
 
+import com.saikumar.paymentservice.gateway.ChargeRequest;
+import com.saikumar.paymentservice.gateway.GatewayResult;
+import com.saikumar.paymentservice.gateway.PaymentGateway;
 import com.saikumar.paymentservice.model.Payment;
 import com.saikumar.paymentservice.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 @Service
 @RequiredArgsConstructor
@@ -17,44 +26,102 @@ import java.util.UUID;
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentGateway paymentGateway;
+    private final ExecutorService paymentExecutor;
+    private final PaymentDedupIndex paymentDedupIndex;
 
-    public boolean processPayment(Long orderId, Long userId, Double amount) {
+    public enum RefundOutcome {
+        REFUNDED,
+        // the payment failed, nothing to give back
+        NOT_CHARGED,
+        // no payment for the order (yet); the order service refunds it if one succeeds later
+        NOT_FOUND,
+        // the charge is still in progress; ask again later
+        PENDING
+    }
+
+    /**
+     * Charges an order at most once. A settled payment for the order is replayed instead of
+     * charged again; a payment left PROCESSING (say by a crash mid-charge) is resumed under the
+     * same idempotency key, so the provider returns the original charge rather than a new one.
+     */
+    public CompletableFuture<Boolean> processPayment(Long orderId, Long userId, BigDecimal amount) {
+        Boolean replay = paymentDedupIndex.settledResult(orderId);
+        if (replay != null) {
+            log.debug("Replaying settled payment for order {}", orderId);
+            return CompletableFuture.completedFuture(replay);
+        }
+
+        Payment payment = paymentDedupIndex.mightHaveSeen(orderId)
+                ? paymentRepository.findByOrderId(orderId).orElse(null)
+                : null;
+        if (payment == null) {
+            payment = insertPayment(orderId, userId, amount);
+        }
+        if (isSettled(payment)) {
+            boolean success = payment.getStatus() != Payment.PaymentStatus.FAILED;
+            paymentDedupIndex.recordResult(orderId, success);
+            log.info("Order {} already has a {} payment, replaying it", orderId, payment.getStatus());
+            return CompletableFuture.completedFuture(success);
+        }
+
+        Payment charging = payment;
+        ChargeRequest request = new ChargeRequest(orderId, userId, payment.getAmount(), "order-" + orderId, 0);
+        return paymentGateway.charge(request)
+                .handleAsync((result, error) -> complete(charging, result, error), paymentExecutor);
+    }
+
+    // the unique key on order_id catches a payment the dedup index didn't know about
+    private Payment insertPayment(Long orderId, Long userId, BigDecimal amount) {
         Payment payment = new Payment();
         payment.setOrderId(orderId);
         payment.setUserId(userId);
-        payment.setAmount(BigDecimal.valueOf(amount));
+        payment.setAmount(amount);
         payment.setStatus(Payment.PaymentStatus.PROCESSING);
-        paymentRepository.save(payment);
-
         try {
-            // simulate payment processing
-            // in real world: integrate with Stripe, Razorpay, etc.
-            Thread.sleep(500);
-
-            // simulate 90% success rate for testing
-            boolean success = Math.random() > 0.1;
-
-            if (success) {
-                payment.setStatus(Payment.PaymentStatus.SUCCESS);
-                payment.setTransactionId("TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-                payment.setProcessedAt(LocalDateTime.now());
-                log.info("Payment SUCCESS for order {}, txn: {}", orderId, payment.getTransactionId());
-            } else {
-                payment.setStatus(Payment.PaymentStatus.FAILED);
-                payment.setFailureReason("Insufficient funds");
-                log.warn("Payment FAILED for order {}", orderId);
-            }
-
             paymentRepository.save(payment);
-            return success;
+        } catch (DataIntegrityViolationException e) {
+            payment = paymentRepository.findByOrderId(orderId).orElseThrow(() -> e);
+        }
+        paymentDedupIndex.recordAttempt(orderId);
+        return payment;
+    }
 
-        } catch (Exception e) {
-            payment.setStatus(Payment.PaymentStatus.FAILED);
-            payment.setFailureReason("Processing error: " + e.getMessage());
-            paymentRepository.save(payment);
-            log.error("Payment processing error for order {}", orderId, e);
-            return false;
+    private static boolean isSettled(Payment payment) {
+        return payment.getStatus() == Payment.PaymentStatus.SUCCESS
+                || payment.getStatus() == Payment.PaymentStatus.FAILED
+                || payment.getStatus() == Payment.PaymentStatus.REFUNDED;
+    }
+
+    /**
+     * Settles the payment from the provider's answer. A failed future means the outcome is unknown:
+     * the charge may or may not have gone through, so the payment stays PROCESSING and the error is
+     * rethrown, which sends the event through the retry topics; the retry charges again under the
+     * same idempotency key and gets the provider's original answer.
+     */
+    private boolean complete(Payment payment, GatewayResult result, Throwable error) {
+        Long orderId = payment.getOrderId();
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            log.warn("Payment outcome unknown for order {}, leaving it PROCESSING for a retry: {}", orderId, cause.toString());
+            throw new CompletionException(cause);
         }
+        Payment.PaymentStatus status = result.approved() ? Payment.PaymentStatus.SUCCESS : Payment.PaymentStatus.FAILED;
+        int updated = paymentRepository.settle(payment.getId(), Payment.PaymentStatus.PROCESSING, status,
+                result.transactionId(), result.failureReason(), result.approved() ? LocalDateTime.now() : null);
+        if (updated == 0) {
+            // a concurrent delivery of the same order settled it first; report what it recorded
+            status = paymentRepository.findById(payment.getId()).map(Payment::getStatus).orElse(status);
+            log.debug("Payment for order {} was already settled as {}", orderId, status);
+        } else if (status == Payment.PaymentStatus.SUCCESS) {
+            log.info("Payment SUCCESS for order {}, txn: {}", orderId, result.transactionId());
+        } else {
+            log.warn("Payment FAILED for order {}", orderId);
+        }
+
+        boolean success = status != Payment.PaymentStatus.FAILED;
+        paymentDedupIndex.recordResult(orderId, success);
+        return success;
     }
 
     public Payment getPaymentByOrderId(Long orderId) {
@@ -74,9 +141,38 @@ public class PaymentService {
             throw new RuntimeException("Can only refund successful payments");
         }
 
-        payment.setStatus(Payment.PaymentStatus.REFUNDED);
+        markRefunded(payment);
         paymentRepository.save(payment);
-        log.info("Payment {} refunded for order {}", paymentId, payment.getOrderId());
         return payment;
     }
+
+    /**
+     * Refunds the payments of many cancelled orders with one lookup and one batched save. Safe to
+     * repeat: an order already refunded reports REFUNDED again.
+     */
+    public Map<Long, RefundOutcome> refundOrders(List<Long> orderIds) {
+        Map<Long, RefundOutcome> outcomes = new LinkedHashMap<>();
+        orderIds.forEach(orderId -> outcomes.put(orderId, RefundOutcome.NOT_FOUND));
+
+        List<Payment> refunded = new ArrayList<>();
+        for (Payment payment : paymentRepository.findByOrderIdIn(orderIds)) {
+            switch (payment.getStatus()) {
+                case SUCCESS -> {
+                    markRefunded(payment);
+                    refunded.add(payment);
+                    outcomes.put(payment.getOrderId(), RefundOutcome.REFUNDED);
+                }
+                case REFUNDED -> outcomes.put(payment.getOrderId(), RefundOutcome.REFUNDED);
+                case FAILED -> outcomes.put(payment.getOrderId(), RefundOutcome.NOT_CHARGED);
+                default -> outcomes.put(payment.getOrderId(), RefundOutcome.PENDING);
+            }
+        }
+        paymentRepository.saveAll(refunded);
+        return outcomes;
+    }
+
+    private void markRefunded(Payment payment) {
+        payment.setStatus(Payment.PaymentStatus.REFUNDED);
+        log.info("Payment {} refunded for order {}", payment.getId(), payment.getOrderId());
+    }
 }
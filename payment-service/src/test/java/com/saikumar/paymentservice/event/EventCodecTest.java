@@ -0,0 +1,72 @@
+package com.saikumar.paymentservice.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pins the binary layout byte for byte. order-service's EventCodecTest holds the same fixtures,
+ * so a change to either copy of the codec fails a test instead of a consumer in production.
+ */
+class EventCodecTest {
+
+    // magic, schema, version | orderId | userId | scale | unscaled amount
+    static final String ORDER_CREATED_42 = "ce000101" + "000000000000002a" + "0000000000000007" + "02" + "00000000000007cf";
+    static final String ORDER_CANCELLED_42 = "ce000201" + "000000000000002a";
+    static final String PAYMENT_SUCCESS_42 = "ce000301" + "000000000000002a" + "01";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventCodec binary = new EventCodec(objectMapper, "binary");
+    private final EventCodec json = new EventCodec(objectMapper, "json");
+
+    @Test
+    void encodesTheFixedLayout() {
+        assertThat(hex(binary.encode(new PaymentResultEvent(42, true)))).isEqualTo(PAYMENT_SUCCESS_42);
+        assertThat(hex(binary.encode(new PaymentResultEvent(42, false)))).isEqualTo("ce000301" + "000000000000002a" + "00");
+    }
+
+    @Test
+    void decodesWhatOrderServiceSends() {
+        assertThat(binary.decode(bytes(ORDER_CREATED_42))).isEqualTo(new OrderCreatedEvent(42, 7, new BigDecimal("19.99")));
+        assertThat(binary.decode(bytes(ORDER_CANCELLED_42))).isEqualTo(new OrderCancelledEvent(42));
+    }
+
+    @Test
+    void ownEventsRoundTripInBothFormats() {
+        for (EventCodec codec : new EventCodec[] {binary, json}) {
+            assertThat(codec.decode(codec.encode(new PaymentResultEvent(Long.MAX_VALUE, true))))
+                    .isEqualTo(new PaymentResultEvent(Long.MAX_VALUE, true));
+            assertThat(codec.decode(codec.encode(new PaymentResultEvent(3, false)))).isEqualTo(new PaymentResultEvent(3, false));
+        }
+    }
+
+    @Test
+    void legacyJsonIsStillRead() {
+        byte[] legacy = "{\"eventType\":\"ORDER_CREATED\",\"orderId\":42,\"userId\":7,\"amount\":19.99}".getBytes(StandardCharsets.UTF_8);
+        byte[] ignored = "{\"eventType\":\"ORDER_SHIPPED\",\"orderId\":42}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(binary.decode(legacy)).isEqualTo(new OrderCreatedEvent(42, 7, new BigDecimal("19.99")));
+        assertThat(binary.decode(ignored)).isNull();
+    }
+
+    @Test
+    void unknownSchemasAreSkippedAndUnknownVersionsRejected() {
+        assertThat(binary.decode(bytes("ce006301" + "000000000000002a"))).isNull();
+        assertThatThrownBy(() -> binary.decode(bytes("ce000102" + "000000000000002a"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> binary.decode(bytes("00000101"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String hex(byte[] data) {
+        return HexFormat.of().formatHex(data);
+    }
+
+    private static byte[] bytes(String hex) {
+        return HexFormat.of().parseHex(hex);
+    }
+}
@@ -0,0 +1,52 @@
+package com.saikumar.paymentservice.gateway;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimulatedPaymentGatewayTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+    @AfterEach
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void everyAttemptUnderOneKeyGetsTheSameAnswer() {
+        // half the attempts fail with a provider error and half the keys are declined
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(scheduler, 1, 5, 0.5, 0.5, null);
+
+        for (long orderId = 1; orderId <= 50; orderId++) {
+            Set<GatewayResult> answers = new HashSet<>();
+            for (int attempt = 1; attempt <= 20; attempt++) {
+                try {
+                    answers.add(gateway.charge(new ChargeRequest(orderId, 7L, BigDecimal.TEN, "order-" + orderId, attempt)).join());
+                } catch (CompletionException e) {
+                    assertThat(e.getCause()).isInstanceOf(GatewayException.class);
+                }
+            }
+            assertThat(answers).hasSizeLessThanOrEqualTo(1);
+        }
+    }
+
+    @Test
+    void seededRunsAgreeOnOutcomes() {
+        SimulatedPaymentGateway first = new SimulatedPaymentGateway(scheduler, 1, 5, 0.3, 0.0, 42L);
+        SimulatedPaymentGateway second = new SimulatedPaymentGateway(scheduler, 1, 5, 0.3, 0.0, 42L);
+
+        for (long orderId = 1; orderId <= 50; orderId++) {
+            ChargeRequest request = new ChargeRequest(orderId, 7L, BigDecimal.TEN, "order-" + orderId, 1);
+            assertThat(first.charge(request).join()).isEqualTo(second.charge(request.withAttempt(2)).join());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.saikumar.paymentservice.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.paymentservice.event.EventCodec;
+import com.saikumar.paymentservice.service.PaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A poll spread over three partitions, several events per order, against a payment service that
+ * answers after a short delay. Events of one order must be processed in offset order, no
+ * partition may have more than max-in-flight orders running at once, and the poll as a whole must
+ * overlap far more than one event at a time. Prints the poll time against the sequential cost.
+ */
+class PaymentEventHandlerTest {
+
+    private static final int PARTITIONS = 3;
+    private static final int ORDERS_PER_PARTITION = 40;
+    private static final int EVENTS_PER_ORDER = 5;
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final long LATENCY_MS = 2;
+
+    private final PaymentService paymentService = mock(PaymentService.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final RetryTopics retryTopics = mock(RetryTopics.class);
+    private final EventCodec eventCodec = new EventCodec(new ObjectMapper(), "binary");
+    private final ExecutorService paymentExecutor = Executors.newFixedThreadPool(32);
+    private final ExecutorService gateway = Executors.newCachedThreadPool();
+
+    // order id -> sequence numbers in the order they were processed
+    private final Map<Long, List<Integer>> processed = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> peakPerPartition = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peakOverall = new AtomicInteger();
+
+    private PaymentEventHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        for (int p = 0; p < PARTITIONS; p++) {
+            inFlight.put(p, new AtomicInteger());
+            peakPerPartition.put(p, new AtomicInteger());
+        }
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(call -> CompletableFuture.completedFuture(
+                new SendResult<>(new ProducerRecord<>(call.getArgument(0), call.getArgument(1), call.getArgument(2)),
+                        new RecordMetadata(new TopicPartition(call.getArgument(0), 0), 0, 0, 0, 0, 0))));
+        when(retryTopics.retry(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        handler = new PaymentEventHandler(paymentService, kafkaTemplate, eventCodec, paymentExecutor,
+                new PublishMetrics(new SimpleMeterRegistry()), retryTopics);
+        ReflectionTestUtils.setField(handler, "maxInFlightPerPartition", MAX_IN_FLIGHT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentExecutor.shutdownNow();
+        gateway.shutdownNow();
+    }
+
+    @Test
+    void ordersRunConcurrentlyWhileEachOrderKeepsItsOffsetOrder() {
+        when(paymentService.processPayment(anyLong(), anyLong(), any())).thenAnswer(call -> {
+            long orderId = call.getArgument(0);
+            int sequence = call.<BigDecimal>getArgument(2).intValue();
+            int partition = partitionOf(orderId);
+            peakPerPartition.get(partition).accumulateAndGet(inFlight.get(partition).incrementAndGet(), Math::max);
+            peakOverall.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                processed.computeIfAbsent(orderId, id -> new ArrayList<>()).add(sequence);
+                inFlight.get(partition).decrementAndGet();
+                running.decrementAndGet();
+                return true;
+            }, CompletableFuture.delayedExecutor(LATENCY_MS, TimeUnit.MILLISECONDS, gateway));
+        });
+
+        List<ConsumerRecord<String, byte[]>> poll = poll();
+        long begin = System.nanoTime();
+        handler.handleOrderEvents(poll);
+        double millis = (System.nanoTime() - begin) / 1e6;
+        System.out.printf("order events: %d in %.0f ms (%d ms one at a time), peak %d in flight, per partition %s%n",
+                poll.size(), millis, poll.size() * LATENCY_MS, peakOverall.get(), peakPerPartition.values());
+
+        assertThat(processed).hasSize(PARTITIONS * ORDERS_PER_PARTITION);
+        processed.values().forEach(sequence -> assertThat(sequence).containsExactly(0, 1, 2, 3, 4));
+        peakPerPartition.values().forEach(peak -> assertThat(peak.get()).isLessThanOrEqualTo(MAX_IN_FLIGHT));
+        // partitions run side by side, each up to its own cap
+        assertThat(peakOverall.get()).isGreaterThan(2 * MAX_IN_FLIGHT);
+        verify(kafkaTemplate, times(poll.size())).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void failedEventIsParkedAndTheOrdersLaterEventsStillRun() {
+        AtomicInteger calls = new AtomicInteger();
+        when(paymentService.processPayment(anyLong(), anyLong(), any())).thenAnswer(call -> calls.getAndIncrement() == 0
+                ? CompletableFuture.failedFuture(new IllegalStateException("gateway timeout"))
+                : CompletableFuture.completedFuture(true));
+
+        List<ConsumerRecord<String, byte[]>> poll = List.of(record(0, 0, 7L, 0), record(0, 1, 7L, 1));
+        handler.handleOrderEvents(poll);
+
+        verify(retryTopics, times(1)).retry(any(), any());
+        assertThat(calls.get()).isEqualTo(2);
+        verify(kafkaTemplate, times(1)).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void undecodableEventGoesStraightToTheDeadLetterTopic() {
+        when(retryTopics.deadLetter(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(paymentService.processPayment(anyLong(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(true));
+        ConsumerRecord<String, byte[]> garbage = new ConsumerRecord<>("order-events", 0, 0, "7",
+                "not an event".getBytes(StandardCharsets.UTF_8));
+
+        handler.handleOrderEvents(List.of(garbage, record(0, 1, 7L, 1)));
+
+        verify(retryTopics, times(1)).deadLetter(any(), any());
+        verify(retryTopics, never()).retry(any(), any());
+        verify(paymentService, times(1)).processPayment(anyLong(), anyLong(), any());
+    }
+
+    // each partition's records interleave its orders, as a real poll would
+    private List<ConsumerRecord<String, byte[]>> poll() {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            long offset = 0;
+            for (int sequence = 0; sequence < EVENTS_PER_ORDER; sequence++) {
+                for (int o = 0; o < ORDERS_PER_PARTITION; o++) {
+                    records.add(record(p, offset++, (long) o * PARTITIONS + p, sequence));
+                }
+            }
+        }
+        return records;
+    }
+
+    private static int partitionOf(long orderId) {
+        return (int) (orderId % PARTITIONS);
+    }
+
+    // an ORDER_CREATED event whose amount carries the event's sequence number within its order
+    private static ConsumerRecord<String, byte[]> record(int partition, long offset, long orderId, int sequence) {
+        byte[] value = ByteBuffer.allocate(4 + 8 + 8 + 1 + 8)
+                .put(EventCodec.MAGIC).putShort(EventCodec.ORDER_CREATED).put(EventCodec.V1)
+                .putLong(orderId).putLong(1L).put((byte) 0).putLong(sequence)
+                .array();
+        return new ConsumerRecord<>("order-events", partition, offset, Long.toString(orderId), value);
+    }
+}
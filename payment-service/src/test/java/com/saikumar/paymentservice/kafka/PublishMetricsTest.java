@@ -0,0 +1,55 @@
+package com.saikumar.paymentservice.kafka;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PublishMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PublishMetrics publishMetrics = new PublishMetrics(meterRegistry);
+
+    @Test
+    void outcomesAreCountedPerTopicWhenTheBrokerAnswers() {
+        CompletableFuture<SendResult<String, byte[]>> acked = new CompletableFuture<>();
+        CompletableFuture<SendResult<String, byte[]>> tracked = publishMetrics.track("payment-events", acked);
+        publishMetrics.track("payment-events", CompletableFuture.<SendResult<String, byte[]>>failedFuture(new TimeoutException("no ack")));
+        publishMetrics.track("order-events", CompletableFuture.completedFuture(sendResult("order-events")));
+
+        // nothing is counted until the send completes
+        assertThat(meterRegistry.counter("kafka.publish.sent", "topic", "payment-events").count()).isZero();
+        SendResult<String, byte[]> result = sendResult("payment-events");
+        acked.complete(result);
+
+        assertThat(tracked.join()).isSameAs(result);
+        assertThat(meterRegistry.counter("kafka.publish.sent", "topic", "payment-events").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("kafka.publish.failed", "topic", "payment-events").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("kafka.publish.sent", "topic", "order-events").count()).isEqualTo(1);
+        Timer latency = meterRegistry.get("kafka.publish.latency").tag("topic", "payment-events").timer();
+        assertThat(latency.count()).isEqualTo(2);
+    }
+
+    @Test
+    void failuresStillReachTheCaller() {
+        CompletableFuture<SendResult<String, byte[]>> tracked = publishMetrics.track("payment-events",
+                CompletableFuture.failedFuture(new TimeoutException("no ack")));
+
+        assertThatThrownBy(tracked::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    private static SendResult<String, byte[]> sendResult(String topic) {
+        return new SendResult<>(new ProducerRecord<>(topic, "1", new byte[0]),
+                new RecordMetadata(new TopicPartition(topic, 0), 0, 0, 0, 0, 0));
+    }
+}
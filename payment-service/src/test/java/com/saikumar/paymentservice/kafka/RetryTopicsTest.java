@@ -0,0 +1,221 @@
+package com.saikumar.paymentservice.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The retry tiers without a broker: a failed record climbs retry-1 to retry-N and then lands in the
+ * DLT, an undecodable one goes to the DLT at once, a tier handles what is due and nacks the first
+ * record that is not for the time it has left, and a DLT replay resumes from the replay group's
+ * committed offsets, committing nothing until every record is back on the topic.
+ */
+class RetryTopicsTest {
+
+    private static final String TOPIC = "order-events";
+    private static final String GROUP = "payment-service-group";
+    private static final TopicPartition DLT = new TopicPartition(TOPIC + "-dlt", 0);
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ConsumerFactory<String, byte[]> consumerFactory = mock(ConsumerFactory.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ProducerRecord<String, byte[]>> sent = new ArrayList<>();
+    // what the broker keeps for the replay group between replays
+    private final Map<TopicPartition, OffsetAndMetadata> replayOffsets = new HashMap<>();
+
+    private RetryTopics retryTopics;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(call -> {
+            sent.add(call.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+        // three tiers: 1 s, 4 s, 16 s
+        retryTopics = new RetryTopics(TOPIC, GROUP, 3, Duration.ofSeconds(1), 4.0, kafkaTemplate, consumerFactory, meterRegistry);
+    }
+
+    @Test
+    void failedRecordClimbsTheTiersAndEndsInTheDeadLetterTopic() {
+        ConsumerRecord<String, byte[]> record = record(0, "42");
+        long[] delays = {1_000, 4_000, 16_000};
+
+        for (int tier = 1; tier <= 3; tier++) {
+            long before = System.currentTimeMillis();
+            retryTopics.retry(record, new IllegalStateException("gateway timeout")).join();
+            ProducerRecord<String, byte[]> out = sent.get(sent.size() - 1);
+
+            assertThat(out.topic()).isEqualTo(TOPIC + "-retry-" + tier);
+            assertThat(out.key()).isEqualTo("42");
+            assertThat(out.value()).isEqualTo(record.value());
+            assertThat(header(out, RetryTopics.ATTEMPT_HEADER)).isEqualTo(Integer.toString(tier));
+            assertThat(Long.parseLong(header(out, RetryTopics.DUE_HEADER)))
+                    .isBetween(before + delays[tier - 1], System.currentTimeMillis() + delays[tier - 1]);
+            assertThat(header(out, RetryTopics.ERROR_HEADER)).contains("IllegalStateException: gateway timeout");
+            // the next failure happens to what the tier consumer reads back
+            record = consumed(out, tier);
+        }
+
+        retryTopics.retry(record, new IllegalStateException("gateway timeout")).join();
+        ProducerRecord<String, byte[]> dead = sent.get(sent.size() - 1);
+        assertThat(dead.topic()).isEqualTo(retryTopics.deadLetterTopic()).isEqualTo(TOPIC + "-dlt");
+        assertThat(header(dead, RetryTopics.ATTEMPT_HEADER)).isEqualTo("3");
+
+        for (String tier : List.of("retry-1", "retry-2", "retry-3", "dlt")) {
+            assertThat(meterRegistry.counter("kafka.retry.routed", "topic", TOPIC, "tier", tier).count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void malformedRecordSkipsTheTiers() {
+        retryTopics.deadLetter(record(0, "42"), new IllegalArgumentException("Unknown event type 99")).join();
+
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0).topic()).isEqualTo(TOPIC + "-dlt");
+        assertThat(header(sent.get(0), RetryTopics.ATTEMPT_HEADER)).isEqualTo("0");
+        assertThat(meterRegistry.counter("kafka.retry.routed", "topic", TOPIC, "tier", "retry-1").count()).isZero();
+        assertThat(meterRegistry.counter("kafka.retry.routed", "topic", TOPIC, "tier", "dlt").count()).isEqualTo(1);
+    }
+
+    @Test
+    void tierHandlesWhatIsDueAndWaitsForTheRest() {
+        List<String> handled = new ArrayList<>();
+        retryTopics.onRetry(record -> {
+            handled.add(record.key());
+            if (record.key().equals("2")) {
+                throw new IllegalStateException("still failing");
+            }
+        });
+        long now = System.currentTimeMillis();
+        List<ConsumerRecord<String, byte[]>> poll = List.of(
+                tierRecord(0, "1", 1, now - 50),
+                tierRecord(1, "2", 1, now - 10),
+                tierRecord(2, "3", 1, now + 5_000),
+                tierRecord(3, "4", 1, now + 5_100));
+        Acknowledgment ack = mock(Acknowledgment.class);
+
+        retryTopics.onTierBatch("retry-1", poll, ack);
+
+        assertThat(handled).containsExactly("1", "2");
+        assertThat(sent).extracting(ProducerRecord::topic).containsExactly(TOPIC + "-retry-2");
+        ArgumentCaptor<Duration> wait = ArgumentCaptor.forClass(Duration.class);
+        verify(ack).nack(eq(2), wait.capture());
+        assertThat(wait.getValue()).isBetween(Duration.ofMillis(4_000), Duration.ofMillis(5_000));
+        verify(ack, never()).acknowledge();
+        assertThat(meterRegistry.counter("kafka.retry.recovered", "topic", TOPIC, "tier", "retry-1").count()).isEqualTo(1);
+
+        // redelivered once due, the rest of the poll is handled and committed
+        retryTopics.onTierBatch("retry-1", List.of(tierRecord(2, "3", 1, now - 1), tierRecord(3, "4", 1, now - 1)), ack);
+        assertThat(handled).containsExactly("1", "2", "3", "4");
+        verify(ack).acknowledge();
+        verify(ack, times(1)).nack(anyInt(), any(Duration.class));
+    }
+
+    @Test
+    void replayResumesFromTheReplayGroupsOffsets() {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(consumerFactory.createConsumer(eq(GROUP + "-dlt-replay"), isNull())).thenAnswer(call -> deadLetters(5));
+
+        assertThat(retryTopics.replayDeadLetters(3)).isEqualTo(3);
+        assertThat(replayOffsets.get(DLT).offset()).isEqualTo(3);
+        assertThat(retryTopics.replayDeadLetters(10)).isEqualTo(2);
+        assertThat(replayOffsets.get(DLT).offset()).isEqualTo(5);
+        assertThat(retryTopics.replayDeadLetters(10)).isZero();
+
+        for (int key = 0; key < 5; key++) {
+            verify(kafkaTemplate).send(TOPIC, Integer.toString(key), ("event " + key).getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat(meterRegistry.counter("kafka.dlt.replayed", "topic", TOPIC).count()).isEqualTo(5);
+    }
+
+    @Test
+    void failedReplayCommitsNothing() {
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("broker unavailable")));
+        when(consumerFactory.createConsumer(eq(GROUP + "-dlt-replay"), isNull())).thenAnswer(call -> deadLetters(2));
+
+        assertThatThrownBy(() -> retryTopics.replayDeadLetters(10)).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(replayOffsets).isEmpty();
+    }
+
+    // a fresh consumer on the DLT, positioned at the replay group's committed offset as the broker would
+    private MockConsumer<String, byte[]> deadLetters(int count) {
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                super.commitSync(offsets);
+                replayOffsets.putAll(offsets);
+            }
+        };
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(DLT));
+            consumer.updateBeginningOffsets(Map.of(DLT, 0L));
+            if (replayOffsets.containsKey(DLT)) {
+                consumer.seek(DLT, replayOffsets.get(DLT).offset());
+            }
+            for (int offset = 0; offset < count; offset++) {
+                consumer.addRecord(new ConsumerRecord<>(DLT.topic(), 0, offset, Integer.toString(offset),
+                        ("event " + offset).getBytes(StandardCharsets.UTF_8)));
+            }
+        });
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String key) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, key, ("event " + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ConsumerRecord<String, byte[]> tierRecord(long offset, String key, int attempt, long due) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(TOPIC + "-retry-" + attempt, 0, offset, key,
+                ("event " + key).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(RetryTopics.ATTEMPT_HEADER, Integer.toString(attempt).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(RetryTopics.DUE_HEADER, Long.toString(due).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private static ConsumerRecord<String, byte[]> consumed(ProducerRecord<String, byte[]> out, long offset) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(out.topic(), 0, offset, out.key(), out.value());
+        out.headers().forEach(header -> record.headers().add(header));
+        return record;
+    }
+
+    private static String header(ProducerRecord<String, byte[]> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package com.saikumar.paymentservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A payments table that lost its unique key on order_id, as one that held duplicates before the
+ * key was declared: startup re-adds the key when it can, refuses to start over duplicates, and
+ * with dedup-on-startup archives all but one payment per order before adding it.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentOrderKeyGuardTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM payments");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + PaymentOrderKeyGuard.ARCHIVE_TABLE);
+        // later test classes share this schema
+        guard(false).verify();
+    }
+
+    @Test
+    void keyInPlaceIsLeftAlone() {
+        insert(1, 10, "SUCCESS");
+
+        guard(false).verify();
+
+        assertDuplicateRefused(10);
+    }
+
+    @Test
+    void missingKeyIsAddedWhenThereAreNoDuplicates() {
+        dropKey();
+        insert(1, 10, "SUCCESS");
+        insert(2, 11, "FAILED");
+
+        guard(false).verify();
+
+        assertDuplicateRefused(10);
+    }
+
+    @Test
+    void duplicatesFailStartupAndAreLeftUntouched() {
+        dropKey();
+        insert(1, 10, "FAILED");
+        insert(2, 10, "SUCCESS");
+        insert(3, 11, "PENDING");
+
+        assertThatThrownBy(() -> guard(false).verify())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("1 order ids with more than one payment")
+                .hasMessageContaining("payment.schema.dedup-on-startup");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments", Long.class)).isEqualTo(3);
+
+        // still no key: a third payment for the order goes in
+        insert(4, 10, "PENDING");
+    }
+
+    @Test
+    void dedupOnStartupArchivesAllButOnePaymentPerOrderAndAddsTheKey() {
+        dropKey();
+        insert(1, 10, "FAILED");
+        insert(2, 10, "SUCCESS");
+        insert(3, 10, "PENDING");
+        insert(4, 11, "PENDING");
+        insert(5, 11, "FAILED");
+        insert(6, 12, "PROCESSING");
+        insert(7, 12, "PENDING");
+        insert(8, 13, "SUCCESS");
+
+        guard(true).verify();
+
+        // the charge, then a decline, then the earliest attempt
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM payments ORDER BY id", Long.class)).containsExactly(2L, 5L, 6L, 8L);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM " + PaymentOrderKeyGuard.ARCHIVE_TABLE + " ORDER BY id", Long.class))
+                .containsExactly(1L, 3L, 4L, 7L);
+        assertDuplicateRefused(12);
+    }
+
+    private PaymentOrderKeyGuard guard(boolean dedupOnStartup) {
+        return new PaymentOrderKeyGuard(jdbcTemplate, transactionManager, dedupOnStartup);
+    }
+
+    private void dropKey() {
+        jdbcTemplate.execute("ALTER TABLE payments DROP CONSTRAINT uk_payments_order_id");
+    }
+
+    private void insert(long id, long orderId, String status) {
+        jdbcTemplate.update("INSERT INTO payments (id, order_id, user_id, amount, status, method, created_at) " +
+                "VALUES (?, ?, 1, 25.00, ?, 'CARD', CURRENT_TIMESTAMP)", id, orderId, status);
+    }
+
+    private void assertDuplicateRefused(long orderId) {
+        assertThatThrownBy(() -> insert(100, orderId, "PENDING")).isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.saikumar.paymentservice.service;
+
+import com.saikumar.paymentservice.gateway.ChargeRequest;
+import com.saikumar.paymentservice.gateway.GatewayResult;
+import com.saikumar.paymentservice.gateway.PaymentGateway;
+import com.saikumar.paymentservice.model.Payment;
+import com.saikumar.paymentservice.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every order event delivered many times at once, as after a consumer rebalance: each order must
+ * end with exactly one payment and every delivery must report the same result. Throughput is
+ * printed; scale with -Dbenchmark.orders=... and -Dbenchmark.redeliveries=...
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentRedeliveryStormTest {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 200);
+    private static final int REDELIVERIES = Integer.getInteger("benchmark.redeliveries", 20);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private final ExecutorService deliveries = Executors.newFixedThreadPool(32);
+    private final ExecutorService paymentExecutor = Executors.newFixedThreadPool(32);
+
+    @AfterEach
+    void cleanUp() {
+        deliveries.shutdownNow();
+        paymentExecutor.shutdownNow();
+        paymentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void redeliveredEventsChargeEachOrderOnce() {
+        // every third order is declined, decided by the idempotency key as a provider would
+        KeyedGateway gateway = new KeyedGateway(key -> key.hashCode() % 3 == 0
+                ? GatewayResult.declined("Insufficient funds")
+                : GatewayResult.approved("TXN-" + key));
+        PaymentService service = paymentService(gateway);
+
+        Map<Long, List<Boolean>> results = storm(service);
+
+        List<Payment> payments = paymentRepository.findAll();
+        assertThat(payments).hasSize(ORDERS);
+        assertThat(payments).allSatisfy(payment -> assertThat(payment.getStatus())
+                .isIn(Payment.PaymentStatus.SUCCESS, Payment.PaymentStatus.FAILED));
+        for (Payment payment : payments) {
+            boolean success = payment.getStatus() == Payment.PaymentStatus.SUCCESS;
+            assertThat(results.get(payment.getOrderId())).hasSize(REDELIVERIES).containsOnly(success);
+        }
+    }
+
+    @Test
+    void firstSettlementWinsWhenAnswersDisagree() {
+        // a misbehaving provider that approves the first charge of a key and declines the rest
+        Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        KeyedGateway gateway = new KeyedGateway(key -> calls.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement() == 0
+                ? GatewayResult.approved("TXN-" + key)
+                : GatewayResult.declined("Insufficient funds"));
+        PaymentService service = paymentService(gateway);
+
+        Map<Long, List<Boolean>> results = storm(service);
+
+        // whichever answer settled first is never overwritten, and every delivery reports it
+        List<Payment> payments = paymentRepository.findAll();
+        assertThat(payments).hasSize(ORDERS);
+        for (Payment payment : payments) {
+            boolean success = payment.getStatus() == Payment.PaymentStatus.SUCCESS;
+            assertThat(payment.getTransactionId() != null).isEqualTo(success);
+            assertThat(results.get(payment.getOrderId())).containsOnly(success);
+        }
+    }
+
+    private Map<Long, List<Boolean>> storm(PaymentService service) {
+        List<Long> deliveryOrder = new ArrayList<>();
+        for (int round = 0; round < REDELIVERIES; round++) {
+            for (long orderId = 1; orderId <= ORDERS; orderId++) {
+                deliveryOrder.add(orderId);
+            }
+        }
+
+        long begin = System.nanoTime();
+        List<CompletableFuture<Map.Entry<Long, Boolean>>> pending = deliveryOrder.stream()
+                .map(orderId -> CompletableFuture.supplyAsync(
+                                () -> service.processPayment(orderId, 7L, BigDecimal.TEN), deliveries)
+                        .thenCompose(result -> result)
+                        .thenApply(success -> Map.entry(orderId, success)))
+                .toList();
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("redelivery storm: %d orders x %d deliveries = %d events in %.0f ms = %.0f events/s%n",
+                ORDERS, REDELIVERIES, deliveryOrder.size(), seconds * 1000, deliveryOrder.size() / seconds);
+        return pending.stream().map(CompletableFuture::join).collect(Collectors.groupingBy(Map.Entry::getKey,
+                Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+    }
+
+    private PaymentService paymentService(PaymentGateway gateway) {
+        PaymentDedupIndex dedupIndex = new PaymentDedupIndex(paymentRepository, 100_000, 0.01, 100_000);
+        dedupIndex.init();
+        return new PaymentService(paymentRepository, gateway, paymentExecutor, dedupIndex);
+    }
+
+    private record KeyedGateway(Function<String, GatewayResult> answer) implements PaymentGateway {
+        @Override
+        public CompletableFuture<GatewayResult> charge(ChargeRequest request) {
+            return CompletableFuture.supplyAsync(() -> answer.apply(request.idempotencyKey()));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.saikumar.productservice.cache;
+
+import java.io.Serializable;
+
+// What both tiers actually store: the cached value plus the time it should be refreshed.
+// Redis keeps it a little longer than that so the stale copy can still be served while reloading.
+record CacheEntry(Object value, long refreshAt) implements Serializable {
+
+    boolean isStale(long now) {
+        return now >= refreshAt;
+    }
+}
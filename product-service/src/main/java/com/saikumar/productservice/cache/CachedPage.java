@@ -0,0 +1,17 @@
+package com.saikumar.productservice.cache;
+
+import com.saikumar.productservice.dto.ProductCard;
+import org.springframework.data.domain.Page;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Compact form of a cached listing page: just the product ids in order and the total count.
+// The cards themselves are hydrated from the per-product card cache, so an edit to one product
+// shows up on every page that lists it without touching the pages.
+public record CachedPage(List<Long> ids, long total) implements Serializable {
+
+    public static CachedPage of(Page<ProductCard> page) {
+        return new CachedPage(page.getContent().stream().map(ProductCard::id).toList(), page.getTotalElements());
+    }
+}
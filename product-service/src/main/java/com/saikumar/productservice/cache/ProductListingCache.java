@@ -0,0 +1,106 @@
+package com.saikumar.productservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keys and versioning for cached product listing pages.
+ *
+ * Pages hold only product ids, and cards are hydrated per product, so an edit that leaves a
+ * product where it was in every listing needs no page work at all. What can go stale is order
+ * and membership, and page keys carry versions for exactly that: a listing version, bumped when a
+ * product is created or deleted, and a version per sort property, bumped when a product's value
+ * for that property changes. A price edit so retires only price-sorted pages; old pages are never
+ * looked up again and age out with their TTL, so nothing has to track or delete them.
+ */
+@Component
+@Slf4j
+public class ProductListingCache {
+
+    public static final String CACHE_NAME = "products";
+    public static final String CARD_CACHE = "product-card";
+
+    private static final String VERSION_KEY = "products:listing-version";
+    private static final String SORT_VERSION_PREFIX = "products:listing-version:";
+    private static final String LISTING = "";
+    private static final String PAGE_LAYOUT = "ids";
+    // these change with every reservation, so pages sorted by them would be stale as soon as cached
+    private static final Set<String> VOLATILE_SORTS = Set.of("stock", "updatedAt", "version");
+
+    private final StringRedisTemplate redisTemplate;
+    private final CacheManager cacheManager;
+
+    // listing and sort versions by property (LISTING for the listing itself); replicas pick up a
+    // bump from another node within a second
+    private final LoadingCache<String, Long> versions;
+
+    public ProductListingCache(StringRedisTemplate redisTemplate, CacheManager cacheManager) {
+        this.redisTemplate = redisTemplate;
+        this.cacheManager = cacheManager;
+        this.versions = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(1))
+                .build(property -> {
+                    String current = redisTemplate.opsForValue().get(versionKey(property));
+                    return current != null ? Long.parseLong(current) : 0L;
+                });
+    }
+
+    public boolean isCacheable(Pageable pageable) {
+        return pageable.getSort().stream().noneMatch(order -> VOLATILE_SORTS.contains(order.getProperty()));
+    }
+
+    // ids:v<version>:<page>-<size>:<property>:<direction>@<property version>,... so differently sorted
+    // listings never collide; the leading tag keeps pages written in another layout from being read back
+    public String pageKey(Pageable pageable) {
+        String sort = pageable.getSort().stream()
+                .map(order -> order.getProperty() + ":" + order.getDirection() + "@" + versions.get(order.getProperty()))
+                .collect(Collectors.joining(","));
+        return PAGE_LAYOUT + ":v" + versions.get(LISTING) + ":" + pageable.getPageNumber() + "-" + pageable.getPageSize() + ":" + sort;
+    }
+
+    public Cache pages() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+
+    public Cache cards() {
+        return cacheManager.getCache(CARD_CACHE);
+    }
+
+    // a product was added or removed, which can shift every page
+    public void bumpVersion() {
+        Long next = redisTemplate.opsForValue().increment(VERSION_KEY);
+        versions.invalidate(LISTING);
+        log.debug("Product listing version bumped to {}", next);
+    }
+
+    // a product's value changed for these properties, which can move it within listings sorted by them
+    public void bumpSortVersions(Collection<String> properties) {
+        if (properties.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            properties.forEach(property -> conn.incr(versionKey(property)));
+            return null;
+        });
+        versions.invalidateAll(properties);
+        log.debug("Listing sort versions bumped for {}", properties);
+    }
+
+    private static String versionKey(String property) {
+        return property.equals(LISTING) ? VERSION_KEY : SORT_VERSION_PREFIX + property;
+    }
+}
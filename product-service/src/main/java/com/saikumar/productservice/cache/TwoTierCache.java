@@ -0,0 +1,251 @@
+package com.saikumar.productservice.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+/**
+ * Caffeine near-cache in front of a Redis cache. Reads try the local tier first and populate it
+ * from Redis on a miss; evictions go to both tiers and are broadcast so other replicas drop
+ * their local copy too. Local keys are the string form of the cache key, which is also how
+ * Redis and the invalidation messages see them.
+ *
+ * Entries carry their own refresh time, jittered so keys written together don't expire
+ * together. Loads through {@link #get(Object, Callable)} (used by {@code @Cacheable(sync = true)})
+ * are coalesced so only one loader runs per key on this node, and when a stale window is
+ * configured an expired entry is served while a single background refresh runs.
+ */
+@Slf4j
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, CacheEntry> local;
+    private final Cache remote;
+    private final BiConsumer<String, String> invalidationPublisher;
+    private final long ttlMillis;
+    private final double ttlJitter;
+    private final long staleWindowMillis;
+    private final Executor refreshExecutor;
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+    private final Counter staleServed;
+    private final Counter coalescedLoads;
+
+    public TwoTierCache(String name,
+                        com.github.benmanes.caffeine.cache.Cache<String, CacheEntry> local,
+                        Cache remote,
+                        BiConsumer<String, String> invalidationPublisher,
+                        Duration ttl,
+                        double ttlJitter,
+                        Duration staleWindow,
+                        Executor refreshExecutor,
+                        MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationPublisher = invalidationPublisher;
+        this.ttlMillis = ttl.toMillis();
+        this.ttlJitter = ttlJitter;
+        this.staleWindowMillis = staleWindow.toMillis();
+        this.refreshExecutor = refreshExecutor;
+
+        this.localHits = meterRegistry.counter("product.cache.gets", "cache", name, "tier", "local", "result", "hit");
+        this.remoteHits = meterRegistry.counter("product.cache.gets", "cache", name, "tier", "redis", "result", "hit");
+        this.misses = meterRegistry.counter("product.cache.gets", "cache", name, "tier", "redis", "result", "miss");
+        this.staleServed = meterRegistry.counter("product.cache.stale.served", "cache", name);
+        this.coalescedLoads = meterRegistry.counter("product.cache.loads.coalesced", "cache", name);
+
+        Gauge.builder("product.cache.hit.ratio", this, c -> ratio(c.localHits.count(),
+                        c.localHits.count() + c.remoteHits.count() + c.misses.count()))
+                .tags("cache", name, "tier", "local")
+                .register(meterRegistry);
+        Gauge.builder("product.cache.hit.ratio", this, c -> ratio(c.remoteHits.count(),
+                        c.remoteHits.count() + c.misses.count()))
+                .tags("cache", name, "tier", "redis")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        CacheEntry entry = lookup(key);
+        if (entry == null || entry.isStale(System.currentTimeMillis())) {
+            return null;
+        }
+        return new SimpleValueWrapper(entry.value());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        CacheEntry entry = lookup(key);
+        long now = System.currentTimeMillis();
+
+        if (entry != null) {
+            if (!entry.isStale(now)) {
+                return (T) entry.value();
+            }
+            if (now < entry.refreshAt() + staleWindowMillis) {
+                staleServed.increment();
+                refreshInBackground(key, valueLoader, entry.value());
+                return (T) entry.value();
+            }
+        }
+
+        try {
+            return (T) load(key, valueLoader).join();
+        } catch (CompletionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        CacheEntry entry = newEntry(value);
+        remote.put(key, entry);
+        local.put(key.toString(), entry);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, newEntry(value));
+        if (existing != null && existing.get() instanceof CacheEntry entry) {
+            local.put(key.toString(), entry);
+            return new SimpleValueWrapper(entry.value());
+        }
+        local.invalidate(key.toString());
+        return null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(key.toString());
+        invalidationPublisher.accept(name, key.toString());
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationPublisher.accept(name, null);
+    }
+
+    // called for invalidations broadcast by other replicas; Redis has already been updated there
+    void evictLocal(String key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    private CacheEntry lookup(Object key) {
+        String localKey = key.toString();
+        CacheEntry cached = local.getIfPresent(localKey);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+
+        ValueWrapper fromRemote = remote.get(key);
+        if (fromRemote != null && fromRemote.get() instanceof CacheEntry entry) {
+            remoteHits.increment();
+            local.put(localKey, entry);
+            return entry;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    // one load per key at a time on this node; callers that arrive meanwhile wait on the same future
+    private CompletableFuture<Object> load(Object key, Callable<?> valueLoader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(key.toString(), mine);
+        if (inFlight != null) {
+            coalescedLoads.increment();
+            return inFlight;
+        }
+        runLoad(key, valueLoader, mine);
+        return mine;
+    }
+
+    // the key is claimed before the hand-off, so however many readers see the stale entry only one refresh is queued
+    private void refreshInBackground(Object key, Callable<?> valueLoader, Object staleValue) {
+        String localKey = key.toString();
+        CompletableFuture<Object> refresh = new CompletableFuture<>();
+        if (loading.putIfAbsent(localKey, refresh) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> runLoad(key, valueLoader, refresh));
+        } catch (RejectedExecutionException e) {
+            // refresh queue full: release the key for a later read and hand anyone already waiting the stale copy
+            log.debug("Refresh queue full, serving {}:{} stale", name, localKey);
+            loading.remove(localKey, refresh);
+            refresh.complete(staleValue);
+        }
+    }
+
+    private void runLoad(Object key, Callable<?> valueLoader, CompletableFuture<Object> result) {
+        String localKey = key.toString();
+        try {
+            Object value = valueLoader.call();
+            put(key, value);
+            result.complete(value);
+        } catch (Throwable e) {
+            log.debug("Cache load failed for {}:{}", name, localKey, e);
+            result.completeExceptionally(e);
+        } finally {
+            loading.remove(localKey, result);
+        }
+    }
+
+    private CacheEntry newEntry(Object value) {
+        long ttl = ttlMillis - (long) (ttlMillis * ttlJitter * ThreadLocalRandom.current().nextDouble());
+        return new CacheEntry(value, System.currentTimeMillis() + ttl);
+    }
+
+    private static double ratio(double hits, double total) {
+        return total == 0 ? 0 : hits / total;
+    }
+}
@@ -0,0 +1,60 @@
+package com.saikumar.productservice.config;
+
+import com.saikumar.productservice.cache.TwoTierCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public TwoTierCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                            StringRedisTemplate redisTemplate,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${spring.cache.redis.time-to-live:600000}") Duration redisTtl,
+                                            @Value("${product.cache.local.max-size:10000}") long localMaxSize,
+                                            @Value("${product.cache.local.time-to-live:60000}") Duration localTtl,
+                                            @Value("${product.cache.ttl-jitter:0.1}") double ttlJitter,
+                                            @Value("${product.cache.stale-while-revalidate:0}") Duration staleWindow) {
+        // entries are refreshed on their own jittered schedule; redis only needs to hold them through the stale window
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig().entryTtl(redisTtl.plus(staleWindow)))
+                .build();
+        redisCacheManager.initializeCaches();
+
+        // a full queue rejects, and TwoTierCache releases that key's refresh so a later read can retry it
+        ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), runnable -> {
+                    Thread thread = new Thread(runnable, "product-cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        return new TwoTierCacheManager(redisCacheManager, redisTemplate, meterRegistry, localMaxSize, localTtl,
+                redisTtl, ttlJitter, staleWindow, refreshExecutor);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                   TwoTierCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TwoTierCacheManager.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
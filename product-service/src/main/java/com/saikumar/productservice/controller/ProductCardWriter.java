@@ -0,0 +1,45 @@
+package com.saikumar.productservice.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.saikumar.productservice.dto.CardPage;
+import com.saikumar.productservice.dto.CursorPage;
+import com.saikumar.productservice.dto.ProductCard;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes listing responses with Jackson writers resolved once at startup, instead of letting the
+ * message converter look up the serializer for every response. Listings are the hottest
+ * endpoints, so they get their own fixed-type writers.
+ */
+@Component
+public class ProductCardWriter {
+
+    private final ObjectWriter pageWriter;
+    private final ObjectWriter cursorWriter;
+
+    public ProductCardWriter(ObjectMapper objectMapper) {
+        this.pageWriter = objectMapper.writerFor(CardPage.class);
+        this.cursorWriter = objectMapper.writerFor(new TypeReference<CursorPage<ProductCard>>() {});
+    }
+
+    public ResponseEntity<byte[]> page(CardPage page) {
+        return json(pageWriter, page);
+    }
+
+    public ResponseEntity<byte[]> cursor(CursorPage<ProductCard> page) {
+        return json(cursorWriter, page);
+    }
+
+    private ResponseEntity<byte[]> json(ObjectWriter writer, Object body) {
+        try {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(writer.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to write listing response", e);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.saikumar.productservice.controller;
 
+import com.saikumar.productservice.dto.CardPage;
+import com.saikumar.productservice.dto.FacetDto;
+import com.saikumar.productservice.dto.StockDto;
 import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.search.ProductFacetIndex;
 import com.saikumar.productservice.service.ProductService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -12,7 +15,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -20,10 +25,11 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductCardWriter cardWriter;
 
-    // GET /api/products?page=0&size=10&sort=price,asc
+    // GET /api/products?page=0&size=10&sort=price,asc - listings return cards, GET /{id} the full product
     @GetMapping
-    public ResponseEntity<Page<Product>> getAllProducts(
+    public ResponseEntity<byte[]> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
@@ -34,7 +40,17 @@ public class ProductController {
                 : Sort.by(sortBy).ascending();
 
         Pageable pageable = PageRequest.of(page, size, sort);
-        return ResponseEntity.ok(productService.getAllProducts(pageable));
+        return cardWriter.page(CardPage.of(productService.getAllProducts(pageable)));
+    }
+
+    // GET /api/products/scroll?size=20&sortBy=price&direction=asc, then ?cursor=<nextCursor>
+    @GetMapping("/scroll")
+    public ResponseEntity<byte[]> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction) {
+        return cardWriter.cursor(productService.scrollProducts(null, sortBy, toDirection(direction), cursor, clamp(size)));
     }
 
     // GET /api/products/{id}
@@ -45,22 +61,57 @@ public class ProductController {
 
     // GET /api/products/category/{category}
     @GetMapping("/category/{category}")
-    public ResponseEntity<Page<Product>> getByCategory(
+    public ResponseEntity<byte[]> getByCategory(
             @PathVariable String category,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(productService.getByCategory(category, pageable));
+        return cardWriter.page(CardPage.of(productService.getByCategory(category, pageable)));
+    }
+
+    // GET /api/products/category/{category}/scroll?cursor=...
+    @GetMapping("/category/{category}/scroll")
+    public ResponseEntity<byte[]> scrollByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction) {
+        return cardWriter.cursor(productService.scrollProducts(category, sortBy, toDirection(direction), cursor, clamp(size)));
     }
 
     // GET /api/products/search?keyword=laptop
     @GetMapping("/search")
-    public ResponseEntity<Page<Product>> search(
+    public ResponseEntity<byte[]> search(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(productService.search(keyword, pageable));
+        return cardWriter.page(CardPage.of(productService.search(keyword, pageable)));
+    }
+
+    // GET /api/products/suggest?prefix=mac - typeahead, most reserved first
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggest(prefix, Math.min(Math.max(limit, 1), 50)));
+    }
+
+    // GET /api/products/facets?category=Laptops&brand=Apple&brand=Dell&price=500-1000
+    // repeated values are ORed, different facets ANDed; returns matching ids plus sidebar counts
+    @GetMapping("/facets")
+    public ResponseEntity<FacetDto.FacetResponse> browseFacets(
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> brand,
+            @RequestParam(required = false) List<String> price,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit) {
+        Map<String, List<String>> selection = new HashMap<>();
+        selection.put(ProductFacetIndex.CATEGORY, category);
+        selection.put(ProductFacetIndex.BRAND, brand);
+        selection.put(ProductFacetIndex.PRICE, price);
+        return ResponseEntity.ok(productService.browseFacets(selection, Math.max(offset, 0), clamp(limit)));
     }
 
     // POST /api/products/batch - internal use by order service
@@ -90,6 +141,20 @@ public class ProductController {
         return ResponseEntity.ok().build();
     }
 
+    // PUT /api/products/stock/reserve - internal use by order service, all-or-nothing for a whole order, once per order id
+    @PutMapping("/stock/reserve")
+    public ResponseEntity<Void> reserveStock(@Valid @RequestBody StockDto.ReserveRequest req) {
+        productService.reserveStock(req.getOrderId(), req.getItems());
+        return ResponseEntity.ok().build();
+    }
+
+    // PUT /api/products/stock/release - internal use by order service, hands back stock for a batch of orders
+    @PutMapping("/stock/release")
+    public ResponseEntity<Void> releaseStock(@Valid @RequestBody StockDto.ReleaseRequest req) {
+        productService.releaseStock(req.getOrders());
+        return ResponseEntity.ok().build();
+    }
+
     // PUT /api/products/{id}/stock/restore - used when order is cancelled
     @PutMapping("/{id}/stock/restore")
     public ResponseEntity<Void> restoreStock(
@@ -110,4 +175,12 @@ public class ProductController {
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("product-service ok");
     }
+
+    private static Sort.Direction toDirection(String direction) {
+        return direction.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+    }
+
+    private static int clamp(int size) {
+        return Math.min(Math.max(size, 1), 100);
+    }
 }
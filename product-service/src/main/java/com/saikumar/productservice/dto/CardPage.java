@@ -0,0 +1,23 @@
+package com.saikumar.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+// Lean page envelope for listings; Spring's Page JSON also carries pageable/sort/flags nobody reads.
+@Data
+@AllArgsConstructor
+public class CardPage {
+    private List<ProductCard> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+
+    public static CardPage of(Page<ProductCard> page) {
+        return new CardPage(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages());
+    }
+}
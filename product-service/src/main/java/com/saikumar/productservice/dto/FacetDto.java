@@ -0,0 +1,19 @@
+package com.saikumar.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetDto {
+
+    // facet -> value -> number of matching products, e.g. counts.brand.Apple = 12
+    @Data
+    @AllArgsConstructor
+    public static class FacetResponse {
+        private long total;
+        private List<Long> ids;
+        private Map<String, Map<String, Integer>> counts;
+    }
+}
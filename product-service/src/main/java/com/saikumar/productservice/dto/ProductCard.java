@@ -0,0 +1,10 @@
+package com.saikumar.productservice.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+// The fields a listing card shows. Selected directly by the list queries, so description,
+// image and audit columns are never read or serialized for listings.
+public record ProductCard(Long id, String name, BigDecimal price, String category, String brand)
+        implements Serializable {
+}
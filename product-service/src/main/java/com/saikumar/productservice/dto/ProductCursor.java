@@ -0,0 +1,57 @@
+package com.saikumar.productservice.dto;
+
+import com.saikumar.productservice.exception.InvalidCursorException;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Continuation token for keyset product listings: the sort the listing was started with plus
+ * the sort value and id of the last product returned. Clients treat it as an opaque string.
+ */
+public record ProductCursor(String sortBy, Sort.Direction direction, Comparable<?> value, long id) {
+
+    // only non-null columns can be seeked on; nulls would drop out of the range predicate
+    public static final Set<String> SORT_KEYS = Set.of("id", "name", "price", "createdAt");
+
+    public static ProductCursor after(ProductCard last, Comparable<?> sortValue, String sortBy, Sort.Direction direction) {
+        return new ProductCursor(sortBy, direction, sortValue, last.id());
+    }
+
+    public String encode() {
+        String raw = sortBy + "|" + direction + "|" + id + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // the value goes last since names may contain the separator
+            String[] parts = raw.split("\\|", 4);
+            String sortBy = requireSortKey(parts[0]);
+            return new ProductCursor(sortBy, Sort.Direction.valueOf(parts[1]), parse(sortBy, parts[3]), Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+
+    public static String requireSortKey(String sortBy) {
+        if (!SORT_KEYS.contains(sortBy)) {
+            throw new InvalidCursorException("Cannot scroll by " + sortBy + ", use one of " + SORT_KEYS);
+        }
+        return sortBy;
+    }
+
+    private static Comparable<?> parse(String sortBy, String value) {
+        return switch (sortBy) {
+            case "name" -> value;
+            case "price" -> new BigDecimal(value);
+            case "createdAt" -> LocalDateTime.parse(value);
+            default -> Long.valueOf(value);
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.saikumar.productservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+public class StockDto {
+
+    @Data
+    public static class ReserveRequest {
+        // idempotency key: reserving the same order again is a no-op
+        @NotNull(message = "Reservation must name its order")
+        private Long orderId;
+
+        @NotEmpty(message = "Reservation must have at least one item")
+        @Valid
+        private List<StockItem> items;
+    }
+
+    @Data
+    public static class ReleaseRequest {
+        @NotEmpty(message = "Release must name at least one order")
+        @Valid
+        private List<OrderRelease> orders;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class OrderRelease {
+        @NotNull
+        private Long orderId;
+
+        // reserved before reservations were keyed by order, so there are no rows to release: the
+        // items are handed back as given, once
+        private boolean untracked;
+
+        @NotEmpty
+        @Valid
+        private List<StockItem> items;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class StockItem {
+        @NotNull
+        private Long productId;
+
+        @NotNull
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity;
+
+        public StockItem(Long productId, Integer quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+}
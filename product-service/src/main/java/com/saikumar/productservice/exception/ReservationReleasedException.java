@@ -0,0 +1,7 @@
+package com.saikumar.productservice.exception;
+
+public class ReservationReleasedException extends RuntimeException {
+    public ReservationReleasedException(String message) {
+        super(message);
+    }
+}
@@ -7,14 +7,22 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+// keyset listings seek on (sort key, id) within active products; local indexes catch up on (updated_at, id)
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_active_name", columnList = "is_active, name, id"),
+        @Index(name = "idx_products_active_price", columnList = "is_active, price, id"),
+        @Index(name = "idx_products_active_created", columnList = "is_active, created_at, id"),
+        @Index(name = "idx_products_category_active", columnList = "category, is_active, id"),
+        @Index(name = "idx_products_updated", columnList = "updated_at, id")
+})
 @Data
 @NoArgsConstructor
-public class Product {
+public class Product implements Serializable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,6 +51,10 @@ public class Product {
     @Column(name = "is_active")
     private boolean active = true;
 
+    // bumped on every stock change so concurrent reservations can't oversell
+    @Version
+    private long version;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -0,0 +1,40 @@
+package com.saikumar.productservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Units of a hot SKU taken out of products.stock by one replica's ledger, as of its last flush.
+// The replica sells only from these, so replicas can't oversell between them.
+@Entity
+@Table(name = "stock_allocations")
+@IdClass(StockAllocation.Key.class)
+@Data
+@NoArgsConstructor
+public class StockAllocation {
+
+    @Id
+    @Column(length = 36)
+    private String owner;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    private int quantity;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String owner;
+        private Long productId;
+    }
+}
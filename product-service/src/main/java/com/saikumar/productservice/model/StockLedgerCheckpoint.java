@@ -0,0 +1,44 @@
+package com.saikumar.productservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Marks a hot-SKU journal segment whose deltas have been applied to its replica's allocation,
+// so a crash between commit and segment deletion doesn't replay it twice. Segment ids are only
+// unique per replica, hence the owner in the key.
+@Entity
+@Table(name = "stock_allocation_checkpoints")
+@IdClass(StockLedgerCheckpoint.Key.class)
+@Data
+@NoArgsConstructor
+public class StockLedgerCheckpoint {
+
+    @Id
+    @Column(length = 36)
+    private String owner;
+
+    @Id
+    @Column(name = "segment_id")
+    private Long segmentId;
+
+    @Column(name = "applied_at")
+    private LocalDateTime appliedAt = LocalDateTime.now();
+
+    public StockLedgerCheckpoint(String owner, Long segmentId) {
+        this.owner = owner;
+        this.segmentId = segmentId;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String owner;
+        private Long segmentId;
+    }
+}
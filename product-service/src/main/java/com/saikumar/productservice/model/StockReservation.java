@@ -0,0 +1,50 @@
+package com.saikumar.productservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// One product's share of an order's reservation. The order id is the idempotency key: a repeated
+// reserve finds the rows already there, a repeated release finds them RELEASED. A release for an
+// order that never reserved leaves RELEASED rows behind, so a reserve arriving after it is refused.
+@Entity
+@Table(name = "stock_reservations", indexes = @Index(name = "idx_reservations_updated", columnList = "updated_at"))
+@IdClass(StockReservation.Key.class)
+@Data
+@NoArgsConstructor
+public class StockReservation {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    private int quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum Status {
+        RESERVED,
+        RELEASED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long orderId;
+        private Long productId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.saikumar.productservice.repository;
+
+import com.saikumar.productservice.dto.ProductCard;
+import com.saikumar.productservice.dto.ProductCursor;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+public interface ProductCursorRepository {
+
+    // active products after the cursor (or from the start when it is null), ordered by sortBy then id;
+    // category is optional. Callers ask for one extra row to learn whether another page exists.
+    List<Row> findActiveAfter(String category, String sortBy, Sort.Direction direction,
+                              ProductCursor after, int limit);
+
+    // the sort value rides along so the next cursor can be built even for keys the card leaves out
+    record Row(ProductCard card, Comparable<?> sortValue) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.saikumar.productservice.repository;
+
+import com.saikumar.productservice.dto.ProductCard;
+import com.saikumar.productservice.dto.ProductCursor;
+import com.saikumar.productservice.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyset ("seek") queries: instead of OFFSET n, which makes the database walk and discard n
+ * rows, each page starts with a range predicate on (sort key, id) so it can jump straight into
+ * the matching index. Page 10,000 costs the same as page 1, and no COUNT(*) is issued.
+ */
+public class ProductCursorRepositoryImpl implements ProductCursorRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Row> findActiveAfter(String category, String sortBy, Sort.Direction direction,
+                                     ProductCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+        Expression<Comparable> key = product.get(sortBy);
+        Expression<Long> id = product.get("id");
+        boolean asc = direction.isAscending();
+
+        List<Predicate> where = new ArrayList<>();
+        where.add(cb.isTrue(product.get("active")));
+        if (category != null) {
+            where.add(cb.equal(product.get("category"), category));
+        }
+        if (after != null) {
+            Comparable value = after.value();
+            Predicate pastId = asc ? cb.greaterThan(id, after.id()) : cb.lessThan(id, after.id());
+            if (sortBy.equals("id")) {
+                where.add(pastId);
+            } else {
+                // (key, id) > (value, lastId), spelled out since JPQL has no row-value comparison
+                Predicate pastKey = asc ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+                where.add(cb.or(pastKey, cb.and(cb.equal(key, value), pastId)));
+            }
+        }
+
+        query.multiselect(cb.construct(ProductCard.class, id, product.get("name"), product.get("price"),
+                        product.get("category"), product.get("brand")), key)
+                .where(where.toArray(new Predicate[0]));
+        if (sortBy.equals("id")) {
+            query.orderBy(asc ? cb.asc(id) : cb.desc(id));
+        } else {
+            query.orderBy(asc ? cb.asc(key) : cb.desc(key), asc ? cb.asc(id) : cb.desc(id));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+                .map(row -> new Row(row.get(0, ProductCard.class), (Comparable<?>) row.get(1)))
+                .toList();
+    }
+}
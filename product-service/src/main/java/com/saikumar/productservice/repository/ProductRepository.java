@@ -1,15 +1,19 @@
 package com.saikumar.productservice.repository;
 
+import com.saikumar.productservice.dto.ProductCard;
 import com.saikumar.productservice.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductCursorRepository {
     Page<Product> findByActiveTrue(Pageable pageable);
     Page<Product> findByCategoryAndActiveTrue(String category, Pageable pageable);
     Page<Product> findByBrandAndActiveTrue(String brand, Pageable pageable);
@@ -20,4 +24,40 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
 
     List<Product> findByIdIn(List<Long> ids);
+
+    // card projections for listings: only the card columns are selected
+    Page<ProductCard> findCardsByActiveTrue(Pageable pageable);
+    Page<ProductCard> findCardsByCategoryAndActiveTrue(String category, Pageable pageable);
+    List<ProductCard> findCardsByIdInAndActiveTrue(List<Long> ids);
+
+    @Query(value = "SELECT new com.saikumar.productservice.dto.ProductCard(p.id, p.name, p.price, p.category, p.brand) " +
+                   "FROM Product p WHERE p.active = true AND " +
+                   "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                   "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')))",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.active = true AND " +
+                   "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                   "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
+    Page<ProductCard> searchCardsByKeyword(@Param("keyword") String keyword, Pageable pageable);
+
+    // keyset batches for (re)building the search index
+    List<Product> findFirst1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    // keyset walk over idx_products_updated for catching local indexes up with the database
+    @Query("SELECT p FROM Product p WHERE p.updatedAt > :afterUpdatedAt OR (p.updatedAt = :afterUpdatedAt AND p.id > :afterId) " +
+           "ORDER BY p.updatedAt, p.id")
+    List<Product> findUpdatedAfter(@Param("afterUpdatedAt") LocalDateTime afterUpdatedAt, @Param("afterId") Long afterId,
+                                   Pageable limit);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.stock = :stock, p.version = p.version + 1, p.updatedAt = :now " +
+           "WHERE p.id = :id AND p.version = :version")
+    int updateStockIfVersion(@Param("id") Long id, @Param("stock") int stock,
+                             @Param("version") long version, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity, p.version = p.version + 1, p.updatedAt = :now " +
+           "WHERE p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,10 @@
+package com.saikumar.productservice.repository;
+
+import com.saikumar.productservice.model.StockAllocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface StockAllocationRepository extends JpaRepository<StockAllocation, StockAllocation.Key> {
+    List<StockAllocation> findByOwner(String owner);
+}
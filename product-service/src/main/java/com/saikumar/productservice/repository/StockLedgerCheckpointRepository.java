@@ -0,0 +1,12 @@
+package com.saikumar.productservice.repository;
+
+import com.saikumar.productservice.model.StockLedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface StockLedgerCheckpointRepository extends JpaRepository<StockLedgerCheckpoint, StockLedgerCheckpoint.Key> {
+
+    @Query("SELECT COALESCE(MAX(c.segmentId), 0) FROM StockLedgerCheckpoint c WHERE c.owner = :owner")
+    long findMaxSegmentId(@Param("owner") String owner);
+}
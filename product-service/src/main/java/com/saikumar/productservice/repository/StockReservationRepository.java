@@ -0,0 +1,19 @@
+package com.saikumar.productservice.repository;
+
+import com.saikumar.productservice.model.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, StockReservation.Key> {
+
+    // rows only have to outlive the saga's retries; bounded so one purge never holds locks for long
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM stock_reservations WHERE updated_at < :before LIMIT :limit", nativeQuery = true)
+    int purgeBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
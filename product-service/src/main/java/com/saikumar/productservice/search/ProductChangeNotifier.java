@@ -0,0 +1,62 @@
+package com.saikumar.productservice.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Tells other replicas that a product was written, so their local read structures (search
+ * index, suggestions) can re-read it from the database. Messages are {@code nodeId|productId};
+ * a replica ignores its own, since it has already applied the change.
+ */
+@Component
+@Slf4j
+public class ProductChangeNotifier {
+
+    public static final String CHANNEL = "product-changes";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<Long>> subscribers = new CopyOnWriteArrayList<>();
+
+    public ProductChangeNotifier(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener((message, pattern) -> onMessage(
+                new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(CHANNEL));
+    }
+
+    public void subscribe(Consumer<Long> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void publish(Long productId) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + "|" + productId);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast change for product {}", productId, e);
+        }
+    }
+
+    private void onMessage(String message) {
+        String[] parts = message.split("\\|", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        Long productId = Long.valueOf(parts[1]);
+        for (Consumer<Long> subscriber : subscribers) {
+            try {
+                subscriber.accept(productId);
+            } catch (Exception e) {
+                log.error("Failed to apply remote change for product {}", productId, e);
+            }
+        }
+    }
+}
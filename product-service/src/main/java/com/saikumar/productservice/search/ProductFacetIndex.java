@@ -0,0 +1,271 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.dto.FacetDto;
+import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory facet engine for the browse sidebar. Every facet value (a category, a brand, a
+ * price bucket) owns a compressed bitmap of the active product ids carrying it, kept current on
+ * product writes. A filter is the AND of the selected facets, each an OR of its selected values,
+ * so answering it never touches MySQL. Counts for a facet are taken against the filter on the
+ * other facets, so a sidebar still offers the alternatives to what is already selected.
+ *
+ * Other replicas' writes arrive through {@link ProductChangeNotifier}, which is best effort, so a
+ * scheduled catch-up re-reads products updated since the last pass (a watermark walked on
+ * idx_products_updated) and re-indexes them; a missed message costs at most one interval.
+ *
+ * The bitmaps are 32-bit, which keeps per-value counts a single andCardinality with no copies. A
+ * product whose id is beyond that range is logged and left out of facets instead of failing the
+ * write that indexed it.
+ */
+@Component
+@Slf4j
+public class ProductFacetIndex {
+
+    public static final String CATEGORY = "category";
+    public static final String BRAND = "brand";
+    public static final String PRICE = "price";
+
+    private static final int LOAD_BATCH = 1000;
+    // transactions can commit slightly out of updated_at order, so catch-up starts a little before the watermark
+    private static final long CATCH_UP_MARGIN_MINUTES = 5;
+
+    private final ProductRepository productRepository;
+    private final ProductChangeNotifier changeNotifier;
+    private final List<BigDecimal> priceBounds;
+    private final List<String> priceLabels;
+
+    // facet -> value -> product ids, all guarded by lock
+    private final Map<String, Map<String, RoaringBitmap>> facets = new LinkedHashMap<>();
+    private final Map<Integer, Map<String, String>> valuesByProduct = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // every product updated before this has been indexed; only the catch-up thread moves it
+    private volatile LocalDateTime caughtUpTo;
+
+    public ProductFacetIndex(ProductRepository productRepository, ProductChangeNotifier changeNotifier,
+                             @Value("${product.facets.price-buckets:0,50,100,250,500,1000,2500}") List<BigDecimal> priceBounds) {
+        this.productRepository = productRepository;
+        this.changeNotifier = changeNotifier;
+        this.priceBounds = priceBounds.stream().sorted().toList();
+        this.priceLabels = new ArrayList<>();
+        for (int i = 0; i < this.priceBounds.size(); i++) {
+            priceLabels.add(i + 1 < this.priceBounds.size()
+                    ? this.priceBounds.get(i).toPlainString() + "-" + this.priceBounds.get(i + 1).toPlainString()
+                    : this.priceBounds.get(i).toPlainString() + "+");
+        }
+        facets.put(CATEGORY, new TreeMap<>());
+        facets.put(BRAND, new TreeMap<>());
+        facets.put(PRICE, new TreeMap<>(Comparator.comparingInt(priceLabels::indexOf)));
+    }
+
+    @PostConstruct
+    public void init() {
+        caughtUpTo = LocalDateTime.now();
+        long lastId = 0;
+        List<Product> batch;
+        do {
+            batch = productRepository.findFirst1000ByIdGreaterThanOrderByIdAsc(lastId);
+            lock.writeLock().lock();
+            try {
+                batch.forEach(this::index);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == LOAD_BATCH);
+
+        changeNotifier.subscribe(id -> productRepository.findById(id)
+                .ifPresentOrElse(this::onProductChanged, () -> remove(id)));
+        log.info("Product facets ready for {} products", all.getCardinality());
+    }
+
+    @Scheduled(fixedDelayString = "${product.facets.catch-up-interval-ms:60000}", initialDelayString = "${product.facets.catch-up-interval-ms:60000}")
+    public void catchUp() {
+        LocalDateTime start = LocalDateTime.now();
+        LocalDateTime afterUpdatedAt = caughtUpTo.minusMinutes(CATCH_UP_MARGIN_MINUTES);
+        long afterId = 0;
+        int indexed = 0;
+        List<Product> batch;
+        do {
+            batch = productRepository.findUpdatedAfter(afterUpdatedAt, afterId, PageRequest.of(0, LOAD_BATCH));
+            lock.writeLock().lock();
+            try {
+                for (Product product : batch) {
+                    unindex(bitmapId(product.getId()));
+                    index(product);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!batch.isEmpty()) {
+                Product last = batch.get(batch.size() - 1);
+                afterUpdatedAt = last.getUpdatedAt();
+                afterId = last.getId();
+            }
+            indexed += batch.size();
+        } while (batch.size() == LOAD_BATCH);
+        caughtUpTo = start;
+        log.debug("Facet catch-up re-indexed {} products", indexed);
+    }
+
+    public void onProductChanged(Product product) {
+        lock.writeLock().lock();
+        try {
+            unindex(bitmapId(product.getId()));
+            index(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Matches the selection (facet -> accepted values, empty or missing meaning "any") and
+     * returns one page of ids in id order, the total, and per-value counts for every facet.
+     */
+    public FacetDto.FacetResponse query(Map<String, List<String>> selection, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<String, RoaringBitmap> selected = new HashMap<>();
+            selection.forEach((facet, values) -> {
+                if (values != null && !values.isEmpty() && facets.containsKey(facet)) {
+                    selected.put(facet, union(facets.get(facet), values));
+                }
+            });
+
+            RoaringBitmap matches = intersect(selected, null);
+            Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+            facets.forEach((facet, values) -> {
+                RoaringBitmap others = selected.containsKey(facet) ? intersect(selected, facet) : matches;
+                Map<String, Integer> valueCounts = new LinkedHashMap<>();
+                values.forEach((value, ids) -> {
+                    int count = RoaringBitmap.andCardinality(others, ids);
+                    if (count > 0) {
+                        valueCounts.put(value, count);
+                    }
+                });
+                counts.put(facet, valueCounts);
+            });
+
+            List<Long> ids = new ArrayList<>(Math.min(limit, matches.getCardinality()));
+            IntIterator it = matches.getIntIterator();
+            for (int skipped = 0; it.hasNext() && ids.size() < limit; ) {
+                int id = it.next();
+                if (skipped++ >= offset) {
+                    ids.add((long) id);
+                }
+            }
+            return new FacetDto.FacetResponse(matches.getLongCardinality(), ids, counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(bitmapId(productId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Product product) {
+        if (!product.isActive()) {
+            return;
+        }
+        int id = bitmapId(product.getId());
+        if (id < 0) {
+            log.warn("Product {} is outside the facet index's 32-bit id range and is left out of facets", product.getId());
+            return;
+        }
+        Map<String, String> values = new HashMap<>(4);
+        values.put(CATEGORY, product.getCategory());
+        values.put(BRAND, product.getBrand());
+        values.put(PRICE, priceBucket(product.getPrice()));
+        values.values().removeIf(v -> v == null || v.isBlank());
+
+        values.forEach((facet, value) -> facets.get(facet).computeIfAbsent(value, v -> new RoaringBitmap()).add(id));
+        valuesByProduct.put(id, values);
+        all.add(id);
+    }
+
+    private void unindex(int id) {
+        Map<String, String> values = valuesByProduct.remove(id);
+        if (values == null) {
+            return;
+        }
+        values.forEach((facet, value) -> {
+            Map<String, RoaringBitmap> byValue = facets.get(facet);
+            RoaringBitmap ids = byValue.get(value);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    byValue.remove(value);
+                }
+            }
+        });
+        all.remove(id);
+    }
+
+    // the bitmaps hold 32-bit ids; -1 for an id beyond that, which is never indexed
+    private static int bitmapId(long id) {
+        return id >= 0 && id <= Integer.MAX_VALUE ? (int) id : -1;
+    }
+
+    // AND of every selected facet except the one being counted
+    private RoaringBitmap intersect(Map<String, RoaringBitmap> selected, String except) {
+        RoaringBitmap result = all.clone();
+        selected.forEach((facet, ids) -> {
+            if (!facet.equals(except)) {
+                result.and(ids);
+            }
+        });
+        return result;
+    }
+
+    private static RoaringBitmap union(Map<String, RoaringBitmap> byValue, List<String> values) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (String value : values) {
+            RoaringBitmap ids = byValue.get(value);
+            if (ids != null) {
+                result.or(ids);
+            }
+        }
+        return result;
+    }
+
+    private String priceBucket(BigDecimal price) {
+        if (price == null || priceBounds.isEmpty() || price.compareTo(priceBounds.get(0)) < 0) {
+            return null;
+        }
+        int bucket = 0;
+        while (bucket + 1 < priceBounds.size() && price.compareTo(priceBounds.get(bucket + 1)) >= 0) {
+            bucket++;
+        }
+        return priceLabels.get(bucket);
+    }
+}
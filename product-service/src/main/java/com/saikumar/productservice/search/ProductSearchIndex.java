@@ -0,0 +1,378 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded Lucene index over product name, brand, category and description, stored on local
+ * disk. Every replica keeps its own copy. Writes never touch the index on the request thread:
+ * local changes, and changes other replicas announce through {@link ProductChangeNotifier}, are
+ * queued to a single indexer thread and become searchable at the next near-real-time refresh,
+ * about a second later. Nothing is fsynced per write; the index is committed on a schedule.
+ *
+ * Notifications are best effort, so a periodic reconcile walks products updated since the last
+ * pass (from a watermark, on idx_products_updated) and re-indexes them, which repairs anything a
+ * dropped message or a full queue missed. Commits record the watermark, so a restart only
+ * re-indexes products updated since then.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final String WATERMARK = "watermark";
+    // transactions can commit slightly out of updated_at order, so catch-up starts a little before the watermark
+    private static final long CATCH_UP_MARGIN_MINUTES = 5;
+    private static final int REINDEX_BATCH = 1000;
+    private static final int INDEX_QUEUE = 10_000;
+
+    private static final String[] FIELDS = {"name", "brand", "category", "description"};
+    private static final float[] BOOSTS = {4f, 2f, 2f, 1f};
+
+    private final ProductRepository productRepository;
+    private final ProductChangeNotifier changeNotifier;
+
+    @Value("${product.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.search.index-dir:search-index}")
+    private String indexDir;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ThreadPoolExecutor indexer;
+    // every product updated before this is in the index; what commits record and reconcile starts from
+    private volatile LocalDateTime reconciledUpTo;
+
+    public ProductSearchIndex(ProductRepository productRepository, ProductChangeNotifier changeNotifier) {
+        this.productRepository = productRepository;
+        this.changeNotifier = changeNotifier;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Directory directory = FSDirectory.open(Path.of(indexDir));
+        LocalDateTime since = null;
+        if (DirectoryReader.indexExists(directory)) {
+            String watermark = SegmentInfos.readLatestCommit(directory).getUserData().get(WATERMARK);
+            if (watermark != null) {
+                since = LocalDateTime.parse(watermark);
+            }
+        }
+
+        writer = new IndexWriter(directory,
+                new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+        // a full queue drops the change; the next reconcile picks it up from the database
+        indexer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(INDEX_QUEUE), runnable -> {
+            Thread thread = new Thread(runnable, "product-search-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (since == null) {
+            LocalDateTime start = LocalDateTime.now();
+            reindexAll();
+            reconciledUpTo = start;
+        } else {
+            reconciledUpTo = since;
+            reconcile();
+        }
+        commit();
+
+        changeNotifier.subscribe(id -> enqueue(() -> onRemoteChange(id)));
+        log.info("Product search index ready with {} documents", writer.getDocStats().numDocs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // queued, so a slow or failing index can never fail the write that triggered it
+    public void onProductChanged(Product product) {
+        if (!enabled) {
+            return;
+        }
+        enqueue(() -> apply(product));
+    }
+
+    // near-real-time: reopens the searcher on the writer's in-memory segments, no fsync
+    @Scheduled(fixedDelayString = "${product.search.refresh-interval-ms:1000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Failed to refresh product search index", e);
+        }
+    }
+
+    /**
+     * Re-indexes every product updated since the last pass, minus a margin for transactions that
+     * committed late with an earlier updated_at. Runs on the indexer thread so it interleaves with,
+     * rather than races, queued changes.
+     */
+    @Scheduled(fixedDelayString = "${product.search.reconcile-interval-ms:60000}", initialDelayString = "${product.search.reconcile-interval-ms:60000}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            indexer.submit(() -> {
+                reconcile();
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            log.warn("Product search reconcile failed, retrying next round", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            log.warn("Product search indexer is saturated, skipping this reconcile");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${product.search.commit-interval-ms:60000}", initialDelayString = "${product.search.commit-interval-ms:60000}")
+    public void scheduledCommit() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            commit();
+        } catch (IOException e) {
+            log.warn("Failed to commit product search index", e);
+        }
+    }
+
+    public Page<Long> search(String keyword, Pageable pageable) {
+        Query query = buildQuery(keyword);
+        if (query == null) {
+            return Page.empty(pageable);
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            int limit = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+            TopDocs top = searcher.search(query, Math.max(limit, 1));
+            int total = searcher.count(query);
+
+            List<Long> ids = new ArrayList<>(pageable.getPageSize());
+            ScoreDoc[] hits = top.scoreDocs;
+            for (int i = (int) pageable.getOffset(); i < hits.length; i++) {
+                ids.add(Long.valueOf(searcher.storedFields().document(hits[i].doc).get("id")));
+            }
+            return new PageImpl<>(ids, pageable, total);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Product search failed", e);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        indexer.shutdown();
+        indexer.awaitTermination(10, TimeUnit.SECONDS);
+        commit();
+        searcherManager.close();
+        writer.close();
+    }
+
+    private void enqueue(Runnable change) {
+        try {
+            indexer.execute(change);
+        } catch (RejectedExecutionException e) {
+            log.debug("Search indexer queue is full, leaving the change to the next reconcile");
+        }
+    }
+
+    private void onRemoteChange(Long id) {
+        productRepository.findById(id).ifPresentOrElse(this::apply, () -> delete(id));
+    }
+
+    private void reindexAll() throws IOException {
+        long lastId = 0;
+        int indexed = 0;
+        List<Product> batch;
+        do {
+            batch = productRepository.findFirst1000ByIdGreaterThanOrderByIdAsc(lastId);
+            for (Product product : batch) {
+                write(product);
+                lastId = product.getId();
+            }
+            indexed += batch.size();
+        } while (batch.size() == REINDEX_BATCH);
+        log.info("Indexed {} products (full rebuild)", indexed);
+    }
+
+    private void reconcile() throws IOException {
+        LocalDateTime start = LocalDateTime.now();
+        LocalDateTime afterUpdatedAt = reconciledUpTo.minusMinutes(CATCH_UP_MARGIN_MINUTES);
+        long afterId = 0;
+        int indexed = 0;
+        List<Product> batch;
+        do {
+            batch = productRepository.findUpdatedAfter(afterUpdatedAt, afterId, PageRequest.of(0, REINDEX_BATCH));
+            for (Product product : batch) {
+                write(product);
+                afterUpdatedAt = product.getUpdatedAt();
+                afterId = product.getId();
+            }
+            indexed += batch.size();
+        } while (batch.size() == REINDEX_BATCH);
+        reconciledUpTo = start;
+        searcherManager.maybeRefresh();
+        log.debug("Reconciled {} products into the search index", indexed);
+    }
+
+    private void apply(Product product) {
+        try {
+            write(product);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to index product {}, the next reconcile will retry", product.getId(), e);
+        }
+    }
+
+    private void delete(Long id) {
+        try {
+            writer.deleteDocuments(new Term("id", id.toString()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to remove product {} from the index, the next reconcile will retry", id, e);
+        }
+    }
+
+    private void write(Product product) throws IOException {
+        Term id = new Term("id", product.getId().toString());
+        if (product.isActive()) {
+            writer.updateDocument(id, toDocument(product));
+        } else {
+            writer.deleteDocuments(id);
+        }
+    }
+
+    private synchronized void commit() throws IOException {
+        writer.setLiveCommitData(Map.of(WATERMARK, reconciledUpTo.toString()).entrySet());
+        writer.commit();
+        searcherManager.maybeRefresh();
+    }
+
+    private Document toDocument(Product product) {
+        Document doc = new Document();
+        doc.add(new StringField("id", product.getId().toString(), Field.Store.YES));
+        doc.add(new TextField("name", nullToEmpty(product.getName()), Field.Store.NO));
+        doc.add(new TextField("brand", nullToEmpty(product.getBrand()), Field.Store.NO));
+        doc.add(new TextField("category", nullToEmpty(product.getCategory()), Field.Store.NO));
+        doc.add(new TextField("description", nullToEmpty(product.getDescription()), Field.Store.NO));
+        return doc;
+    }
+
+    // every term must match some field; the last term also matches as a prefix so partial words still hit
+    private Query buildQuery(String keyword) {
+        List<String> terms = analyze(keyword);
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            boolean last = i == terms.size() - 1;
+            BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+            for (int f = 0; f < FIELDS.length; f++) {
+                anyField.add(new BoostQuery(new TermQuery(new Term(FIELDS[f], term)), BOOSTS[f]), BooleanClause.Occur.SHOULD);
+                if (last) {
+                    anyField.add(new BoostQuery(new PrefixQuery(new Term(FIELDS[f], term)), BOOSTS[f] / 2), BooleanClause.Occur.SHOULD);
+                }
+            }
+            query.add(anyField.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream("name", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.warn("Failed to release index searcher", e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
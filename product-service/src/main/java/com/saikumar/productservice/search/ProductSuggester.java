@@ -0,0 +1,371 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Typeahead over product names and brands. Suggestions live in a weighted FST, keyed by every
+ * word-start suffix of the text so "pro" finds "MacBook Pro 14", and weighted by how many units
+ * of the products behind them have been reserved (tracked in a Redis sorted set shared by all
+ * replicas). Product writes update a small overlay that takes precedence over the FST until the
+ * next scheduled rebuild folds it in and picks up fresh popularity. Demand is counted in memory on
+ * the stock path and flushed to Redis in one pipeline on a short schedule, so reservations never
+ * wait on Redis.
+ */
+@Component
+@Slf4j
+public class ProductSuggester {
+
+    public static final String POPULARITY_KEY = "products:popularity";
+
+    private static final char SEPARATOR = '\u001F';
+    private static final int LOAD_BATCH = 1000;
+
+    private final ProductRepository productRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ProductChangeNotifier changeNotifier;
+
+    @Value("${product.suggest.enabled:true}")
+    private boolean enabled;
+
+    // text (lower case) -> display text and the products carrying it; guarded by this
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+    private final Map<Long, List<String>> textsByProduct = new HashMap<>();
+    private Map<Long, Long> popularity = new HashMap<>();
+    // units reserved since the last flush to Redis, per product
+    private final Map<Long, LongAdder> pendingDemand = new ConcurrentHashMap<>();
+
+    private volatile Lookup fst;
+    // texts changed since the FST was built: present with a weight, or mapped to null when gone
+    private volatile Overlay overlay = Overlay.EMPTY;
+
+    public ProductSuggester(ProductRepository productRepository, StringRedisTemplate redisTemplate,
+                            ProductChangeNotifier changeNotifier) {
+        this.productRepository = productRepository;
+        this.redisTemplate = redisTemplate;
+        this.changeNotifier = changeNotifier;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        long lastId = 0;
+        List<Product> batch;
+        do {
+            batch = productRepository.findFirst1000ByIdGreaterThanOrderByIdAsc(lastId);
+            synchronized (this) {
+                batch.forEach(this::index);
+            }
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == LOAD_BATCH);
+
+        rebuild();
+        changeNotifier.subscribe(id -> productRepository.findById(id)
+                .ifPresentOrElse(this::onProductChanged, () -> remove(id)));
+        log.info("Product suggester ready with {} suggestions", suggestions.size());
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (!enabled || key.isEmpty() || fst == null) {
+            return List.of();
+        }
+
+        Overlay changed = overlay;
+        // only the overlay entries under this prefix are looked at, however many writes are waiting
+        SortedMap<String, Suggestion> matching = changed.byStart().subMap(key, key + Character.MAX_VALUE);
+        List<Suggestion> candidates = new ArrayList<>();
+        try {
+            // entries the overlay replaced are skipped, so ask for more until enough are left or the FST runs out
+            int wanted = limit * 2;
+            List<Lookup.LookupResult> results;
+            do {
+                candidates.clear();
+                results = fst.lookup(key, null, false, wanted);
+                for (Lookup.LookupResult result : results) {
+                    String text = result.key.toString();
+                    String display = text.substring(text.indexOf(SEPARATOR) + 1);
+                    if (!changed.byText().containsKey(normalize(display))) {
+                        candidates.add(new Suggestion(display, result.value));
+                    }
+                }
+                wanted *= 4;
+            } while (candidates.size() < limit * 2 && results.size() == wanted / 4);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        matching.values().stream().filter(Objects::nonNull).forEach(candidates::add);
+
+        Set<String> results = new LinkedHashSet<>();
+        candidates.stream()
+                .sorted(Comparator.comparingLong(Suggestion::weight).reversed())
+                .forEach(s -> {
+                    if (results.size() < limit) {
+                        results.add(s.display());
+                    }
+                });
+        return new ArrayList<>(results);
+    }
+
+    public synchronized void onProductChanged(Product product) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> touched = new HashSet<>(textsByProduct.getOrDefault(product.getId(), List.of()));
+        unindex(product.getId());
+        if (product.isActive()) {
+            index(product);
+            touched.addAll(textsByProduct.getOrDefault(product.getId(), List.of()));
+        }
+        publishOverlay(touched);
+    }
+
+    // units reserved feed suggestion ranking; a negative quantity is a release
+    public void recordDemand(Map<Long, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        quantities.forEach((id, qty) -> pendingDemand.computeIfAbsent(id, k -> new LongAdder()).add(qty));
+    }
+
+    @Scheduled(fixedDelayString = "${product.suggest.demand-flush-interval-ms:1000}")
+    @PreDestroy
+    public void flushDemand() {
+        Map<Long, Long> flushing = new HashMap<>();
+        pendingDemand.forEach((id, adder) -> {
+            long qty = adder.sumThenReset();
+            if (qty != 0) {
+                flushing.put(id, qty);
+            }
+        });
+        if (flushing.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                flushing.forEach((id, qty) -> conn.zIncrBy(POPULARITY_KEY, qty, id.toString()));
+                return null;
+            });
+        } catch (Exception e) {
+            // put the counts back for the next flush rather than lose them
+            flushing.forEach((id, qty) -> pendingDemand.computeIfAbsent(id, k -> new LongAdder()).add(qty));
+            log.warn("Failed to flush demand for {} products", flushing.size(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${product.suggest.rebuild-interval-ms:60000}", initialDelayString = "${product.suggest.rebuild-interval-ms:60000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        flushDemand();
+        Map<Long, Long> fresh = new HashMap<>();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> scores = redisTemplate.opsForZSet().rangeWithScores(POPULARITY_KEY, 0, -1);
+            if (scores != null) {
+                scores.forEach(t -> fresh.put(Long.valueOf(t.getValue()), Math.max(0, t.getScore().longValue())));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to load product popularity, keeping previous weights", e);
+            fresh.putAll(popularity);
+        }
+
+        synchronized (this) {
+            popularity = fresh;
+            List<String> entries = new ArrayList<>();
+            List<Long> weights = new ArrayList<>();
+            suggestions.forEach((text, suggestion) -> {
+                long weight = weightOf(suggestion);
+                for (String start : wordStarts(text)) {
+                    entries.add(start + SEPARATOR + suggestion.display());
+                    weights.add(weight);
+                }
+            });
+
+            WFSTCompletionLookup lookup = new WFSTCompletionLookup(new ByteBuffersDirectory(), "suggest");
+            try {
+                lookup.build(new ListInputIterator(entries, weights));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to build product suggestions", e);
+            }
+            fst = lookup;
+            overlay = Overlay.EMPTY;
+        }
+    }
+
+    private synchronized void remove(Long productId) {
+        Set<String> touched = new HashSet<>(textsByProduct.getOrDefault(productId, List.of()));
+        unindex(productId);
+        publishOverlay(touched);
+    }
+
+    private void index(Product product) {
+        if (!product.isActive()) {
+            return;
+        }
+        List<String> texts = new ArrayList<>(2);
+        for (String display : new String[]{product.getName(), product.getBrand()}) {
+            if (display == null || display.isBlank()) {
+                continue;
+            }
+            String text = normalize(display);
+            suggestions.computeIfAbsent(text, t -> new Suggestion(display.trim(), 0, new HashSet<>()))
+                    .products().add(product.getId());
+            texts.add(text);
+        }
+        textsByProduct.put(product.getId(), texts);
+    }
+
+    private void unindex(Long productId) {
+        List<String> texts = textsByProduct.remove(productId);
+        if (texts == null) {
+            return;
+        }
+        for (String text : texts) {
+            Suggestion suggestion = suggestions.get(text);
+            if (suggestion != null) {
+                suggestion.products().remove(productId);
+                if (suggestion.products().isEmpty()) {
+                    suggestions.remove(text);
+                }
+            }
+        }
+    }
+
+    // copy-on-write so readers never see a half-updated overlay
+    private void publishOverlay(Set<String> touched) {
+        Map<String, Suggestion> byText = new HashMap<>(overlay.byText());
+        NavigableMap<String, Suggestion> byStart = new TreeMap<>(overlay.byStart());
+        for (String text : touched) {
+            Suggestion suggestion = suggestions.get(text);
+            Suggestion entry = suggestion != null ? new Suggestion(suggestion.display(), weightOf(suggestion)) : null;
+            byText.put(text, entry);
+            for (String start : wordStarts(text)) {
+                byStart.put(start + SEPARATOR + text, entry);
+            }
+        }
+        overlay = new Overlay(byText, byStart);
+    }
+
+    private long weightOf(Suggestion suggestion) {
+        long weight = 0;
+        for (Long id : suggestion.products()) {
+            weight += popularity.getOrDefault(id, 0L);
+        }
+        // the FST stores weights as ints
+        return Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static List<String> wordStarts(String text) {
+        List<String> starts = new ArrayList<>();
+        starts.add(text);
+        for (int i = 1; i < text.length(); i++) {
+            if (text.charAt(i - 1) == ' ' && text.charAt(i) != ' ') {
+                starts.add(text.substring(i));
+            }
+        }
+        return starts;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record Suggestion(String display, long weight, Set<Long> products) {
+        Suggestion(String display, long weight) {
+            this(display, weight, Set.of());
+        }
+    }
+
+    // keyed by text, to hide the FST's stale entries, and by word start + text, to look up by prefix
+    private record Overlay(Map<String, Suggestion> byText, NavigableMap<String, Suggestion> byStart) {
+        static final Overlay EMPTY = new Overlay(Map.of(), new TreeMap<>());
+    }
+
+    private static final class ListInputIterator implements InputIterator {
+        private final Iterator<String> entries;
+        private final Iterator<Long> weights;
+        private long weight;
+
+        private ListInputIterator(List<String> entries, List<Long> weights) {
+            this.entries = entries.iterator();
+            this.weights = weights.iterator();
+        }
+
+        @Override
+        public BytesRef next() {
+            if (!entries.hasNext()) {
+                return null;
+            }
+            weight = weights.next();
+            return new BytesRef(entries.next().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
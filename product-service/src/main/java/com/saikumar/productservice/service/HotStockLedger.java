@@ -0,0 +1,431 @@
+package com.saikumar.productservice.service;
+
+import com.saikumar.productservice.exception.InsufficientStockException;
+import com.saikumar.productservice.exception.ProductNotFoundException;
+import com.saikumar.productservice.model.StockAllocation;
+import com.saikumar.productservice.model.StockLedgerCheckpoint;
+import com.saikumar.productservice.repository.StockAllocationRepository;
+import com.saikumar.productservice.repository.StockLedgerCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-memory stock ledger for flagged hot products. Each replica sells from its own
+ * slice of a hot SKU: a refill moves units out of products.stock into the replica's
+ * stock_allocations row in one transaction, and reservations are answered from an atomic
+ * counter over that slice. However many replicas run, together they can only sell what was
+ * moved out of products. Every counter change is appended to a local journal segment and forced
+ * to disk (group commit: one fsync covers every append waiting on it) before the caller gets an
+ * answer; net deltas are written behind to the allocation row on a fixed interval. Each flush
+ * seals the current segment and applies it together with a checkpoint row in one transaction,
+ * so on restart any segment without a checkpoint is replayed and any segment with one is just
+ * deleted. The journal directory keeps the replica's owner id, so a restarted replica picks up
+ * its own allocation.
+ *
+ * For hot SKUs products.stock is the unallocated pool, so product reads show up to a slice or two
+ * per replica less than can still be sold. A flush hands back allocation above twice the slice
+ * size and shutdown hands back all of it; until then a replica whose slice and the pool are both
+ * empty turns orders away even if another replica still holds units.
+ */
+@Component
+@Slf4j
+public class HotStockLedger {
+
+    private static final String APPLY_SQL =
+            "INSERT INTO stock_allocations (owner, product_id, quantity, updated_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), updated_at = VALUES(updated_at)";
+    private static final String TAKE_SQL =
+            "UPDATE products SET stock = stock - ?, version = version + 1, updated_at = ? WHERE id = ?";
+    private static final String GIVE_BACK_SQL =
+            "UPDATE products SET stock = stock + ?, version = version + 1, updated_at = ? WHERE id = ?";
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OWNER_FILE = "owner.id";
+
+    private final StockAllocationRepository allocationRepository;
+    private final StockLedgerCheckpointRepository checkpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    // refills and give-backs commit on their own, never with the reservation that triggered them
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${product.hot-sku.enabled:false}")
+    private boolean enabled;
+
+    @Value("${product.hot-sku.ids:}")
+    private Set<Long> hotIds;
+
+    @Value("${product.hot-sku.journal-dir:stock-journal}")
+    private String journalDir;
+
+    @Value("${product.hot-sku.slice-size:100}")
+    private int sliceSize;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Deque<Segment> sealed = new ArrayDeque<>();
+
+    // reservations share the read side; only segment rotation takes the write side
+    private final ReentrantReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    private final Object syncLock = new Object();
+    private final AtomicLong appended = new AtomicLong();
+    private long synced;
+    private FileChannel journal;
+    private long segmentId;
+    private String owner;
+
+    public HotStockLedger(StockAllocationRepository allocationRepository,
+                          StockLedgerCheckpointRepository checkpointRepository,
+                          JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.allocationRepository = allocationRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Path dir = Path.of(journalDir);
+        Files.createDirectories(dir);
+        owner = readOrCreateOwner(dir.resolve(OWNER_FILE));
+
+        List<Long> leftover = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(leftover::add);
+        }
+
+        long lastId = checkpointRepository.findMaxSegmentId(owner);
+        for (Long id : leftover) {
+            sealed.add(new Segment(id, segmentPath(id), readSegment(segmentPath(id))));
+            lastId = Math.max(lastId, id);
+        }
+        if (!leftover.isEmpty()) {
+            log.warn("Recovering {} hot-SKU stock journal segments", leftover.size());
+        }
+
+        applySealed();
+        if (!sealed.isEmpty()) {
+            throw new IllegalStateException("Could not recover hot-SKU stock journal in " + dir);
+        }
+
+        openSegment(lastId + 1);
+        for (StockAllocation allocation : allocationRepository.findByOwner(owner)) {
+            Counter counter = counter(allocation.getProductId());
+            counter.available.set(allocation.getQuantity());
+            if (!isHot(allocation.getProductId())) {
+                // no longer flagged: its units go back to the pool
+                giveBack(allocation.getProductId(), counter, 0);
+                counters.remove(allocation.getProductId());
+            }
+        }
+        log.info("Hot-SKU stock ledger {} enabled for products {}", owner, hotIds);
+    }
+
+    public boolean isHot(Long productId) {
+        return enabled && hotIds.contains(productId);
+    }
+
+    public void reserve(Long productId, int quantity) {
+        Counter counter = counter(productId);
+        while (true) {
+            segmentLock.readLock().lock();
+            try {
+                int current;
+                do {
+                    current = counter.available.get();
+                } while (current >= quantity && !counter.available.compareAndSet(current, current - quantity));
+
+                if (current >= quantity) {
+                    append(productId, counter, -quantity);
+                    return;
+                }
+            } finally {
+                segmentLock.readLock().unlock();
+            }
+            if (!refill(productId, counter, quantity)) {
+                throw new InsufficientStockException(
+                    "Not enough stock for product " + productId + ". Available: " + counter.available.get());
+            }
+        }
+    }
+
+    public void release(Long productId, int quantity) {
+        Counter counter = counter(productId);
+        segmentLock.readLock().lock();
+        try {
+            counter.available.addAndGet(quantity);
+            append(productId, counter, quantity);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Admin stock edits on a hot SKU set the total; what goes into products.stock is that total
+     * minus what replicas hold. Allocations are as of each replica's last flush, so the edit can
+     * be off by the reservations of one flush interval.
+     */
+    public int poolFor(Long productId, int total) {
+        Integer allocated = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_allocations WHERE product_id = ?", Integer.class, productId);
+        return Math.max(0, total - (allocated != null ? allocated : 0));
+    }
+
+    @Scheduled(fixedDelayString = "${product.hot-sku.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        segmentLock.writeLock().lock();
+        try {
+            long sealedId = segmentId;
+            if (journal.isOpen()) {
+                journal.force(false);
+                journal.close();
+            }
+            synchronized (syncLock) {
+                synced = appended.get();
+            }
+            openSegment(sealedId + 1);
+
+            Map<Long, Integer> deltas = new HashMap<>();
+            counters.forEach((id, counter) -> {
+                int delta = counter.pending.getAndSet(0);
+                if (delta != 0) {
+                    deltas.put(id, delta);
+                }
+            });
+            sealed.add(new Segment(sealedId, segmentPath(sealedId), deltas));
+        } catch (IOException e) {
+            log.error("Failed to rotate hot-SKU stock journal segment {}", segmentId, e);
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+
+        applySealed();
+        // releases can pile units up in one replica; keep two slices, hand the rest to the others
+        counters.forEach((id, counter) -> giveBack(id, counter, 2 * sliceSize));
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        counters.forEach((id, counter) -> giveBack(id, counter, 0));
+        journal.close();
+    }
+
+    private Counter counter(Long productId) {
+        return counters.computeIfAbsent(productId, id -> new Counter());
+    }
+
+    /**
+     * Moves a slice (or what the order needs, if more) from products.stock to this replica. Only
+     * one refill per SKU runs at a time; returns false once the pool is empty. The refill commits
+     * on a connection of its own, so it refuses to run inside a caller's transaction: a caller
+     * already holding a pooled connection would wait for a second one, and enough of them at once
+     * starve the pool.
+     */
+    private boolean refill(Long productId, Counter counter, int needed) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Hot-SKU refill for product " + productId + " called inside a transaction");
+        }
+        synchronized (counter) {
+            int available = counter.available.get();
+            if (available >= needed) {
+                return true;
+            }
+            int want = Math.max(sliceSize, needed - available);
+            Integer taken = transactionTemplate.execute(status -> {
+                List<Integer> stock = jdbcTemplate.queryForList(
+                        "SELECT stock FROM products WHERE id = ? FOR UPDATE", Integer.class, productId);
+                if (stock.isEmpty()) {
+                    throw new ProductNotFoundException("Product not found: " + productId);
+                }
+                int take = Math.min(want, Math.max(stock.get(0), 0));
+                if (take > 0) {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    jdbcTemplate.update(TAKE_SQL, take, now, productId);
+                    jdbcTemplate.update(APPLY_SQL, owner, productId, take, now);
+                }
+                return take;
+            });
+            if (taken == null || taken == 0) {
+                return false;
+            }
+            counter.available.addAndGet(taken);
+            log.debug("Hot-SKU ledger {} took {} units of product {}", owner, taken, productId);
+            return true;
+        }
+    }
+
+    // hands everything above keep back to products.stock; on failure the units stay allocated here
+    private void giveBack(Long productId, Counter counter, int keep) {
+        synchronized (counter) {
+            int current;
+            int excess;
+            do {
+                current = counter.available.get();
+                excess = current - keep;
+                if (excess <= 0) {
+                    return;
+                }
+            } while (!counter.available.compareAndSet(current, keep));
+
+            int units = excess;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    jdbcTemplate.update(APPLY_SQL, owner, productId, -units, now);
+                    jdbcTemplate.update(GIVE_BACK_SQL, units, now, productId);
+                });
+                log.debug("Hot-SKU ledger {} gave back {} units of product {}", owner, units, productId);
+            } catch (Exception e) {
+                counter.available.addAndGet(units);
+                log.error("Failed to give back {} units of product {}, keeping them", units, productId, e);
+            }
+        }
+    }
+
+    // must be called under the read lock so the record lands in the same segment as the pending delta;
+    // returns only once the record is on disk
+    private void append(Long productId, Counter counter, int delta) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).putLong(productId).putInt(delta).flip();
+        try {
+            journal.write(record);
+            sync(appended.incrementAndGet());
+        } catch (IOException e) {
+            counter.available.addAndGet(-delta);
+            throw new UncheckedIOException("Failed to journal stock change for product " + productId, e);
+        }
+        counter.pending.addAndGet(delta);
+    }
+
+    // group commit: whoever forces covers every append that finished writing before it started
+    private void sync(long upTo) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= upTo) {
+                return;
+            }
+            long target = appended.get();
+            journal.force(false);
+            synced = target;
+        }
+    }
+
+    private void applySealed() {
+        while (!sealed.isEmpty()) {
+            Segment segment = sealed.peek();
+            StockLedgerCheckpoint.Key key = new StockLedgerCheckpoint.Key(owner, segment.id());
+            try {
+                if (!segment.deltas().isEmpty() && !checkpointRepository.existsById(key)) {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        applyDeltas(segment.deltas());
+                        checkpointRepository.save(new StockLedgerCheckpoint(owner, segment.id()));
+                    });
+                }
+                Files.deleteIfExists(segment.path());
+                if (!segment.deltas().isEmpty()) {
+                    checkpointRepository.deleteById(key);
+                }
+            } catch (Exception e) {
+                log.error("Failed to flush hot-SKU stock journal segment {}, will retry", segment.id(), e);
+                return;
+            }
+            sealed.poll();
+            log.debug("Flushed hot-SKU stock journal segment {}: {}", segment.id(), segment.deltas());
+        }
+    }
+
+    private void applyDeltas(Map<Long, Integer> deltas) {
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(deltas.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(APPLY_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, owner);
+            ps.setLong(2, entry.getKey());
+            ps.setInt(3, entry.getValue());
+            ps.setTimestamp(4, now);
+        });
+    }
+
+    private Map<Long, Integer> readSegment(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        Map<Long, Integer> deltas = new HashMap<>();
+        // a torn trailing record was never acknowledged, so it is dropped
+        while (buffer.remaining() >= RECORD_SIZE) {
+            deltas.merge(buffer.getLong(), buffer.getInt(), Integer::sum);
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    private static String readOrCreateOwner(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
+        return id;
+    }
+
+    private void openSegment(long id) throws IOException {
+        journal = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentId = id;
+    }
+
+    private Path segmentPath(long id) {
+        return Path.of(journalDir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    private static final class Counter {
+        private final AtomicInteger available = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+    }
+
+    private record Segment(long id, Path path, Map<Long, Integer> deltas) {}
+}
@@ -1,101 +1,600 @@
 package com.saikumar.productservice.service;
 
+import com.saikumar.productservice.cache.CachedPage;
+import com.saikumar.productservice.cache.ProductListingCache;
+import com.saikumar.productservice.dto.CursorPage;
+import com.saikumar.productservice.dto.FacetDto;
+import com.saikumar.productservice.dto.ProductCard;
+import com.saikumar.productservice.dto.ProductCursor;
+import com.saikumar.productservice.dto.StockDto;
 import com.saikumar.productservice.exception.ProductNotFoundException;
 import com.saikumar.productservice.exception.InsufficientStockException;
+import com.saikumar.productservice.exception.ReservationReleasedException;
+import com.saikumar.productservice.exception.StockConflictException;
 import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.model.StockReservation;
+import com.saikumar.productservice.repository.ProductCursorRepository;
 import com.saikumar.productservice.repository.ProductRepository;
-import lombok.RequiredArgsConstructor;
+import com.saikumar.productservice.repository.StockReservationRepository;
+import com.saikumar.productservice.search.ProductChangeNotifier;
+import com.saikumar.productservice.search.ProductFacetIndex;
+import com.saikumar.productservice.search.ProductSearchIndex;
+import com.saikumar.productservice.search.ProductSuggester;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final StockReservationRepository stockReservationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheManager cacheManager;
+    private final HotStockLedger hotStockLedger;
+    private final ProductListingCache productListingCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggester productSuggester;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductChangeNotifier productChangeNotifier;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter conflictCounter;
+    private final Counter retryCounter;
+    private final Counter exhaustedCounter;
 
-    @Cacheable(value = "products", key = "#pageable.pageNumber + '-' + #pageable.pageSize")
-    public Page<Product> getAllProducts(Pageable pageable) {
-        return productRepository.findByActiveTrue(pageable);
+    @Value("${product.stock.max-retries:5}")
+    private int maxStockRetries;
+
+    @Value("${product.stock.reservation-retention-hours:168}")
+    private long reservationRetentionHours;
+
+    private static final String RESERVE_SQL =
+            "UPDATE products SET stock = stock - ?, version = version + 1, updated_at = ? WHERE id = ? AND stock >= ?";
+    private static final int PURGE_BATCH = 5000;
+    private static final String RECORD_RESERVATION_SQL =
+            "INSERT INTO stock_reservations (order_id, product_id, quantity, status, updated_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String RELEASE_SQL =
+            "UPDATE products SET stock = stock + ?, version = version + 1, updated_at = ? WHERE id = ?";
+
+    public ProductService(ProductRepository productRepository, StockReservationRepository stockReservationRepository,
+                          JdbcTemplate jdbcTemplate,
+                          CacheManager cacheManager, HotStockLedger hotStockLedger,
+                          ProductListingCache productListingCache, ProductSearchIndex productSearchIndex,
+                          ProductSuggester productSuggester, ProductFacetIndex productFacetIndex,
+                          ProductChangeNotifier productChangeNotifier,
+                          PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.stockReservationRepository = stockReservationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheManager = cacheManager;
+        this.hotStockLedger = hotStockLedger;
+        this.productListingCache = productListingCache;
+        this.productSearchIndex = productSearchIndex;
+        this.productSuggester = productSuggester;
+        this.productFacetIndex = productFacetIndex;
+        this.productChangeNotifier = productChangeNotifier;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.conflictCounter = meterRegistry.counter("product.stock.update.conflicts");
+        this.retryCounter = meterRegistry.counter("product.stock.update.retries");
+        this.exhaustedCounter = meterRegistry.counter("product.stock.update.exhausted");
+    }
+
+    // pages are cached as id lists plus a total and rebuilt from the per-product card cache;
+    // listings sorted by stock reorder on every reservation, so those are always read fresh
+    public Page<ProductCard> getAllProducts(Pageable pageable) {
+        if (!productListingCache.isCacheable(pageable)) {
+            return productRepository.findCardsByActiveTrue(pageable);
+        }
+        String pageKey = productListingCache.pageKey(pageable);
+        CachedPage cached = productListingCache.pages().get(pageKey, () -> {
+            Page<ProductCard> page = productRepository.findCardsByActiveTrue(pageable);
+            Cache cards = productListingCache.cards();
+            page.getContent().forEach(card -> cards.put(card.id(), card));
+            return CachedPage.of(page);
+        });
+        return new PageImpl<>(hydrate(cached.ids()), pageable, cached.total());
     }
 
-    @Cacheable(value = "product", key = "#id")
+    @Cacheable(value = "product", key = "#id", sync = true)
     public Product getProductById(Long id) {
         return productRepository.findById(id)
                 .filter(Product::isActive)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found: " + id));
     }
 
-    public Page<Product> getByCategory(String category, Pageable pageable) {
-        return productRepository.findByCategoryAndActiveTrue(category, pageable);
+    public Page<ProductCard> getByCategory(String category, Pageable pageable) {
+        return productRepository.findCardsByCategoryAndActiveTrue(category, pageable);
     }
 
-    public Page<Product> search(String keyword, Pageable pageable) {
-        return productRepository.searchByKeyword(keyword, pageable);
+    /**
+     * Keyset listing, optionally within a category. The first call picks the sort; after that
+     * the cursor carries it, so sortBy and direction are ignored when a cursor is given.
+     */
+    public CursorPage<ProductCard> scrollProducts(String category, String sortBy, Sort.Direction direction,
+                                              String cursor, int size) {
+        ProductCursor after = cursor != null ? ProductCursor.decode(cursor) : null;
+        String key = after != null ? after.sortBy() : ProductCursor.requireSortKey(sortBy);
+        Sort.Direction dir = after != null ? after.direction() : direction;
+
+        List<ProductCursorRepository.Row> rows = productRepository.findActiveAfter(category, key, dir, after, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<ProductCard> content = rows.stream().limit(size).map(ProductCursorRepository.Row::card).toList();
+        String next = null;
+        if (hasNext) {
+            ProductCursorRepository.Row last = rows.get(size - 1);
+            next = ProductCursor.after(last.card(), last.sortValue(), key, dir).encode();
+        }
+        return new CursorPage<>(content, content.size(), hasNext, next);
+    }
+
+    public Page<ProductCard> search(String keyword, Pageable pageable) {
+        if (!productSearchIndex.isEnabled()) {
+            return productRepository.searchCardsByKeyword(keyword, pageable);
+        }
+        Page<Long> hits = productSearchIndex.search(keyword, pageable);
+        return new PageImpl<>(cardsInOrder(hits.getContent()), pageable, hits.getTotalElements());
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        return productSuggester.suggest(prefix, limit);
+    }
+
+    public FacetDto.FacetResponse browseFacets(Map<String, List<String>> selection, int offset, int limit) {
+        return productFacetIndex.query(selection, offset, limit);
     }
 
     public List<Product> getProductsByIds(List<Long> ids) {
         return productRepository.findByIdIn(ids);
     }
 
-    @CacheEvict(value = {"products", "product"}, allEntries = true)
+    // a new product can shift every listing page, so cached pages are retired by version instead of deleted
     public Product createProduct(Product product) {
         Product saved = productRepository.save(product);
+        productListingCache.bumpVersion();
+        onProductChanged(saved);
         log.info("Product created: {} (id={})", saved.getName(), saved.getId());
         return saved;
     }
 
-    @CacheEvict(value = {"products", "product"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "product", key = "#id"),
+            @CacheEvict(value = ProductListingCache.CARD_CACHE, key = "#id")
+    })
     public Product updateProduct(Long id, Product updated) {
         Product existing = getProductById(id);
+        Set<String> reordered = changedSortProperties(existing, updated);
         existing.setName(updated.getName());
         existing.setDescription(updated.getDescription());
         existing.setPrice(updated.getPrice());
-        existing.setStock(updated.getStock());
+        // a hot SKU's row only holds the stock no replica has taken a slice of
+        existing.setStock(hotStockLedger.isHot(id) ? hotStockLedger.poolFor(id, updated.getStock()) : updated.getStock());
         existing.setCategory(updated.getCategory());
         existing.setBrand(updated.getBrand());
         existing.setImageUrl(updated.getImageUrl());
-        return productRepository.save(existing);
+        Product saved = productRepository.save(existing);
+        onProductChanged(saved);
+
+        // cached pages show the fresh card; only listings sorted by a changed field can have moved
+        productListingCache.bumpSortVersions(reordered);
+        return saved;
     }
 
-    @Transactional
+    /**
+     * Optimistic read-check-write: each attempt reads the row and applies the new stock only if
+     * the version is unchanged. Attempts run in their own short transactions so a retry always
+     * sees a fresh row, and back off with jitter so contending threads spread out.
+     */
     @CacheEvict(value = "product", key = "#productId")
     public void reduceStock(Long productId, int quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException("Product not found: " + productId));
+        if (hotStockLedger.isHot(productId)) {
+            hotStockLedger.reserve(productId, quantity);
+            productSuggester.recordDemand(Map.of(productId, quantity));
+            return;
+        }
+
+        for (int attempt = 0; attempt <= maxStockRetries; attempt++) {
+            if (attempt > 0) {
+                retryCounter.increment();
+                backOff(attempt);
+            }
+
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found: " + productId));
 
-        if (product.getStock() < quantity) {
-            throw new InsufficientStockException(
-                "Not enough stock for product " + productId + ". Available: " + product.getStock());
+            if (product.getStock() < quantity) {
+                throw new InsufficientStockException(
+                    "Not enough stock for product " + productId + ". Available: " + product.getStock());
+            }
+
+            int remaining = product.getStock() - quantity;
+            if (productRepository.updateStockIfVersion(productId, remaining, product.getVersion(), LocalDateTime.now()) == 1) {
+                log.info("Stock reduced for product {}: {} -> {}", productId, product.getStock(), remaining);
+                productSuggester.recordDemand(Map.of(productId, quantity));
+                return;
+            }
+            conflictCounter.increment();
         }
 
-        product.setStock(product.getStock() - quantity);
-        productRepository.save(product);
-        log.info("Stock reduced for product {}: {} -> {}", productId, product.getStock() + quantity, product.getStock());
+        exhaustedCounter.increment();
+        throw new StockConflictException(
+            "Stock for product " + productId + " is being updated concurrently, please retry");
     }
 
+    /**
+     * All-or-nothing reservation for a whole order. Quantities are merged per product and
+     * applied as one JDBC batch of conditional updates, ordered by id so concurrent
+     * reservations always lock rows in the same order. Hot SKUs are taken from the in-memory
+     * ledger before the transaction opens, because a ledger refill commits on a connection of its
+     * own and must not wait for one while this reservation holds another; they are handed back if
+     * the transaction does not commit.
+     *
+     * The order id makes this idempotent: the reservation is recorded in stock_reservations in
+     * the same transaction, so a retry after a timeout that did commit changes nothing, and a
+     * reserve that arrives after the order's stock was released is refused.
+     */
+    public void reserveStock(Long orderId, List<StockDto.StockItem> items) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockDto.StockItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        // a plain read so a retry of a settled order doesn't touch the ledger; the transaction checks again under lock
+        if (isSettled(orderId, jdbcTemplate.queryForList(
+                "SELECT status FROM stock_reservations WHERE order_id = ?", String.class, orderId))) {
+            return;
+        }
+
+        Map<Long, Integer> fromLedger = new LinkedHashMap<>();
+        Map<Long, Integer> fromDatabase = new TreeMap<>();
+        quantities.forEach((id, qty) -> (hotStockLedger.isHot(id) ? fromLedger : fromDatabase).put(id, qty));
+
+        Map<Long, Integer> reserved = new LinkedHashMap<>();
+        boolean applied = false;
+        try {
+            fromLedger.forEach((id, qty) -> {
+                hotStockLedger.reserve(id, qty);
+                reserved.put(id, qty);
+            });
+            applied = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (isSettled(orderId, jdbcTemplate.queryForList(
+                        "SELECT status FROM stock_reservations WHERE order_id = ? FOR UPDATE", String.class, orderId))) {
+                    return false;
+                }
+                // claims the key before any stock moves; a concurrent duplicate fails here and is retried
+                recordReservations(orderId, quantities, StockReservation.Status.RESERVED);
+                reserveInDatabase(fromDatabase);
+                return true;
+            }));
+        } finally {
+            // the ledger isn't part of the transaction: whatever it handed out goes back unless it committed
+            if (!applied) {
+                reserved.forEach(hotStockLedger::release);
+            }
+        }
+        if (!applied) {
+            return;
+        }
+
+        Cache cache = cacheManager.getCache("product");
+        if (cache != null) {
+            quantities.keySet().forEach(cache::evict);
+        }
+        productSuggester.recordDemand(quantities);
+        log.info("Stock reserved for order {}: {} products", orderId, quantities.size());
+    }
+
+    // true if the order's reservation already went through; refused if its stock was released first
+    private boolean isSettled(Long orderId, List<String> statuses) {
+        if (statuses.contains(StockReservation.Status.RELEASED.name())) {
+            throw new ReservationReleasedException("Stock for order " + orderId + " was already released");
+        }
+        if (!statuses.isEmpty()) {
+            log.info("Stock for order {} already reserved", orderId);
+            return true;
+        }
+        return false;
+    }
+
+    private void reserveInDatabase(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(quantities.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int[][] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, entry.getKey());
+            ps.setInt(4, entry.getValue());
+        });
+
+        for (int i = 0; i < entries.size(); i++) {
+            if (counts[0][i] == 0) {
+                Long productId = entries.get(i).getKey();
+                throw new InsufficientStockException(
+                    "Not enough stock for product " + productId + ". Requested: " + entries.get(i).getValue());
+            }
+        }
+    }
+
+    /**
+     * Hands back stock for many orders at once, e.g. every order whose payment failed since the
+     * last sweep. Each order's RESERVED rows flip to RELEASED, and what they held is merged per
+     * product into one JDBC batch of increments, ordered by id like reservations; releasing an
+     * order again finds nothing left to release. An order with no rows gets RELEASED ones, so its
+     * reservation, should it still arrive, is refused. Products that no longer exist are skipped
+     * rather than failing the batch.
+     */
     @Transactional
+    public void releaseStock(List<StockDto.OrderRelease> releases) {
+        List<Long> orderIds = releases.stream().map(StockDto.OrderRelease::getOrderId).distinct().toList();
+        Map<Long, List<StockReservation>> rows = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT order_id, product_id, quantity, status FROM stock_reservations WHERE order_id IN (" +
+                String.join(",", Collections.nCopies(orderIds.size(), "?")) + ") ORDER BY order_id, product_id FOR UPDATE",
+                rs -> {
+                    StockReservation row = new StockReservation();
+                    row.setOrderId(rs.getLong(1));
+                    row.setProductId(rs.getLong(2));
+                    row.setQuantity(rs.getInt(3));
+                    row.setStatus(StockReservation.Status.valueOf(rs.getString(4)));
+                    rows.computeIfAbsent(row.getOrderId(), id -> new ArrayList<>()).add(row);
+                },
+                orderIds.toArray());
+
+        Map<Long, Integer> quantities = new TreeMap<>();
+        List<Long> released = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (StockDto.OrderRelease release : releases) {
+            if (!seen.add(release.getOrderId())) {
+                continue;
+            }
+            List<StockReservation> reservation = rows.get(release.getOrderId());
+            if (reservation != null) {
+                reservation.stream()
+                        .filter(row -> row.getStatus() == StockReservation.Status.RESERVED)
+                        .forEach(row -> quantities.merge(row.getProductId(), row.getQuantity(), Integer::sum));
+                released.add(release.getOrderId());
+                continue;
+            }
+            Map<Long, Integer> items = new TreeMap<>();
+            release.getItems().forEach(item -> items.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+            recordReservations(release.getOrderId(), items, StockReservation.Status.RELEASED);
+            if (release.isUntracked()) {
+                items.forEach((id, qty) -> quantities.merge(id, qty, Integer::sum));
+            }
+        }
+
+        if (!released.isEmpty()) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate("UPDATE stock_reservations SET status = 'RELEASED', updated_at = ? " +
+                    "WHERE order_id = ? AND status = 'RESERVED'", released, released.size(), (ps, orderId) -> {
+                ps.setTimestamp(1, now);
+                ps.setLong(2, orderId);
+            });
+        }
+        handBack(quantities);
+        log.info("Stock released for {} orders: {} products", seen.size(), quantities.size());
+    }
+
+    // Hot SKUs go back to the ledger only once the batch has committed; a failed batch is retried
+    // by the caller as a whole, so releasing them earlier would hand them back twice.
+    private void handBack(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> toLedger = new LinkedHashMap<>();
+        List<Map.Entry<Long, Integer>> toDatabase = new ArrayList<>();
+        quantities.entrySet().forEach(entry -> {
+            if (hotStockLedger.isHot(entry.getKey())) {
+                toLedger.put(entry.getKey(), entry.getValue());
+            } else {
+                toDatabase.add(entry);
+            }
+        });
+        if (!toLedger.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    toLedger.forEach(hotStockLedger::release);
+                }
+            });
+        }
+
+        if (!toDatabase.isEmpty()) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            int[][] counts = jdbcTemplate.batchUpdate(RELEASE_SQL, toDatabase, toDatabase.size(), (ps, entry) -> {
+                ps.setInt(1, entry.getValue());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, entry.getKey());
+            });
+            for (int i = 0; i < toDatabase.size(); i++) {
+                if (counts[0][i] == 0) {
+                    log.warn("Released stock for missing product {}: {}", toDatabase.get(i).getKey(), toDatabase.get(i).getValue());
+                }
+            }
+        }
+
+        Cache cache = cacheManager.getCache("product");
+        if (cache != null) {
+            quantities.keySet().forEach(cache::evict);
+        }
+        Map<Long, Integer> demand = new LinkedHashMap<>();
+        quantities.forEach((id, qty) -> demand.put(id, -qty));
+        productSuggester.recordDemand(demand);
+    }
+
+    private void recordReservations(Long orderId, Map<Long, Integer> quantities, StockReservation.Status status) {
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(quantities.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(RECORD_RESERVATION_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, orderId);
+            ps.setLong(2, entry.getKey());
+            ps.setInt(3, entry.getValue());
+            ps.setString(4, status.name());
+            ps.setTimestamp(5, now);
+        });
+    }
+
+    // reservation rows only need to outlive the order saga's retries
+    @Scheduled(fixedDelayString = "${product.stock.reservation-purge-interval-ms:3600000}")
+    public void purgeReservations() {
+        LocalDateTime before = LocalDateTime.now().minusHours(reservationRetentionHours);
+        int purged;
+        do {
+            purged = stockReservationRepository.purgeBefore(before, PURGE_BATCH);
+            if (purged > 0) {
+                log.info("Purged {} stock reservations older than {}", purged, before);
+            }
+        } while (purged == PURGE_BATCH);
+    }
+
     @CacheEvict(value = "product", key = "#productId")
     public void restoreStock(Long productId, int quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException("Product not found: " + productId));
-        product.setStock(product.getStock() + quantity);
-        productRepository.save(product);
+        if (hotStockLedger.isHot(productId)) {
+            hotStockLedger.release(productId, quantity);
+            productSuggester.recordDemand(Map.of(productId, -quantity));
+            return;
+        }
+
+        // a plain increment can't oversell, so it skips the version check
+        if (productRepository.incrementStock(productId, quantity, LocalDateTime.now()) == 0) {
+            throw new ProductNotFoundException("Product not found: " + productId);
+        }
+        productSuggester.recordDemand(Map.of(productId, -quantity));
         log.info("Stock restored for product {}: +{}", productId, quantity);
     }
 
-    @CacheEvict(value = {"products", "product"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(value = "product", key = "#id"),
+            @CacheEvict(value = ProductListingCache.CARD_CACHE, key = "#id")
+    })
     public void deleteProduct(Long id) {
         Product product = getProductById(id);
         product.setActive(false); // soft delete
         productRepository.save(product);
+        productListingCache.bumpVersion();
+        onProductChanged(product);
+    }
+
+    // local search structures are updated in place; other replicas re-read the product when notified.
+    // The write has committed by now, so a structure that fails is logged, not turned into an error
+    // for the caller; the search index's reconcile and the facets' catch-up pass re-read the product.
+    private void onProductChanged(Product product) {
+        updateLocally("search index", product, productSearchIndex::onProductChanged);
+        updateLocally("suggestions", product, productSuggester::onProductChanged);
+        updateLocally("facets", product, productFacetIndex::onProductChanged);
+        productChangeNotifier.publish(product.getId());
+    }
+
+    private static void updateLocally(String structure, Product product, Consumer<Product> update) {
+        try {
+            update.accept(product);
+        } catch (RuntimeException e) {
+            log.error("Failed to update {} for product {}", structure, product.getId(), e);
+        }
+    }
+
+    // the index returns ids by relevance; the IN query does not keep that order
+    private List<ProductCard> cardsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductCard> byId = new HashMap<>();
+        productRepository.findCardsByIdInAndActiveTrue(ids).forEach(card -> byId.put(card.id(), card));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    // cards from the card cache, the rest in one query; products deactivated since the page was cached drop out
+    private List<ProductCard> hydrate(List<Long> ids) {
+        Cache cards = productListingCache.cards();
+        Map<Long, ProductCard> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            ProductCard card = cards.get(id, ProductCard.class);
+            if (card != null) {
+                found.put(id, card);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (ProductCard card : productRepository.findCardsByIdInAndActiveTrue(missing)) {
+                cards.put(card.id(), card);
+                found.put(card.id(), card);
+            }
+        }
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // properties a listing can be sorted by whose value this edit changes (stock-sorted listings aren't cached)
+    private static Set<String> changedSortProperties(Product existing, Product updated) {
+        Set<String> changed = new HashSet<>();
+        if (!Objects.equals(existing.getName(), updated.getName())) {
+            changed.add("name");
+        }
+        if (!Objects.equals(existing.getDescription(), updated.getDescription())) {
+            changed.add("description");
+        }
+        if (existing.getPrice() == null || updated.getPrice() == null
+                ? existing.getPrice() != updated.getPrice()
+                : existing.getPrice().compareTo(updated.getPrice()) != 0) {
+            changed.add("price");
+        }
+        if (!Objects.equals(existing.getCategory(), updated.getCategory())) {
+            changed.add("category");
+        }
+        if (!Objects.equals(existing.getBrand(), updated.getBrand())) {
+            changed.add("brand");
+        }
+        if (!Objects.equals(existing.getImageUrl(), updated.getImageUrl())) {
+            changed.add("imageUrl");
+        }
+        return changed;
+    }
+
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 2L << Math.min(attempt, 6)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockConflictException("Interrupted while retrying stock update");
+        }
     }
 }
@@ -0,0 +1,68 @@
+package com.saikumar.productservice.cache;
+
+import com.saikumar.productservice.dto.ProductCard;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares what one cached listing page costs in Redis and on every read, stored as ids plus a
+ * total versus as the full cards. Pages are written with the serializer the Redis cache uses;
+ * bytes and allocation per read are printed for page sizes 20 and 100.
+ */
+class CachedPagePayloadTest {
+
+    private static final int READS = 20_000;
+
+    private final JdkSerializationRedisSerializer serializer = new JdkSerializationRedisSerializer();
+
+    @Test
+    void idPagesAreSmallerAndCheaperToReadThanCardPages() {
+        for (int size : new int[]{20, 100}) {
+            List<ProductCard> cards = cards(size);
+            byte[] ids = serializer.serialize(CachedPage.of(new PageImpl<>(cards, PageRequest.of(0, size), 10_000)));
+            byte[] full = serializer.serialize(new CardsPage(cards, 10_000));
+
+            long idsAllocated = allocatedPerRead(ids);
+            long fullAllocated = allocatedPerRead(full);
+            System.out.printf("page of %3d: ids %5d bytes, %6d bytes allocated per read | cards %5d bytes, %6d bytes allocated per read%n",
+                    size, ids.length, idsAllocated, full.length, fullAllocated);
+
+            assertThat(ids.length).isLessThan(full.length);
+            assertThat(idsAllocated).isLessThan(fullAllocated);
+        }
+    }
+
+    private long allocatedPerRead(byte[] payload) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < READS; i++) {
+            serializer.deserialize(payload);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < READS; i++) {
+            serializer.deserialize(payload);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / READS;
+    }
+
+    private static List<ProductCard> cards(int size) {
+        List<ProductCard> cards = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            cards.add(new ProductCard(id, "Wireless Noise Cancelling Headphones " + id, new BigDecimal("249.99"),
+                    "Electronics", "Acme Audio"));
+        }
+        return cards;
+    }
+
+    // the card layout pages had before they went back to ids
+    private record CardsPage(List<ProductCard> cards, long total) implements Serializable {}
+}
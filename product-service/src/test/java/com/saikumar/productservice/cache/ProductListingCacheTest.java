@@ -0,0 +1,77 @@
+package com.saikumar.productservice.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductListingCacheTest {
+
+    private final Map<String, Long> redis = new ConcurrentHashMap<>();
+    private ProductListingCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(template.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(call -> {
+            Long value = redis.get(call.<String>getArgument(0));
+            return value != null ? value.toString() : null;
+        });
+        when(values.increment(anyString())).thenAnswer(call -> redis.merge(call.getArgument(0), 1L, Long::sum));
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(connection.incr(anyString())).thenAnswer(call -> redis.merge(call.getArgument(0), 1L, Long::sum));
+        when(template.executePipelined(any(RedisCallback.class))).thenAnswer(call -> {
+            call.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+        cache = new ProductListingCache(template, new NoOpCacheManager());
+    }
+
+    @Test
+    void aPriceEditRetiresOnlyPriceSortedPages() {
+        String byPrice = cache.pageKey(PageRequest.of(0, 20, Sort.by("price")));
+        String byName = cache.pageKey(PageRequest.of(0, 20, Sort.by("name")));
+        String unsorted = cache.pageKey(PageRequest.of(0, 20));
+
+        cache.bumpSortVersions(List.of("price"));
+
+        assertThat(cache.pageKey(PageRequest.of(0, 20, Sort.by("price")))).isNotEqualTo(byPrice);
+        assertThat(cache.pageKey(PageRequest.of(0, 20, Sort.by("name")))).isEqualTo(byName);
+        assertThat(cache.pageKey(PageRequest.of(0, 20))).isEqualTo(unsorted);
+    }
+
+    @Test
+    void aNewProductRetiresEveryPage() {
+        String byName = cache.pageKey(PageRequest.of(0, 20, Sort.by("name")));
+        String unsorted = cache.pageKey(PageRequest.of(0, 20));
+
+        cache.bumpVersion();
+
+        assertThat(cache.pageKey(PageRequest.of(0, 20, Sort.by("name")))).isNotEqualTo(byName);
+        assertThat(cache.pageKey(PageRequest.of(0, 20))).isNotEqualTo(unsorted);
+    }
+
+    @Test
+    void stockSortedListingsAreNotCached() {
+        assertThat(cache.isCacheable(PageRequest.of(0, 20, Sort.by("stock").descending()))).isFalse();
+        assertThat(cache.isCacheable(PageRequest.of(0, 20, Sort.by("price")))).isTrue();
+    }
+}
@@ -0,0 +1,126 @@
+package com.saikumar.productservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoTierCacheTest {
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, CacheEntry> local = Caffeine.newBuilder().build();
+    private final ConcurrentMapCache remote = new ConcurrentMapCache("product");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void concurrentMissesRunOneLoader() throws Exception {
+        TwoTierCache cache = cache(Duration.ofMinutes(10), 0, Duration.ZERO, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return cache.get("product::42", () -> {
+                    loads.incrementAndGet();
+                    Thread.sleep(200);
+                    return "loaded";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("loaded");
+        }
+        pool.shutdown();
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("product.cache.loads.coalesced", "cache", "product").count()).isPositive();
+    }
+
+    @Test
+    void staleEntryIsServedWhileOneRefreshIsQueued() throws Exception {
+        ConcurrentLinkedQueue<Runnable> queued = new ConcurrentLinkedQueue<>();
+        TwoTierCache cache = cache(Duration.ofMillis(20), 0, Duration.ofMinutes(1), queued::add);
+        cache.put("product::42", "v1");
+        Thread.sleep(30);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get("product::42", () -> "v2")).isEqualTo("v1");
+        }
+        assertThat(queued).hasSize(1);
+
+        queued.poll().run();
+        assertThat(cache.get("product::42", () -> "v3")).isEqualTo("v2");
+    }
+
+    @Test
+    void rejectedRefreshIsRetriedByALaterRead() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Executor fullThenDirect = task -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new RejectedExecutionException("queue full");
+            }
+            task.run();
+        };
+        TwoTierCache cache = cache(Duration.ofMillis(20), 0, Duration.ofMinutes(1), fullThenDirect);
+        cache.put("product::42", "v1");
+        Thread.sleep(30);
+
+        assertThat(cache.get("product::42", () -> "v2")).isEqualTo("v1");
+        assertThat(cache.get("product::42", () -> "v2")).isEqualTo("v1");
+        assertThat(cache.get("product::42", () -> "v3")).isEqualTo("v2");
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void entryPastTheStaleWindowIsLoadedInline() throws Exception {
+        TwoTierCache cache = cache(Duration.ofMillis(20), 0, Duration.ofMillis(20), task -> {
+            throw new AssertionError("no background refresh expected");
+        });
+        cache.put("product::42", "v1");
+        Thread.sleep(60);
+
+        assertThat(cache.get("product::42", () -> "v2")).isEqualTo("v2");
+    }
+
+    @Test
+    void refreshTimesAreSpreadByTheJitter() {
+        long ttl = Duration.ofMinutes(10).toMillis();
+        TwoTierCache cache = cache(Duration.ofMillis(ttl), 0.2, Duration.ZERO, Runnable::run);
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            cache.put("product::" + i, i);
+        }
+        long after = System.currentTimeMillis();
+
+        Set<Long> refreshTimes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long refreshAt = local.getIfPresent("product::" + i).refreshAt();
+            assertThat(refreshAt).isBetween(before + (long) (ttl * 0.8), after + ttl);
+            refreshTimes.add(refreshAt);
+        }
+        assertThat(refreshTimes).hasSizeGreaterThan(500);
+    }
+
+    private TwoTierCache cache(Duration ttl, double jitter, Duration staleWindow, Executor refreshExecutor) {
+        return new TwoTierCache("product", local, remote, (cacheName, key) -> { }, ttl, jitter, staleWindow,
+                refreshExecutor, meterRegistry);
+    }
+}
@@ -0,0 +1,54 @@
+package com.saikumar.productservice.dto;
+
+import com.saikumar.productservice.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductCursorTest {
+
+    @Test
+    void everySortKeyRoundTrips() {
+        roundTrip(new ProductCursor("id", Sort.Direction.ASC, 42L, 42L));
+        roundTrip(new ProductCursor("price", Sort.Direction.DESC, new BigDecimal("1299.90"), 7L));
+        roundTrip(new ProductCursor("createdAt", Sort.Direction.DESC, LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000), 9L));
+        // toString drops zero seconds; parsing must still accept it
+        roundTrip(new ProductCursor("createdAt", Sort.Direction.ASC, LocalDateTime.of(2024, 3, 1, 12, 30), 10L));
+    }
+
+    @Test
+    void nameMayContainTheSeparatorAndNonAsciiText() {
+        roundTrip(new ProductCursor("name", Sort.Direction.ASC, "Cable | USB-C 2m, Blå", 11L));
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new ProductCursor("name", Sort.Direction.ASC, "??>>~~ä", 12L).encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void malformedOrUnsupportedTokensAreRejected() {
+        assertThatThrownBy(() -> ProductCursor.decode("not a cursor")).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> ProductCursor.decode(token("price|ASC|5|cheap"))).isInstanceOf(InvalidCursorException.class);
+        // stock changes too often to seek on
+        assertThatThrownBy(() -> ProductCursor.decode(token("stock|ASC|5|10"))).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> ProductCursor.decode(token("id|SIDEWAYS|5|5"))).isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static void roundTrip(ProductCursor cursor) {
+        assertThat(ProductCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
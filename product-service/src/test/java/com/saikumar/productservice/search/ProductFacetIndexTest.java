@@ -0,0 +1,124 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.cache.ProductListingCache;
+import com.saikumar.productservice.dto.FacetDto;
+import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.repository.ProductRepository;
+import com.saikumar.productservice.repository.StockReservationRepository;
+import com.saikumar.productservice.service.HotStockLedger;
+import com.saikumar.productservice.service.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductFacetIndexTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM products");
+    }
+
+    @Test
+    void catchUpRepairsChangesNoNotificationDelivered() {
+        insert(1, "Electronics", "Acme", "99.00");
+        insert(2, "Electronics", "Globex", "499.00");
+        insert(3, "Home", "Acme", "20.00");
+        ProductFacetIndex facets = new ProductFacetIndex(productRepository, mock(ProductChangeNotifier.class),
+                List.of(BigDecimal.ZERO, new BigDecimal("100"), new BigDecimal("500")));
+        facets.init();
+
+        // another replica recategorises one product and deletes another; their messages are lost
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update("UPDATE products SET category = 'Home', updated_at = ? WHERE id = 2", now);
+        jdbcTemplate.update("UPDATE products SET is_active = FALSE, updated_at = ? WHERE id = 3", now);
+        assertThat(home(facets).getIds()).containsExactly(3L);
+
+        facets.catchUp();
+
+        FacetDto.FacetResponse home = home(facets);
+        assertThat(home.getIds()).containsExactly(2L);
+        assertThat(home.getCounts().get(ProductFacetIndex.BRAND)).isEqualTo(Map.of("Globex", 1));
+    }
+
+    @Test
+    void idBeyondTheBitmapRangeIsLeftOutWithoutFailingTheWrite() {
+        insert(1, "Home", "Acme", "20.00");
+        insert(3_000_000_000L, "Home", "Globex", "30.00");
+        ProductFacetIndex facets = new ProductFacetIndex(productRepository, mock(ProductChangeNotifier.class),
+                List.of(BigDecimal.ZERO, new BigDecimal("100")));
+        facets.init();
+
+        Product product = productRepository.findById(3_000_000_000L).orElseThrow();
+        product.setCategory("Outdoors");
+        facets.onProductChanged(product);
+
+        assertThat(home(facets).getIds()).containsExactly(1L);
+        assertThat(facets.query(Map.of(ProductFacetIndex.CATEGORY, List.of("Outdoors")), 0, 10).getTotal()).isZero();
+    }
+
+    @Test
+    void aFailingLocalIndexDoesNotFailACommittedWrite() {
+        ProductFacetIndex facets = new ProductFacetIndex(productRepository, mock(ProductChangeNotifier.class),
+                List.of(BigDecimal.ZERO, new BigDecimal("100")));
+        facets.init();
+        ProductSearchIndex searchIndex = mock(ProductSearchIndex.class);
+        doThrow(new IllegalStateException("index closed")).when(searchIndex).onProductChanged(any());
+        ProductService service = new ProductService(productRepository, mock(StockReservationRepository.class), jdbcTemplate,
+                new NoOpCacheManager(), mock(HotStockLedger.class), mock(ProductListingCache.class), searchIndex,
+                mock(ProductSuggester.class), facets, mock(ProductChangeNotifier.class), transactionManager,
+                new SimpleMeterRegistry());
+        Product product = new Product();
+        product.setName("Camp Stove");
+        product.setPrice(new BigDecimal("45.00"));
+        product.setCategory("Home");
+        product.setBrand("Acme");
+
+        Product saved = service.createProduct(product);
+
+        assertThat(productRepository.findById(saved.getId())).isPresent();
+        assertThat(home(facets).getIds()).containsExactly(saved.getId());
+    }
+
+    private FacetDto.FacetResponse home(ProductFacetIndex facets) {
+        return facets.query(Map.of(ProductFacetIndex.CATEGORY, List.of("Home")), 0, 10);
+    }
+
+    private void insert(long id, String category, String brand, String price) {
+        Timestamp earlier = Timestamp.valueOf(LocalDateTime.now().minusHours(1));
+        jdbcTemplate.update("INSERT INTO products (id, name, price, stock, category, brand, is_active, version, created_at, updated_at) " +
+                "VALUES (?, ?, ?, 10, ?, ?, TRUE, 0, ?, ?)", id, brand + " " + id, new BigDecimal(price), category, brand, earlier, earlier);
+    }
+}
@@ -0,0 +1,118 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.repository.ProductRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Keyword search over a generated catalog, through the Lucene index and through the JPQL LIKE
+ * query it replaced; average latency per query is printed for both. 100k products by default,
+ * -Dbenchmark.products=1000000 for the large run. Tagged so the default build skips it; run with
+ * mvn test -Pbenchmark. Timings are only printed, never asserted: they depend on the machine.
+ * ProductSearchIndexTest covers what the index returns.
+ */
+@Tag("benchmark")
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductSearchIndexBenchmarkTest {
+
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 100_000);
+    private static final int ROUNDS = 20;
+    private static final String[] ADJECTIVES = {"Wireless", "Compact", "Ergonomic", "Portable", "Premium", "Smart", "Classic", "Rugged"};
+    private static final String[] NOUNS = {"Headphones", "Keyboard", "Backpack", "Blender", "Monitor", "Lamp", "Speaker", "Jacket"};
+    private static final String[] BRANDS = {"Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne"};
+    private static final String[] CATEGORIES = {"Electronics", "Home", "Outdoors", "Fashion", "Office"};
+    private static final List<String> QUERIES = List.of("wireless headphones", "ergonomic", "acme speaker", "port", "rugged jacket");
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductSearchIndex index;
+
+    @BeforeAll
+    void loadCatalog() throws Exception {
+        SplittableRandom random = new SplittableRandom(7);
+        List<Object[]> rows = new ArrayList<>(10_000);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().minusHours(1));
+        for (int id = 1; id <= PRODUCTS; id++) {
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + id;
+            rows.add(new Object[]{id, name, "A " + name.toLowerCase() + " for everyday use", 10 + random.nextInt(500),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], BRANDS[random.nextInt(BRANDS.length)], now, now});
+            if (rows.size() == 10_000 || id == PRODUCTS) {
+                jdbcTemplate.batchUpdate("INSERT INTO products (id, name, description, price, stock, category, brand, " +
+                        "is_active, version, created_at, updated_at) VALUES (?, ?, ?, ?, 100, ?, ?, TRUE, 0, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        index = new ProductSearchIndex(productRepository, mock(ProductChangeNotifier.class));
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "indexDir", Files.createTempDirectory("search-index").toString());
+        long start = System.nanoTime();
+        index.init();
+        System.out.printf("indexed %d products in %d ms%n", PRODUCTS, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @AfterAll
+    void cleanUp() throws Exception {
+        index.close();
+        jdbcTemplate.update("DELETE FROM products");
+    }
+
+    @Test
+    void luceneAgainstTheLikeQuery() {
+        PageRequest page = PageRequest.of(0, 20);
+        for (String query : QUERIES) {
+            index.search(query, page);
+            productRepository.searchCardsByKeyword(query, page);
+        }
+
+        long lucene = 0;
+        long jpql = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String query : QUERIES) {
+                long start = System.nanoTime();
+                Page<Long> hits = index.search(query, page);
+                lucene += System.nanoTime() - start;
+                assertThat(hits.getTotalElements()).isPositive();
+
+                start = System.nanoTime();
+                productRepository.searchCardsByKeyword(query, page);
+                jpql += System.nanoTime() - start;
+            }
+        }
+
+        int queries = ROUNDS * QUERIES.size();
+        System.out.printf("search over %d products: lucene %.2f ms/query, JPQL LIKE %.2f ms/query%n",
+                PRODUCTS, lucene / 1e6 / queries, jpql / 1e6 / queries);
+    }
+}
@@ -0,0 +1,130 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.dto.ProductCard;
+import com.saikumar.productservice.repository.ProductRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Keyword search over a small generated catalog: every keyword must match exactly the products
+ * whose name, brand or description carry all its words (the last one as a prefix), and an edit the
+ * index was never told about must be picked up by the reconcile pass.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductSearchIndexTest {
+
+    private static final int PRODUCTS = 2_000;
+    private static final String[] ADJECTIVES = {"Wireless", "Compact", "Ergonomic", "Portable", "Premium", "Smart", "Classic", "Rugged"};
+    private static final String[] NOUNS = {"Headphones", "Keyboard", "Backpack", "Blender", "Monitor", "Lamp", "Speaker", "Jacket"};
+    private static final String[] BRANDS = {"Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne"};
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductSearchIndex index;
+    private final List<String[]> catalog = new ArrayList<>();
+
+    @BeforeAll
+    void loadCatalog() throws Exception {
+        SplittableRandom random = new SplittableRandom(7);
+        List<Object[]> rows = new ArrayList<>(PRODUCTS);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().minusHours(1));
+        for (int id = 1; id <= PRODUCTS; id++) {
+            String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+            String noun = NOUNS[random.nextInt(NOUNS.length)];
+            String brand = BRANDS[random.nextInt(BRANDS.length)];
+            String name = adjective + " " + noun + " " + id;
+            catalog.add(new String[]{adjective, noun, brand});
+            rows.add(new Object[]{id, name, "A " + name.toLowerCase() + " for everyday use", brand, now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO products (id, name, description, price, stock, category, brand, " +
+                "is_active, version, created_at, updated_at) VALUES (?, ?, ?, 19.99, 100, 'Home', ?, TRUE, 0, ?, ?)", rows);
+
+        index = new ProductSearchIndex(productRepository, mock(ProductChangeNotifier.class));
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "indexDir", Files.createTempDirectory("search-index").toString());
+        index.init();
+    }
+
+    @AfterAll
+    void cleanUp() throws Exception {
+        index.close();
+        jdbcTemplate.update("DELETE FROM products");
+    }
+
+    @Test
+    void everyWordMustMatchSomeField() {
+        assertThat(hits("wireless headphones")).isEqualTo(expected(p -> p[0].equals("Wireless") && p[1].equals("Headphones")));
+        assertThat(hits("acme speaker")).isEqualTo(expected(p -> p[2].equals("Acme") && p[1].equals("Speaker")));
+        assertThat(hits("ergonomic")).isEqualTo(expected(p -> p[0].equals("Ergonomic")));
+    }
+
+    @Test
+    void lastWordMatchesAsAPrefix() {
+        assertThat(hits("port")).isEqualTo(expected(p -> p[0].equals("Portable")));
+        assertThat(hits("rugged jack")).isEqualTo(expected(p -> p[0].equals("Rugged") && p[1].equals("Jacket")));
+        assertThat(hits("xylophone")).isEmpty();
+    }
+
+    @Test
+    void reconcilePicksUpAnEditTheIndexWasNeverToldAbout() {
+        jdbcTemplate.update("UPDATE products SET name = 'Zeppelin Telescope', updated_at = ? WHERE id = 1",
+                Timestamp.valueOf(LocalDateTime.now()));
+        catalog.set(0, new String[]{"Zeppelin", "Telescope", catalog.get(0)[2]});
+        assertThat(index.search("zeppelin", PageRequest.of(0, 5)).getContent()).isEmpty();
+
+        index.scheduledReconcile();
+
+        assertThat(index.search("zeppelin", PageRequest.of(0, 5)).getContent()).containsExactly(1L);
+        List<ProductCard> viaJpql = productRepository.searchCardsByKeyword("zeppelin", PageRequest.of(0, 5)).getContent();
+        assertThat(viaJpql).extracting(ProductCard::id).containsExactly(1L);
+    }
+
+    private Set<Long> hits(String keyword) {
+        Page<Long> page = index.search(keyword, PageRequest.of(0, PRODUCTS));
+        assertThat(page.getTotalElements()).isEqualTo(page.getContent().size());
+        return new HashSet<>(page.getContent());
+    }
+
+    private Set<Long> expected(Predicate<String[]> matches) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            if (matches.test(catalog.get(i))) {
+                ids.add(i + 1L);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,153 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Typeahead latency over a generated catalog with a popularity spread over every product: FST
+ * lookups for one- to three-letter prefixes and whole words, the same with a thousand writes
+ * waiting in the overlay, and a demand flush for ten thousand products. 200k products by default,
+ * -Dbenchmark.products=1000000 for the large run. Redis is a stubbed connection over an in-memory
+ * map, so the flush time leaves out the round trip and is mostly the stub's own per-call cost; it
+ * bounds what the suggester spends rather than measuring Redis. Tagged so the default build skips
+ * it; run with mvn test -Pbenchmark. Timings are printed, never asserted.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductSuggesterBenchmarkTest {
+
+    private static final int PRODUCTS = Integer.getInteger("benchmark.products", 200_000);
+    private static final int LOOKUPS = 100_000;
+    private static final String[] ADJECTIVES = {"Wireless", "Compact", "Ergonomic", "Portable", "Premium", "Smart", "Classic", "Rugged"};
+    private static final String[] NOUNS = {"Headphones", "Keyboard", "Backpack", "Blender", "Monitor", "Lamp", "Speaker", "Jacket"};
+    private static final String[] BRANDS = {"Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne"};
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final Map<String, Double> popularity = new ConcurrentHashMap<>();
+    private final List<Product> catalog = new ArrayList<>();
+    private final List<String> prefixes = new ArrayList<>();
+
+    private ProductSuggester suggester;
+
+    @BeforeAll
+    @SuppressWarnings("unchecked")
+    void buildSuggester() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setName(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + id);
+            product.setBrand(BRANDS[random.nextInt(BRANDS.length)]);
+            catalog.add(product);
+            // a long tail: most products sell little, a few sell a lot
+            popularity.put(Long.toString(id), Math.floor(1000 / (1 + random.nextInt(1000)) * random.nextDouble(1, 10)));
+        }
+        for (String word : concat(ADJECTIVES, NOUNS, BRANDS)) {
+            String lower = word.toLowerCase();
+            for (int length = 1; length <= 3; length++) {
+                prefixes.add(lower.substring(0, length));
+            }
+            prefixes.add(lower);
+        }
+        prefixes.add("wireless head");
+        prefixes.add("1234");
+
+        when(productRepository.findFirst1000ByIdGreaterThanOrderByIdAsc(anyLong())).thenAnswer(call -> {
+            int after = Math.toIntExact((Long) call.getArgument(0));
+            return catalog.subList(Math.min(after, catalog.size()), Math.min(after + 1000, catalog.size()));
+        });
+        ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        when(zSet.rangeWithScores(ProductSuggester.POPULARITY_KEY, 0, -1)).thenAnswer(call -> popularity.entrySet().stream()
+                .map(e -> ZSetOperations.TypedTuple.of(e.getKey(), e.getValue()))
+                .collect(Collectors.toSet()));
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(connection.zIncrBy(eq(ProductSuggester.POPULARITY_KEY), anyDouble(), anyString())).thenAnswer(call ->
+                popularity.merge(call.getArgument(2), call.getArgument(1), Double::sum));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(call -> {
+            ((RedisCallback<Object>) call.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+
+        suggester = new ProductSuggester(productRepository, redisTemplate, mock(ProductChangeNotifier.class));
+        ReflectionTestUtils.setField(suggester, "enabled", true);
+        long start = System.nanoTime();
+        suggester.init();
+        System.out.printf("suggester over %d products built in %d ms%n", PRODUCTS, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Test
+    void lookupLatency() {
+        measure("FST only");
+
+        for (int i = 0; i < 1000; i++) {
+            Product product = catalog.get(i * (PRODUCTS / 1000));
+            product.setName(product.getName().replace(" ", " New "));
+            suggester.onProductChanged(product);
+        }
+        measure("FST + 1000 overlay entries");
+
+        Map<Long, Integer> demand = new HashMap<>();
+        for (long id = 1; id <= 10_000; id++) {
+            demand.put(id, 1);
+        }
+        suggester.recordDemand(demand);
+        long start = System.nanoTime();
+        suggester.flushDemand();
+        System.out.printf("demand flush for %d products: %.1f ms%n", demand.size(), (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        suggester.rebuild();
+        System.out.printf("rebuild with fresh popularity: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        measure("FST after rebuild");
+    }
+
+    private void measure(String mode) {
+        for (int i = 0; i < 10_000; i++) {
+            suggester.suggest(prefixes.get(i % prefixes.size()), 10);
+        }
+        long[] nanos = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            long start = System.nanoTime();
+            List<String> suggestions = suggester.suggest(prefixes.get(i % prefixes.size()), 10);
+            nanos[i] = System.nanoTime() - start;
+            assertThat(suggestions).isNotEmpty();
+        }
+        Arrays.sort(nanos);
+        System.out.printf("suggest, %s: mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n", mode,
+                Arrays.stream(nanos).average().orElse(0) / 1e3, nanos[LOOKUPS / 2] / 1e3,
+                nanos[LOOKUPS * 99 / 100] / 1e3, nanos[LOOKUPS - 1] / 1e3);
+    }
+
+    private static List<String> concat(String[]... arrays) {
+        return Arrays.stream(arrays).flatMap(Arrays::stream).toList();
+    }
+}
@@ -0,0 +1,168 @@
+package com.saikumar.productservice.search;
+
+import com.saikumar.productservice.model.Product;
+import com.saikumar.productservice.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Typeahead over a generated 20k-product catalog, with the popularity sorted set kept in memory in
+ * place of Redis. Suggestions must be ranked by units reserved, releases included, once demand is
+ * flushed and the FST rebuilt; product writes must show up (or disappear) at once through the
+ * overlay, ranked alongside the FST's entries, and survive the next rebuild.
+ */
+class ProductSuggesterTest {
+
+    private static final int PRODUCTS = 20_000;
+    private static final String[] ADJECTIVES = {"Wireless", "Compact", "Ergonomic", "Portable", "Premium", "Smart", "Classic", "Rugged"};
+    private static final String[] NOUNS = {"Headphones", "Keyboard", "Backpack", "Blender", "Monitor", "Lamp", "Speaker", "Jacket"};
+    private static final String[] BRANDS = {"Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne"};
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final Map<String, Double> popularity = new ConcurrentHashMap<>();
+    private final List<Product> catalog = new ArrayList<>();
+    private final List<Product> wirelessHeadphones = new ArrayList<>();
+
+    private ProductSuggester suggester;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            Product product = product(id, ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " +
+                    NOUNS[random.nextInt(NOUNS.length)] + " " + id, BRANDS[random.nextInt(BRANDS.length)]);
+            catalog.add(product);
+            if (product.getName().startsWith("Wireless Headphones")) {
+                wirelessHeadphones.add(product);
+            }
+        }
+        when(productRepository.findFirst1000ByIdGreaterThanOrderByIdAsc(anyLong())).thenAnswer(call -> {
+            long after = call.getArgument(0);
+            return catalog.stream().filter(p -> p.getId() > after).limit(1000).toList();
+        });
+
+        ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        when(zSet.rangeWithScores(ProductSuggester.POPULARITY_KEY, 0, -1)).thenAnswer(call -> popularity.entrySet().stream()
+                .map(e -> ZSetOperations.TypedTuple.of(e.getKey(), e.getValue()))
+                .collect(Collectors.toSet()));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(call -> {
+            ((RedisCallback<Object>) call.getArgument(0)).doInRedis(redisConnection());
+            return List.of();
+        });
+
+        suggester = new ProductSuggester(productRepository, redisTemplate, mock(ProductChangeNotifier.class));
+        ReflectionTestUtils.setField(suggester, "enabled", true);
+        suggester.init();
+    }
+
+    @Test
+    void suggestionsAreRankedByUnitsReserved() {
+        Product first = wirelessHeadphones.get(0);
+        Product second = wirelessHeadphones.get(1);
+        Product third = wirelessHeadphones.get(2);
+        suggester.recordDemand(Map.of(first.getId(), 30, second.getId(), 50));
+        suggester.recordDemand(Map.of(third.getId(), 10));
+        suggester.flushDemand();
+        suggester.rebuild();
+
+        assertThat(suggester.suggest("wireless", 3)).containsExactly(second.getName(), first.getName(), third.getName());
+        // any word of the name is a start, and case and spacing don't matter
+        assertThat(suggester.suggest("  HEADPH", 3)).containsExactly(second.getName(), first.getName(), third.getName());
+        assertThat(suggester.suggest("wireless headphones", 20))
+                .hasSize(20)
+                .allSatisfy(name -> assertThat(name).startsWith("Wireless Headphones"));
+
+        // a release takes its units back off
+        suggester.recordDemand(Map.of(second.getId(), -45));
+        suggester.rebuild();
+        assertThat(suggester.suggest("wireless", 3)).containsExactly(first.getName(), third.getName(), second.getName());
+    }
+
+    @Test
+    void writesShowUpThroughTheOverlayBeforeTheNextRebuild() {
+        Product popular = wirelessHeadphones.get(0);
+        Product retired = wirelessHeadphones.get(1);
+        suggester.recordDemand(Map.of(popular.getId(), 40, retired.getId(), 20));
+        suggester.rebuild();
+        String oldName = popular.getName();
+
+        Product added = product(PRODUCTS + 1L, "Zeppelin Telescope", "Acme");
+        suggester.onProductChanged(added);
+        popular.setName("Wireless Earbuds Pro");
+        suggester.onProductChanged(popular);
+        retired.setActive(false);
+        suggester.onProductChanged(retired);
+
+        assertThat(suggester.suggest("zep", 5)).containsExactly("Zeppelin Telescope");
+        assertThat(suggester.suggest("teles", 5)).containsExactly("Zeppelin Telescope");
+        // the renamed product keeps its popularity and outranks the FST's entries
+        assertThat(suggester.suggest("wireless", 1)).containsExactly("Wireless Earbuds Pro");
+        assertThat(suggester.suggest("wireless headphones", wirelessHeadphones.size())).doesNotContain(oldName, retired.getName());
+
+        suggester.rebuild();
+
+        assertThat(suggester.suggest("zep", 5)).containsExactly("Zeppelin Telescope");
+        assertThat(suggester.suggest("wireless", 1)).containsExactly("Wireless Earbuds Pro");
+        assertThat(suggester.suggest("wireless headphones", wirelessHeadphones.size())).doesNotContain(oldName, retired.getName());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void demandSurvivesAFailedFlush() {
+        Product product = wirelessHeadphones.get(0);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new QueryTimeoutException("redis down"))
+                .thenAnswer(call -> {
+                    ((RedisCallback<Object>) call.getArgument(0)).doInRedis(redisConnection());
+                    return List.of();
+                });
+
+        suggester.recordDemand(Map.of(product.getId(), 7));
+        suggester.flushDemand();
+        assertThat(popularity).isEmpty();
+
+        suggester.recordDemand(Map.of(product.getId(), 3));
+        suggester.flushDemand();
+        assertThat(popularity).containsExactly(Map.entry(product.getId().toString(), 10.0));
+    }
+
+    private StringRedisConnection redisConnection() {
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(connection.zIncrBy(eq(ProductSuggester.POPULARITY_KEY), anyDouble(), anyString())).thenAnswer(call ->
+                popularity.merge(call.getArgument(2), call.getArgument(1), Double::sum));
+        return connection;
+    }
+
+    private static Product product(long id, String name, String brand) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setBrand(brand);
+        return product;
+    }
+}
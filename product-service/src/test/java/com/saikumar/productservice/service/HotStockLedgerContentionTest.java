@@ -0,0 +1,260 @@
+package com.saikumar.productservice.service;
+
+import com.saikumar.productservice.cache.ProductListingCache;
+import com.saikumar.productservice.dto.StockDto;
+import com.saikumar.productservice.exception.InsufficientStockException;
+import com.saikumar.productservice.exception.StockConflictException;
+import com.saikumar.productservice.repository.ProductRepository;
+import com.saikumar.productservice.repository.StockAllocationRepository;
+import com.saikumar.productservice.repository.StockLedgerCheckpointRepository;
+import com.saikumar.productservice.repository.StockReservationRepository;
+import com.saikumar.productservice.search.ProductChangeNotifier;
+import com.saikumar.productservice.search.ProductFacetIndex;
+import com.saikumar.productservice.search.ProductSearchIndex;
+import com.saikumar.productservice.search.ProductSuggester;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 64 threads hammering one SKU, once through the optimistic database path and once through the
+ * hot-SKU ledger, plus two ledgers (two replicas) sharing one SKU. Every run must sell exactly the
+ * stock there is and no more; throughput is printed for comparison. Scale with
+ * -Dbenchmark.stock=... for longer runs. A restarted ledger must find unflushed reservations in
+ * its journal. The pool is kept far smaller than the thread count, so order reservations that
+ * refill the ledger while holding a connection would time out instead of selling.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.connection-timeout=5000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotStockLedgerContentionTest {
+
+    private static final int THREADS = 64;
+    private static final int STOCK = Integer.getInteger("benchmark.stock", 2_000);
+    private static final long PRODUCT_ID = 1001L;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private StockAllocationRepository allocationRepository;
+
+    @Autowired
+    private StockLedgerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<HotStockLedger> ledgers = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        for (HotStockLedger ledger : ledgers) {
+            ledger.shutdown();
+        }
+        jdbcTemplate.update("DELETE FROM stock_reservations");
+        jdbcTemplate.update("DELETE FROM stock_allocations");
+        jdbcTemplate.update("DELETE FROM stock_allocation_checkpoints");
+        jdbcTemplate.update("DELETE FROM products");
+    }
+
+    @Test
+    void optimisticDatabasePathNeverOversells() throws Exception {
+        insertProduct(STOCK);
+        ProductService service = productService(ledger(false));
+
+        Result result = hammer(() -> service.reduceStock(PRODUCT_ID, 1));
+
+        report("optimistic UPDATE ... WHERE version = ?", result);
+        assertThat(result.sold()).isLessThanOrEqualTo(STOCK);
+        assertThat(stockInDatabase()).isEqualTo(STOCK - result.sold());
+    }
+
+    @Test
+    void hotSkuLedgerSellsExactlyTheStock() throws Exception {
+        insertProduct(STOCK);
+        ProductService service = productService(ledger(true));
+
+        Result result = hammer(() -> service.reduceStock(PRODUCT_ID, 1));
+
+        report("hot-SKU ledger", result);
+        assertThat(result.sold()).isEqualTo(STOCK);
+        assertThat(result.conflicts()).isZero();
+        ledgers.get(0).flush();
+        assertThat(stockInDatabase() + allocated()).isZero();
+    }
+
+    @Test
+    void orderReservationsRefillTheLedgerWithoutStarvingThePool() throws Exception {
+        insertProduct(STOCK);
+        ProductService service = productService(ledger(true));
+        AtomicLong orderIds = new AtomicLong();
+        List<StockDto.StockItem> items = List.of(new StockDto.StockItem(PRODUCT_ID, 1));
+
+        Result result = hammer(() -> service.reserveStock(orderIds.incrementAndGet(), items));
+
+        report("hot-SKU ledger, reserveStock", result);
+        assertThat(result.sold()).isEqualTo(STOCK);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_reservations", Integer.class)).isEqualTo(STOCK);
+        ledgers.get(0).flush();
+        assertThat(stockInDatabase() + allocated()).isZero();
+    }
+
+    @Test
+    void ledgerRefusesToRefillInsideATransaction() throws Exception {
+        insertProduct(STOCK);
+        HotStockLedger ledger = ledger(true);
+
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> ledger.reserve(PRODUCT_ID, 1)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(stockInDatabase()).isEqualTo(STOCK);
+    }
+
+    @Test
+    void twoReplicasCannotOversellBetweenThem() throws Exception {
+        insertProduct(STOCK);
+        HotStockLedger first = ledger(true);
+        HotStockLedger second = ledger(true);
+        AtomicInteger turn = new AtomicInteger();
+
+        Result result = hammer(() -> (turn.getAndIncrement() % 2 == 0 ? first : second).reserve(PRODUCT_ID, 1));
+
+        report("hot-SKU ledger, two replicas", result);
+        assertThat(result.sold()).isEqualTo(STOCK);
+        first.flush();
+        second.flush();
+        assertThat(stockInDatabase() + allocated()).isZero();
+    }
+
+    @Test
+    void restartReplaysTheJournalOntoTheAllocation() throws Exception {
+        insertProduct(1_000);
+        Path journal = Files.createTempDirectory("stock-journal");
+        HotStockLedger crashed = ledger(true, journal);
+        for (int i = 0; i < 10; i++) {
+            crashed.reserve(PRODUCT_ID, 1);
+        }
+        // no flush: the ten reservations exist only in the journal, as after a crash
+        ledgers.remove(crashed);
+
+        ledger(true, journal);
+
+        assertThat(stockInDatabase()).isEqualTo(900);
+        assertThat(allocated()).isEqualTo(90);
+    }
+
+    // every thread reserves one unit at a time until the SKU is sold out
+    private Result hammer(Runnable reserve) throws InterruptedException {
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    while (true) {
+                        try {
+                            reserve.run();
+                            sold.incrementAndGet();
+                        } catch (StockConflictException e) {
+                            conflicts.incrementAndGet();
+                        } catch (InsufficientStockException e) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        return new Result(sold.get(), conflicts.get(), System.nanoTime() - begin);
+    }
+
+    private HotStockLedger ledger(boolean enabled) throws Exception {
+        return ledger(enabled, Files.createTempDirectory("stock-journal"));
+    }
+
+    private HotStockLedger ledger(boolean enabled, Path journal) throws Exception {
+        HotStockLedger ledger = new HotStockLedger(allocationRepository, checkpointRepository, jdbcTemplate, transactionManager);
+        ReflectionTestUtils.setField(ledger, "enabled", enabled);
+        ReflectionTestUtils.setField(ledger, "hotIds", Set.of(PRODUCT_ID));
+        ReflectionTestUtils.setField(ledger, "journalDir", journal.toString());
+        ReflectionTestUtils.setField(ledger, "sliceSize", 100);
+        ledger.init();
+        ledgers.add(ledger);
+        return ledger;
+    }
+
+    private ProductService productService(HotStockLedger ledger) {
+        ProductService service = new ProductService(productRepository, stockReservationRepository, jdbcTemplate,
+                new NoOpCacheManager(), ledger, mock(ProductListingCache.class), mock(ProductSearchIndex.class),
+                mock(ProductSuggester.class), mock(ProductFacetIndex.class), mock(ProductChangeNotifier.class),
+                transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxStockRetries", 5);
+        return service;
+    }
+
+    private void insertProduct(int stock) {
+        jdbcTemplate.update("INSERT INTO products (id, name, price, stock, category, brand, is_active, version, created_at, updated_at) " +
+                "VALUES (?, 'Hot SKU', 9.99, ?, 'Deals', 'Acme', TRUE, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", PRODUCT_ID, stock);
+    }
+
+    private int stockInDatabase() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, PRODUCT_ID);
+    }
+
+    private int allocated() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM stock_allocations", Integer.class);
+    }
+
+    private static void report(String mode, Result result) {
+        double seconds = result.nanos() / 1e9;
+        System.out.printf("%-40s %d threads: %d sold, %d conflicts (409) in %.0f ms = %.0f reservations/s%n",
+                mode, THREADS, result.sold(), result.conflicts(), seconds * 1000, result.sold() / seconds);
+    }
+
+    private record Result(int sold, int conflicts, long nanos) {}
+}
@@ -0,0 +1,128 @@
+package com.saikumar.productservice.service;
+
+import com.saikumar.productservice.cache.ProductListingCache;
+import com.saikumar.productservice.exception.InsufficientStockException;
+import com.saikumar.productservice.exception.StockConflictException;
+import com.saikumar.productservice.repository.ProductRepository;
+import com.saikumar.productservice.repository.StockReservationRepository;
+import com.saikumar.productservice.search.ProductChangeNotifier;
+import com.saikumar.productservice.search.ProductFacetIndex;
+import com.saikumar.productservice.search.ProductSearchIndex;
+import com.saikumar.productservice.search.ProductSuggester;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Many threads reducing and restoring one product's stock through the versioned UPDATE. Whatever
+ * the interleaving, every successful reduce and restore must be reflected exactly once and stock
+ * must never go below zero; throughput and the conflict rate are printed. Scale with
+ * -Dbenchmark.stock=...
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OptimisticStockUpdateTest {
+
+    private static final int THREADS = 32;
+    private static final int STOCK = Integer.getInteger("benchmark.stock", 1_000);
+    private static final long PRODUCT_ID = 2001L;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProductService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO products (id, name, price, stock, category, brand, is_active, version, created_at, updated_at) " +
+                "VALUES (?, 'Contended SKU', 19.99, ?, 'Deals', 'Acme', TRUE, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", PRODUCT_ID, STOCK);
+        service = new ProductService(productRepository, stockReservationRepository, jdbcTemplate, new NoOpCacheManager(),
+                mock(HotStockLedger.class), mock(ProductListingCache.class), mock(ProductSearchIndex.class),
+                mock(ProductSuggester.class), mock(ProductFacetIndex.class), mock(ProductChangeNotifier.class),
+                transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(service, "maxStockRetries", 5);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM products");
+    }
+
+    @Test
+    void concurrentReducesAndRestoresNeitherOversellNorLoseUpdates() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger restored = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 1; ; i++) {
+                        try {
+                            service.reduceStock(PRODUCT_ID, 1);
+                            sold.incrementAndGet();
+                            // every tenth sale is cancelled and handed back
+                            if (i % 10 == 0) {
+                                service.restoreStock(PRODUCT_ID, 1);
+                                restored.incrementAndGet();
+                            }
+                        } catch (StockConflictException e) {
+                            rejected.incrementAndGet();
+                        } catch (InsufficientStockException e) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        int stock = jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, PRODUCT_ID);
+        double conflicts = meterRegistry.counter("product.stock.update.conflicts").count();
+        System.out.printf("optimistic stock updates, %d threads: %d sold, %d restored, %d rejected (409), %.0f version conflicts in %.0f ms = %.0f updates/s%n",
+                THREADS, sold.get(), restored.get(), rejected.get(), conflicts, seconds * 1000, (sold.get() + restored.get()) / seconds);
+
+        assertThat(stock).isZero();
+        assertThat(sold.get() - restored.get()).isEqualTo(STOCK);
+    }
+}
@@ -0,0 +1,201 @@
+package com.saikumar.productservice.service;
+
+import com.saikumar.productservice.cache.ProductListingCache;
+import com.saikumar.productservice.dto.StockDto;
+import com.saikumar.productservice.exception.InsufficientStockException;
+import com.saikumar.productservice.exception.ReservationReleasedException;
+import com.saikumar.productservice.repository.ProductRepository;
+import com.saikumar.productservice.repository.StockAllocationRepository;
+import com.saikumar.productservice.repository.StockLedgerCheckpointRepository;
+import com.saikumar.productservice.repository.StockReservationRepository;
+import com.saikumar.productservice.search.ProductChangeNotifier;
+import com.saikumar.productservice.search.ProductFacetIndex;
+import com.saikumar.productservice.search.ProductSearchIndex;
+import com.saikumar.productservice.search.ProductSuggester;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The bulk reserve and release endpoints against real tables and a real hot-SKU ledger: an order
+ * is reserved whole or not at all, the order id makes both calls idempotent, a reserve that
+ * arrives after its release is refused, and a release hands back exactly what was reserved, from
+ * the ledger and from products.stock alike. releaseStock runs in a transaction as its proxy would.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockReservationTest {
+
+    private static final long HOT = 3001L;
+    private static final long KEYBOARD = 3002L;
+    private static final long MOUSE = 3003L;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private StockAllocationRepository allocationRepository;
+
+    @Autowired
+    private StockLedgerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private HotStockLedger ledger;
+    private ProductService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        insertProduct(HOT, 100);
+        insertProduct(KEYBOARD, 10);
+        insertProduct(MOUSE, 1);
+
+        ledger = new HotStockLedger(allocationRepository, checkpointRepository, jdbcTemplate, transactionManager);
+        ReflectionTestUtils.setField(ledger, "enabled", true);
+        ReflectionTestUtils.setField(ledger, "hotIds", Set.of(HOT));
+        ReflectionTestUtils.setField(ledger, "journalDir", Files.createTempDirectory("stock-journal").toString());
+        ReflectionTestUtils.setField(ledger, "sliceSize", 10);
+        ledger.init();
+
+        service = new ProductService(productRepository, stockReservationRepository, jdbcTemplate, new NoOpCacheManager(),
+                ledger, mock(ProductListingCache.class), mock(ProductSearchIndex.class), mock(ProductSuggester.class),
+                mock(ProductFacetIndex.class), mock(ProductChangeNotifier.class), transactionManager, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        ledger.shutdown();
+        jdbcTemplate.update("DELETE FROM stock_reservations");
+        jdbcTemplate.update("DELETE FROM stock_allocations");
+        jdbcTemplate.update("DELETE FROM stock_allocation_checkpoints");
+        jdbcTemplate.update("DELETE FROM products");
+    }
+
+    @Test
+    void oneShortProductReservesNothing() {
+        assertThatThrownBy(() -> service.reserveStock(1L, List.of(item(HOT, 3), item(KEYBOARD, 2), item(MOUSE, 5))))
+                .isInstanceOf(InsufficientStockException.class);
+
+        assertThat(stock(KEYBOARD)).isEqualTo(10);
+        assertThat(stock(MOUSE)).isEqualTo(1);
+        assertThat(hotStock()).isEqualTo(100);
+        assertThat(reservationRows(1L)).isZero();
+
+        // a short hot SKU leaves the database products alone just the same
+        assertThatThrownBy(() -> service.reserveStock(2L, List.of(item(KEYBOARD, 2), item(HOT, 101))))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(stock(KEYBOARD)).isEqualTo(10);
+        assertThat(hotStock()).isEqualTo(100);
+
+        // and the order can still go through once it asks for what there is
+        service.reserveStock(1L, List.of(item(HOT, 3), item(KEYBOARD, 2), item(MOUSE, 1)));
+        assertThat(stock(KEYBOARD)).isEqualTo(8);
+        assertThat(stock(MOUSE)).isZero();
+        assertThat(hotStock()).isEqualTo(97);
+    }
+
+    @Test
+    void repeatedOrderIdReservesOnce() {
+        List<StockDto.StockItem> items = List.of(item(HOT, 4), item(KEYBOARD, 1), item(KEYBOARD, 2));
+
+        service.reserveStock(7L, items);
+        service.reserveStock(7L, items);
+
+        assertThat(stock(KEYBOARD)).isEqualTo(7);
+        assertThat(hotStock()).isEqualTo(96);
+        // one row per product, the repeated line merged
+        assertThat(reservationRows(7L)).isEqualTo(2);
+    }
+
+    @Test
+    void reserveAfterReleaseIsRefused() {
+        service.reserveStock(8L, List.of(item(KEYBOARD, 1)));
+        release(8L, item(KEYBOARD, 1));
+        assertThatThrownBy(() -> service.reserveStock(8L, List.of(item(KEYBOARD, 1))))
+                .isInstanceOf(ReservationReleasedException.class);
+
+        // a release that overtook its reservation leaves a tombstone the late reservation runs into
+        release(9L, item(HOT, 2));
+        assertThatThrownBy(() -> service.reserveStock(9L, List.of(item(HOT, 2))))
+                .isInstanceOf(ReservationReleasedException.class);
+
+        assertThat(stock(KEYBOARD)).isEqualTo(10);
+        assertThat(hotStock()).isEqualTo(100);
+    }
+
+    @Test
+    void releaseHandsBackHotAndNormalStockOnce() {
+        service.reserveStock(10L, List.of(item(HOT, 25), item(KEYBOARD, 3)));
+        service.reserveStock(11L, List.of(item(HOT, 5), item(MOUSE, 1)));
+        assertThat(hotStock()).isEqualTo(70);
+
+        release(10L, item(HOT, 25), item(KEYBOARD, 3));
+        release(10L, item(HOT, 25), item(KEYBOARD, 3));
+
+        assertThat(stock(KEYBOARD)).isEqualTo(10);
+        assertThat(stock(MOUSE)).isZero();
+        assertThat(hotStock()).isEqualTo(95);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM stock_reservations WHERE order_id = 10 AND status = 'RELEASED'", Integer.class)).isEqualTo(2);
+    }
+
+    private void release(Long orderId, StockDto.StockItem... items) {
+        StockDto.OrderRelease release = new StockDto.OrderRelease();
+        release.setOrderId(orderId);
+        release.setItems(List.of(items));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> service.releaseStock(List.of(release)));
+    }
+
+    // what is left to sell of the hot SKU: the pool plus this replica's slice, once flushed
+    private int hotStock() {
+        ledger.flush();
+        return stock(HOT) + jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_allocations WHERE product_id = ?", Integer.class, HOT);
+    }
+
+    private int stock(long productId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private int reservationRows(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_reservations WHERE order_id = ?", Integer.class, orderId);
+    }
+
+    private void insertProduct(long id, int stock) {
+        jdbcTemplate.update("INSERT INTO products (id, name, price, stock, category, brand, is_active, version, created_at, updated_at) " +
+                "VALUES (?, ?, 9.99, ?, 'Deals', 'Acme', TRUE, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", id, "Product " + id, stock);
+    }
+
+    private static StockDto.StockItem item(long productId, int quantity) {
+        return new StockDto.StockItem(productId, quantity);
+    }
+}
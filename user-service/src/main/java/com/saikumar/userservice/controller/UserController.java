@@ -1,12 +1,16 @@
 package com.saikumar.userservice.controller;
 
 import com.saikumar.userservice.dto.UserDto;
+import com.saikumar.userservice.service.UserExporter;
 import com.saikumar.userservice.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -16,6 +20,7 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserExporter userExporter;
 
     // POST /api/users/register
     @PostMapping("/register")
@@ -55,6 +60,16 @@ public class UserController {
         return ResponseEntity.ok(userService.getAllUsers());
     }
 
+    // GET /api/users/export?format=ndjson|csv - admin only, streams every user with constant memory
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "ndjson") String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users." + (csv ? "csv" : "ndjson"))
+                .body(out -> userExporter.export(csv, out));
+    }
+
     // DELETE /api/users/{id} - soft delete
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deactivateUser(@PathVariable Long id) {
@@ -1,11 +1,28 @@
 package com.saikumar.userservice.repository;
 
 import com.saikumar.userservice.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // fetch size Integer.MIN_VALUE puts MySQL Connector/J in streaming mode for this one query, so the
+    // driver hands over rows as they arrive instead of buffering the table; other queries are unaffected
+    String STREAM_ROWS = "" + Integer.MIN_VALUE;
+
+    // forward-only read for exports, streamed row by row (see STREAM_ROWS)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_ROWS),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u ORDER BY u.id")
+    Stream<User> streamAllByOrderById();
 }
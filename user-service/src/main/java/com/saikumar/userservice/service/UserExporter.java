@@ -0,0 +1,82 @@
+package com.saikumar.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.saikumar.userservice.dto.UserDto;
+import com.saikumar.userservice.model.User;
+import com.saikumar.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes every user to a response as NDJSON or CSV while reading them through a forward-only
+ * cursor, so memory stays flat however large the table is: rows are streamed from the server,
+ * each is detached once written, and output goes out through a fixed-size buffer.
+ */
+@Component
+@Slf4j
+public class UserExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,name,email,phone,address,role,active\n";
+
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter rowWriter;
+
+    public UserExporter(UserRepository userRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.rowWriter = objectMapper.writerFor(UserDto.UserResponse.class);
+    }
+
+    @Transactional(readOnly = true)
+    public long export(boolean csv, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (csv) {
+            writer.write(CSV_HEADER);
+        }
+
+        long rows = 0;
+        try (Stream<User> users = userRepository.streamAllByOrderById()) {
+            for (User user : (Iterable<User>) users::iterator) {
+                UserDto.UserResponse row = UserDto.UserResponse.from(user);
+                if (csv) {
+                    writer.write(csv(row.getId()) + ',' + csv(row.getName()) + ',' + csv(row.getEmail()) + ','
+                            + csv(row.getPhone()) + ',' + csv(row.getAddress()) + ',' + csv(row.getRole()) + ','
+                            + row.isActive() + '\n');
+                } else {
+                    writer.write(rowWriter.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                // streamed entities would otherwise pile up in the persistence context
+                entityManager.detach(user);
+                rows++;
+            }
+        }
+        writer.flush();
+        log.info("Exported {} users as {}", rows, csv ? "CSV" : "NDJSON");
+        return rows;
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,152 @@
+package com.saikumar.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The user export against a real MySQL holding two million users by default
+ * (-Dbenchmark.exportUsers to change it), so the streaming fetch size and the per-user detach are
+ * exercised for real. Heap is sampled after a full GC every 100k lines written and must stay
+ * within a fixed bound of where it started. Needs Docker; tagged so the default build skips it,
+ * run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserExportMySqlTest {
+
+    private static final int USERS = Integer.getInteger("benchmark.exportUsers", 2_000_000);
+    private static final int SAMPLE_EVERY = 100_000;
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void mysql(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+        registry.add("spring.datasource.driver-class-name", MYSQL::getDriverClassName);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeAll
+    void loadUsers() {
+        long begin = System.nanoTime();
+        jdbcTemplate.execute("CREATE TABLE digits (d INT PRIMARY KEY)");
+        jdbcTemplate.execute("INSERT INTO digits VALUES (0), (1), (2), (3), (4), (5), (6), (7), (8), (9)");
+        jdbcTemplate.update("INSERT INTO users (id, name, email, password, phone, address, role, is_active, created_at) " +
+                "SELECT n + 1, CONCAT('User ', n), CONCAT('user', n, '@example.com'), " +
+                "'$2a$10$abcdefghijklmnopqrstuuJr1bJ9bRzqvLrM2d5bK1m7yYJXx0z6', '555-0100', '1 Main St, Springfield', " +
+                "'CUSTOMER', TRUE, NOW() FROM (" +
+                "SELECT a.d + 10 * b.d + 100 * c.d + 1000 * e.d + 10000 * f.d + 100000 * g.d + 1000000 * h.d AS n " +
+                "FROM digits a, digits b, digits c, digits e, digits f, digits g, digits h) t WHERE n < ?", USERS);
+        System.out.printf("loaded %d users into MySQL in %d s%n", USERS, (System.nanoTime() - begin) / 1_000_000_000);
+    }
+
+    @AfterAll
+    void dropDigits() {
+        jdbcTemplate.execute("DROP TABLE digits");
+    }
+
+    @Test
+    void exportStreamsMillionsOfUsersInBoundedHeap() {
+        UserExporter exporter = new UserExporter(userRepository, entityManager, new ObjectMapper());
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream(memory);
+
+        long begin = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Long exported = readOnly.execute(tx -> {
+            try {
+                return exporter.export(true, out);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        long growth = out.peak - baseline;
+        System.out.printf("MySQL user export: %d users, %.0f MB CSV in %.1f s, heap growth peak %.1f MB over %d samples%n",
+                exported, out.bytes / 1e6, seconds, growth / 1e6, out.samples);
+
+        assertThat(exported).isEqualTo(USERS);
+        // the header line plus one per user
+        assertThat(out.lines).isEqualTo(USERS + 1L);
+        assertThat(out.samples).isEqualTo((USERS + 1) / SAMPLE_EVERY);
+        assertThat(growth).isLessThan(MAX_HEAP_GROWTH);
+    }
+
+    // counts what is written and records heap in use, after a full GC, every SAMPLE_EVERY lines
+    private static class HeapSamplingOutputStream extends OutputStream {
+        private final MemoryMXBean memory;
+        long bytes;
+        long lines;
+        long peak;
+        int samples;
+
+        HeapSamplingOutputStream(MemoryMXBean memory) {
+            this.memory = memory;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n' && ++lines % SAMPLE_EVERY == 0) {
+                    System.gc();
+                    peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+                    samples++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.saikumar.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saikumar.userservice.model.User;
+import com.saikumar.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserExporterTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserExporter exporter = new UserExporter(userRepository, entityManager, objectMapper);
+
+    @Test
+    void ndjsonWritesOneUserPerLineAndNeverThePassword() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(userRepository.streamAllByOrderById()).thenReturn(Stream.of(user(1, "Ana", null), user(2, "Ben", "2 High St"))
+                .onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(exporter.export(false, out)).isEqualTo(2);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(2).noneMatch(line -> line.contains("password") || line.contains("$2a$"));
+        assertThat(objectMapper.readTree(lines.get(1)).get("address").asText()).isEqualTo("2 High St");
+        assertThat(closed).isTrue();
+        // each row leaves the persistence context once written
+        verify(entityManager, times(2)).detach(any(User.class));
+    }
+
+    @Test
+    void csvQuotesFieldsThatNeedIt() throws Exception {
+        when(userRepository.streamAllByOrderById()).thenReturn(Stream.of(user(1, "Smith, \"Jo\"", "Flat 2\nHigh St")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exporter.export(true, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("id,name,email,phone,address,role,active\n"
+                + "1,\"Smith, \"\"Jo\"\"\",user1@example.com,,\"Flat 2\nHigh St\",CUSTOMER,true\n");
+    }
+
+    private static User user(long id, String name, String address) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail("user" + id + "@example.com");
+        user.setPassword("$2a$10$hash");
+        user.setAddress(address);
+        return user;
+    }
+}